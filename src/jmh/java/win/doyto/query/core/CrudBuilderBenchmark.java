@@ -0,0 +1,59 @@
+package win.doyto.query.core;
+
+import org.openjdk.jmh.annotations.*;
+import win.doyto.query.core.test.TestEntity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CrudBuilderBenchmark
+ *
+ * @author f0rb on 2020-02-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CrudBuilderBenchmark {
+
+    private CrudBuilder<TestEntity> crudBuilder;
+    private List<TestEntity> entities;
+    private TestEntity entity;
+    private TestEntity patch;
+
+    @Setup
+    public void setup() {
+        crudBuilder = new CrudBuilder<>(TestEntity.class);
+        entities = TestEntity.initUserEntities();
+        entity = entities.get(0);
+
+        patch = new TestEntity();
+        patch.setId(1);
+        patch.setNickname("test");
+        patch.setValid(false);
+    }
+
+    @Benchmark
+    public String buildCreate() {
+        return crudBuilder.buildCreateAndArgs(entity, new ArrayList<>());
+    }
+
+    @Benchmark
+    public SqlAndArgs buildCreateBatch() {
+        return crudBuilder.buildCreateAndArgs(entities);
+    }
+
+    @Benchmark
+    public SqlAndArgs buildUpdate() {
+        return crudBuilder.buildUpdateAndArgs(entity);
+    }
+
+    @Benchmark
+    public SqlAndArgs buildPatchWithId() {
+        return crudBuilder.buildPatchAndArgsWithId(patch);
+    }
+}
@@ -0,0 +1,79 @@
+package win.doyto.query.core;
+
+import org.openjdk.jmh.annotations.*;
+import win.doyto.query.core.test.TestEntity;
+import win.doyto.query.core.test.TestEnum;
+import win.doyto.query.core.test.TestQuery;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MemoryDataAccessBenchmark
+ * <p>
+ * Scans, looks up an index and sorts pages of <i>rows</i> entities.
+ *
+ * @author f0rb on 2020-02-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryDataAccessBenchmark {
+
+    @Param({"1000", "100000"})
+    private int rows;
+
+    private MemoryDataAccess<TestEntity, Integer, TestQuery> memoryDataAccess;
+    private TestQuery scanQuery;
+    private TestQuery indexQuery;
+    private TestQuery pageQuery;
+    private TestQuery lastPageQuery;
+
+    @Setup
+    public void setup() {
+        memoryDataAccess = new MemoryDataAccess<>(TestEntity.class);
+        memoryDataAccess.createIndex("username", MemoryDataAccess.IndexType.HASH);
+        for (int i = 0; i < rows; i++) {
+            TestEntity testEntity = new TestEntity();
+            testEntity.setUsername("username" + i);
+            testEntity.setEmail("test" + i + "@163.com");
+            testEntity.setMobile(String.valueOf(17700000000L + i));
+            testEntity.setUserLevel(i % 10 == 0 ? TestEnum.VIP : TestEnum.NORMAL);
+            testEntity.setValid(i % 2 == 0);
+            memoryDataAccess.create(testEntity);
+        }
+
+        scanQuery = TestQuery.builder().usernameLike("99").valid(true).build();
+        indexQuery = TestQuery.builder().username("username" + rows / 2).build();
+        pageQuery = TestQuery.builder().userLevel(TestEnum.NORMAL).pageNumber(0).pageSize(20).sort("email,desc").build();
+        lastPageQuery = TestQuery.builder().valid(true).pageNumber(rows / 40 - 1).pageSize(20).sort("email,desc").build();
+    }
+
+    @Benchmark
+    public List<TestEntity> queryByScan() {
+        return memoryDataAccess.query(scanQuery);
+    }
+
+    @Benchmark
+    public List<TestEntity> queryByIndex() {
+        return memoryDataAccess.query(indexQuery);
+    }
+
+    @Benchmark
+    public List<TestEntity> queryFirstPageSorted() {
+        return memoryDataAccess.query(pageQuery);
+    }
+
+    @Benchmark
+    public List<TestEntity> queryLastPageSorted() {
+        return memoryDataAccess.query(lastPageQuery);
+    }
+
+    @Benchmark
+    public long count() {
+        return memoryDataAccess.count(scanQuery);
+    }
+}
@@ -0,0 +1,84 @@
+package win.doyto.query.core;
+
+import org.openjdk.jmh.annotations.*;
+import win.doyto.query.core.test.PermissionQuery;
+import win.doyto.query.core.test.TestEntity;
+import win.doyto.query.core.test.TestEnum;
+import win.doyto.query.core.test.TestQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * QueryBuilderBenchmark
+ * <p>
+ * Covers the plain fields, the <code>@SubQuery</code> field and the <code>@NestedQueries</code> fields
+ * processed by {@link FieldProcessor}.
+ *
+ * @author f0rb on 2020-02-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QueryBuilderBenchmark {
+
+    private QueryBuilder testQueryBuilder;
+    private QueryBuilder permQueryBuilder;
+    private TestQuery simpleQuery;
+    private TestQuery pageQuery;
+    private TestQuery subQuery;
+    private PermissionQuery nestedQuery;
+
+    @Setup
+    public void setup() {
+        testQueryBuilder = new QueryBuilder(TestEntity.class);
+        permQueryBuilder = new QueryBuilder("permission", "id");
+
+        simpleQuery = TestQuery.builder().username("test").build();
+        pageQuery = TestQuery.builder()
+                             .idIn(Arrays.asList(1, 2, 3, 4, 5))
+                             .usernameLike("test")
+                             .userLevel(TestEnum.VIP)
+                             .valid(true)
+                             .pageNumber(3).pageSize(20).sort("id,desc;username,asc")
+                             .build();
+        subQuery = TestQuery.builder().roleId(1).valid(true).build();
+        nestedQuery = PermissionQuery.builder().userId(1).validUser(true).roleIdIn(Arrays.asList(1, 2, 3)).build();
+    }
+
+    private static String build(QueryBuilder queryBuilder, PageQuery query) {
+        List<Object> argList = new ArrayList<>();
+        return queryBuilder.buildSelectAndArgs(query, argList);
+    }
+
+    @Benchmark
+    public String buildSelectSimple() {
+        return build(testQueryBuilder, simpleQuery);
+    }
+
+    @Benchmark
+    public String buildSelectPaged() {
+        return build(testQueryBuilder, pageQuery);
+    }
+
+    @Benchmark
+    public String buildSelectWithSubQuery() {
+        return build(testQueryBuilder, subQuery);
+    }
+
+    @Benchmark
+    public String buildSelectWithNestedQueries() {
+        return build(permQueryBuilder, nestedQuery);
+    }
+
+    @Benchmark
+    public String buildCount() {
+        List<Object> argList = new ArrayList<>();
+        return testQueryBuilder.buildCountAndArgs(pageQuery, argList);
+    }
+}
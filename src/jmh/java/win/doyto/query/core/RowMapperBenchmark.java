@@ -0,0 +1,70 @@
+package win.doyto.query.core;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import win.doyto.query.core.test.TestEntity;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RowMapperBenchmark
+ * <p>
+ * Maps <i>rows</i> rows of an in-memory HSQLDB table by {@link FieldRowMapper} and {@link BeanPropertyRowMapper}.
+ *
+ * @author f0rb on 2020-02-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RowMapperBenchmark {
+
+    @Param({"100", "10000"})
+    private int rows;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private RowMapper<TestEntity> fieldRowMapper;
+    private RowMapper<TestEntity> beanPropertyRowMapper;
+    private String select;
+
+    @Setup
+    public void setup() {
+        dataSource = new SingleConnectionDataSource("jdbc:hsqldb:mem:benchmark", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE user (id INTEGER PRIMARY KEY, username VARCHAR(100), password VARCHAR(100), " +
+                                 "mobile VARCHAR(20), email VARCHAR(100), nickname VARCHAR(100), userLevel VARCHAR(20), " +
+                                 "memo VARCHAR(100), valid BOOLEAN)");
+        for (int i = 1; i <= rows; i++) {
+            jdbcTemplate.update("INSERT INTO user (id, username, password, mobile, email, nickname, userLevel, memo, valid) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                                i, "username" + i, "password" + i, String.valueOf(17700000000L + i),
+                                "test" + i + "@163.com", i % 3 == 0 ? null : "nickname" + i, i % 10 == 0 ? "VIP" : "NORMAL", null, i % 2 == 0);
+        }
+        FieldRowMapper<TestEntity> mapper = FieldRowMapper.of(TestEntity.class);
+        fieldRowMapper = mapper;
+        select = "SELECT " + String.join(", ", mapper.getColumns()) + " FROM user";
+        beanPropertyRowMapper = new BeanPropertyRowMapper<>(TestEntity.class);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jdbcTemplate.execute("DROP TABLE user");
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<TestEntity> fieldRowMapper() {
+        return jdbcTemplate.query(select, fieldRowMapper);
+    }
+
+    @Benchmark
+    public List<TestEntity> beanPropertyRowMapper() {
+        return jdbcTemplate.query(select, beanPropertyRowMapper);
+    }
+}
@@ -0,0 +1,57 @@
+package win.doyto.query.core;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * StringJoinerBenchmark
+ * <p>
+ * Compares {@link StringJoiner} with {@link java.util.StringJoiner} and {@link String#join}.
+ *
+ * @author f0rb on 2020-02-23
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StringJoinerBenchmark {
+
+    @Param({"4", "16"})
+    private int size;
+
+    private String[] parts;
+
+    @Setup
+    public void setup() {
+        parts = new String[size];
+        for (int i = 0; i < size; i++) {
+            parts[i] = "column" + i + " = ?";
+        }
+    }
+
+    @Benchmark
+    public String stringJoiner() {
+        StringJoiner stringJoiner = new StringJoiner(" AND ", parts.length);
+        for (String part : parts) {
+            stringJoiner.append(part);
+        }
+        return stringJoiner.toString();
+    }
+
+    @Benchmark
+    public String jdkStringJoiner() {
+        java.util.StringJoiner stringJoiner = new java.util.StringJoiner(" AND ");
+        for (String part : parts) {
+            stringJoiner.add(part);
+        }
+        return stringJoiner.toString();
+    }
+
+    @Benchmark
+    public String stringJoin() {
+        return String.join(" AND ", parts);
+    }
+}
@@ -0,0 +1,26 @@
+package win.doyto.query.cache;
+
+import org.springframework.cache.Cache;
+
+/**
+ * CacheGeneration
+ * <p>
+ * The generation of each cache for {@link VersionedCache}, which prefixes the keys
+ * and is incremented to clear the cache.
+ *
+ * @author f0rb on 2020-02-29
+ */
+public interface CacheGeneration {
+
+    long get(String cacheName);
+
+    long increment(String cacheName);
+
+    /**
+     * @return false when the generations are not shared by all the nodes using the cache,
+     * so that clearing the cache by the generation would clear it for one node only
+     */
+    default boolean supports(Cache cache) {
+        return true;
+    }
+}
@@ -0,0 +1,22 @@
+package win.doyto.query.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * CacheInvalidation
+ * <p>
+ * Message to evict a key, or to clear when the key is null, from the near caches of the other nodes.
+ *
+ * @author f0rb on 2020-03-01
+ */
+@Getter
+@AllArgsConstructor
+public class CacheInvalidation {
+    /**
+     * The id of the near cache which published the message, to skip its own messages
+     */
+    private final String source;
+    private final String cacheName;
+    private final String key;
+}
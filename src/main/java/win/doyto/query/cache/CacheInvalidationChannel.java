@@ -0,0 +1,19 @@
+package win.doyto.query.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * CacheInvalidationChannel
+ * <p>
+ * Broadcasts the invalidations of the near caches among the nodes.
+ *
+ * @author f0rb on 2020-03-01
+ * @see InProcessCacheInvalidationChannel
+ * @see RedisCacheInvalidationChannel
+ */
+public interface CacheInvalidationChannel {
+
+    void publish(CacheInvalidation cacheInvalidation);
+
+    void subscribe(Consumer<CacheInvalidation> listener);
+}
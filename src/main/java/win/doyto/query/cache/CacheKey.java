@@ -0,0 +1,39 @@
+package win.doyto.query.cache;
+
+import org.springframework.cache.Cache;
+
+/**
+ * CacheKey
+ * <p>
+ * A key of a cache instance, compared by the identity of the cache and the equality of the key.
+ *
+ * @author f0rb on 2020-03-02
+ */
+final class CacheKey {
+    final Cache cache;
+    final Object key;
+    private final int hash;
+
+    CacheKey(Cache cache, Object key) {
+        this.cache = cache;
+        this.key = key;
+        this.hash = 31 * System.identityHashCode(cache) + key.hashCode();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CacheKey)) {
+            return false;
+        }
+        CacheKey that = (CacheKey) o;
+        return cache == that.cache && key.equals(that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
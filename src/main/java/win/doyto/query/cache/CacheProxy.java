@@ -21,7 +21,8 @@ public class CacheProxy implements InvocationHandler {
     private Cache delegate;
 
     public static Cache wrap(Cache cache) {
-        return (Cache) Proxy.newProxyInstance(CacheProxy.class.getClassLoader(), new Class[]{Cache.class}, new CacheProxy(cache));
+        Class<?> cacheInterface = cache instanceof MultiSetCache ? MultiSetCache.class : Cache.class;
+        return (Cache) Proxy.newProxyInstance(CacheProxy.class.getClassLoader(), new Class[]{cacheInterface}, new CacheProxy(cache));
     }
 
     @Override
@@ -3,6 +3,9 @@ package win.doyto.query.cache;
 import org.springframework.cache.Cache;
 import win.doyto.query.core.Invocable;
 
+import java.util.List;
+import java.util.function.Function;
+
 /**
  * CacheWrapper
  *
@@ -18,6 +21,15 @@ public interface CacheWrapper<T> {
         return DefaultCacheWrapper.invoke(getCache(), key, invocable);
     }
 
+    /**
+     * @param keys   the keys to get
+     * @param loader load the values for the indexes of the missed keys, in the same order
+     * @return the values in the order of the keys
+     */
+    default List<T> executeAll(List<String> keys, Function<List<Integer>, List<T>> loader) {
+        return DefaultCacheWrapper.invokeAll(getCache(), keys, loader);
+    }
+
     void setCache(Cache cache);
 
     Cache getCache();
@@ -32,6 +44,13 @@ public interface CacheWrapper<T> {
         getCache().evict(key);
     }
 
+    default void evict(Iterable<String> keys) {
+        Cache cache = getCache();
+        for (String key : keys) {
+            cache.evict(key);
+        }
+    }
+
     default void clear() {
         getCache().clear();
     }
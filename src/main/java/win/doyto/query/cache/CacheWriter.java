@@ -0,0 +1,228 @@
+package win.doyto.query.cache;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import win.doyto.query.config.GlobalConfiguration;
+
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * CacheWriter
+ * <p>
+ * Writes the values loaded by {@link DefaultCacheWrapper} to the caches in the background.
+ * <ul>
+ * <li>The keys to write wait in a queue bounded by <code>cacheWriteQueueSize</code>,
+ * a put waits at most <code>cacheWriteTimeout</code> milliseconds for a free slot and is dropped after that.</li>
+ * <li>A put of a key still waiting replaces the value instead of queuing the key again.</li>
+ * <li>Up to <code>cacheWriteBatchSize</code> keys are written at once, by {@link MultiSetCache#fillAll(Map)} when supported.</li>
+ * <li>An evicted key is not written if it is still waiting,
+ * and is evicted again after the write if it was being written.</li>
+ * </ul>
+ * The queue is drained at shutdown, and the puts after that are written by the caller.
+ *
+ * @author f0rb on 2020-02-26
+ */
+@Slf4j
+public final class CacheWriter {
+
+    private static final Object NULL = new Object();
+    private static final long SHUTDOWN_TIMEOUT = 5000L;
+
+    private final BlockingQueue<CacheKey> queue;
+    private final Map<CacheKey, Object> pending = new ConcurrentHashMap<>();
+    /**
+     * The keys being written by the worker, mapped to true when evicted meanwhile
+     */
+    private final Map<CacheKey, Boolean> writing = new ConcurrentHashMap<>();
+    private final int batchSize;
+    private final long timeout;
+    private final Thread worker;
+    private volatile boolean running = true;
+
+    private final LongAdder written = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+
+    CacheWriter(int queueSize, int batchSize, long timeout) {
+        this.queue = new LinkedBlockingQueue<>(queueSize);
+        this.batchSize = Math.max(batchSize, 1);
+        this.timeout = timeout;
+        worker = new Thread(this::run, "doyto-cache-writer");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * The writer is created with the configuration at the first put.
+     */
+    public static CacheWriter instance() {
+        return Singleton.instance;
+    }
+
+    private static class Singleton {
+        private static final CacheWriter instance = create();
+
+        private static CacheWriter create() {
+            GlobalConfiguration configuration = GlobalConfiguration.instance();
+            CacheWriter cacheWriter = new CacheWriter(
+                configuration.getCacheWriteQueueSize(), configuration.getCacheWriteBatchSize(), configuration.getCacheWriteTimeout());
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> cacheWriter.shutdown(SHUTDOWN_TIMEOUT), "doyto-cache-writer-shutdown"));
+            return cacheWriter;
+        }
+    }
+
+    void put(Cache cache, Object key, Object value) {
+        if (!running) {
+            write(cache, key, value);
+            return;
+        }
+        CacheKey cacheKey = new CacheKey(cache, key);
+        Object pendingValue = value == null ? NULL : value;
+        if (pending.put(cacheKey, pendingValue) != null) {
+            coalesced.increment();
+            return;
+        }
+        boolean offered;
+        try {
+            offered = queue.offer(cacheKey, timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            offered = false;
+        }
+        if (!offered) {
+            pending.remove(cacheKey, pendingValue);
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Cancel the waiting put of the key, or evict the key again after the put being written
+     */
+    void evict(Cache cache, Object key) {
+        CacheKey cacheKey = new CacheKey(cache, key);
+        pending.remove(cacheKey);
+        writing.replace(cacheKey, Boolean.TRUE);
+    }
+
+    /**
+     * Cancel the waiting puts of the cache, and evict the keys being written again after the puts
+     */
+    void clear(Cache cache) {
+        pending.keySet().removeIf(cacheKey -> cacheKey.cache == cache);
+        writing.replaceAll((cacheKey, evicted) -> evicted || cacheKey.cache == cache);
+    }
+
+    private void run() {
+        List<CacheKey> keys = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                CacheKey first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                keys.add(first);
+                queue.drainTo(keys, batchSize - 1);
+                writeBatch(keys);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Cache write failed", e);
+            } finally {
+                keys.clear();
+            }
+        }
+    }
+
+    private void writeBatch(List<CacheKey> keys) {
+        Map<Cache, Map<Object, Object>> cacheEntriesMap = new IdentityHashMap<>();
+        for (CacheKey cacheKey : keys) {
+            // marked before taken, so that an eviction in between is seen by evictIfEvicted
+            writing.put(cacheKey, Boolean.FALSE);
+            Object value = pending.remove(cacheKey);
+            if (value == null) {
+                writing.remove(cacheKey);
+            } else {
+                cacheEntriesMap.computeIfAbsent(cacheKey.cache, c -> new LinkedHashMap<>())
+                               .put(cacheKey.key, value == NULL ? null : value);
+            }
+        }
+        for (Map.Entry<Cache, Map<Object, Object>> entry : cacheEntriesMap.entrySet()) {
+            Cache cache = entry.getKey();
+            Map<Object, Object> entries = entry.getValue();
+            if (cache instanceof MultiSetCache) {
+                try {
+                    ((MultiSetCache) cache).fillAll(entries);
+                    written.add(entries.size());
+                } catch (RuntimeException e) {
+                    log.error(String.format("Cache#fillAll failed: [cache=%s, size=%d]", cache.getName(), entries.size()), e);
+                }
+            } else {
+                entries.forEach((key, value) -> write(cache, key, value));
+            }
+            entries.keySet().forEach(key -> evictIfEvicted(cache, key));
+        }
+    }
+
+    private void evictIfEvicted(Cache cache, Object key) {
+        if (Boolean.TRUE.equals(writing.remove(new CacheKey(cache, key)))) {
+            try {
+                cache.evict(key);
+            } catch (RuntimeException e) {
+                log.error(String.format("Cache#evict failed: [cache=%s, key=%s]", cache.getName(), key), e);
+            }
+        }
+    }
+
+    private void write(Cache cache, Object key, Object value) {
+        try {
+            cache.put(key, value);
+            written.increment();
+        } catch (RuntimeException e) {
+            log.error(String.format("Cache#put failed: [cache=%s, key=%s]", cache.getName(), key), e);
+        }
+    }
+
+    /**
+     * Stop queuing the puts and wait for the queued ones to be written
+     *
+     * @param timeoutMillis the max time to wait
+     * @return true if all the queued puts are written
+     */
+    public boolean shutdown(long timeoutMillis) {
+        running = false;
+        try {
+            worker.join(timeoutMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return !worker.isAlive();
+    }
+
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * @return the amount of the puts replaced by a later put of the same key before written
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the amount of the puts dropped for the full queue
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    public int getPending() {
+        return queue.size();
+    }
+}
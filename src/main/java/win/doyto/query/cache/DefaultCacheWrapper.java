@@ -7,7 +7,9 @@ import org.springframework.cache.support.NoOpCache;
 import win.doyto.query.config.GlobalConfiguration;
 import win.doyto.query.core.Invocable;
 
-import java.util.concurrent.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 
 /**
  * DefaultCacheWrapper
@@ -18,16 +20,27 @@ import java.util.concurrent.*;
 @Getter
 class DefaultCacheWrapper<V> implements CacheWrapper<V> {
 
-    private static final int MAXIMUM_POOL_SIZE = 4;
-    private static final ExecutorService executorService = new ThreadPoolExecutor(
-        Math.min(Runtime.getRuntime().availableProcessors() / 4 + 1, MAXIMUM_POOL_SIZE), MAXIMUM_POOL_SIZE,
-        1, TimeUnit.MINUTES, new SynchronousQueue<>(),
-        new RenameThreadFactory(), new ThreadPoolExecutor.DiscardOldestPolicy());
-
     private Cache cache = new NoOpCache("noop");
 
-    @SuppressWarnings("unchecked")
+    /**
+     * The value loaded by a previous generation of a {@link VersionedCache} is not put,
+     * so that a concurrent clear is not undone by a stale value.
+     */
     public static <V> V invoke(Cache cache, Object key, Invocable<V> invocable) {
+        if (cache instanceof VersionedCache) {
+            VersionedCache versionedCache = (VersionedCache) cache;
+            String versionedKey = key == null ? null : versionedCache.versionedKey(key);
+            V value = invokeDelegate(versionedCache.getDelegate(), versionedKey, invocable);
+            if (versionedKey != null && !versionedKey.equals(versionedCache.versionedKey(key))) {
+                CacheWriter.instance().evict(versionedCache.getDelegate(), versionedKey);
+            }
+            return value;
+        }
+        return invokeDelegate(cache, key, invocable);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> V invokeDelegate(Cache cache, Object key, Invocable<V> invocable) {
         if (cache instanceof NoOpCache || key == null) {
             return invocable.invoke();
         }
@@ -39,24 +52,148 @@ class DefaultCacheWrapper<V> implements CacheWrapper<V> {
         } catch (Exception e) {
             log.error(String.format("Cache#get failed: [cache=%s, key=%s]", cache.getName(), key), e);
         }
-        V value = invocable.invoke();
-        executorService.execute(() -> cache.put(key, value));
-        return value;
+        return SingleFlight.instance().load(cache, key, () -> {
+            V value = invocable.invoke();
+            CacheWriter.instance().put(cache, key, value);
+            return value;
+        });
+    }
+
+    /**
+     * Get the values of the keys in one round trip when the cache is a {@link MultiSetCache},
+     * and load the missed ones by one call of the loader.
+     *
+     * @param loader load the values for the indexes of the missed keys, in the same order
+     */
+    public static <V> List<V> invokeAll(Cache cache, List<?> keys, Function<List<Integer>, List<V>> loader) {
+        if (cache instanceof VersionedCache && !keys.isEmpty()) {
+            VersionedCache versionedCache = (VersionedCache) cache;
+            List<String> versionedKeys = versionedCache.versionedKeys(keys);
+            if (versionedKeys == null) {
+                return invokeAllDelegate(new NoOpCache(cache.getName()), keys, loader);
+            }
+            List<V> values = invokeAllDelegate(versionedCache.getDelegate(), versionedKeys, loader);
+            if (!versionedKeys.get(0).equals(versionedCache.versionedKey(keys.get(0)))) {
+                versionedKeys.forEach(versionedKey -> CacheWriter.instance().evict(versionedCache.getDelegate(), versionedKey));
+            }
+            return values;
+        }
+        return invokeAllDelegate(cache, keys, loader);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> List<V> invokeAllDelegate(Cache cache, List<?> keys, Function<List<Integer>, List<V>> loader) {
+        List<Integer> missIndexes = new ArrayList<>(keys.size());
+        List<Cache.ValueWrapper> valueWrappers = cache instanceof NoOpCache ? null : getAll(cache, keys);
+        List<V> values = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            Cache.ValueWrapper valueWrapper = valueWrappers != null ? valueWrappers.get(i) : null;
+            if (valueWrapper == null) {
+                missIndexes.add(i);
+            }
+            values.add(valueWrapper != null ? (V) valueWrapper.get() : null);
+        }
+        if (missIndexes.isEmpty()) {
+            return values;
+        }
+        if (cache instanceof NoOpCache) {
+            return loader.apply(missIndexes);
+        }
+        List<Object> missKeys = new ArrayList<>(missIndexes.size());
+        missIndexes.forEach(i -> missKeys.add(keys.get(i)));
+        List<V> loaded = SingleFlight.instance().loadAll(cache, missKeys, indexes -> {
+            List<Integer> loadIndexes = new ArrayList<>(indexes.size());
+            indexes.forEach(i -> loadIndexes.add(missIndexes.get(i)));
+            List<V> part = loader.apply(loadIndexes);
+            for (int i = 0; i < indexes.size(); i++) {
+                CacheWriter.instance().put(cache, missKeys.get(indexes.get(i)), part.get(i));
+            }
+            return part;
+        });
+        for (int i = 0; i < missIndexes.size(); i++) {
+            values.set(missIndexes.get(i), loaded.get(i));
+        }
+        return values;
     }
 
+    private static List<Cache.ValueWrapper> getAll(Cache cache, List<?> keys) {
+        try {
+            if (cache instanceof MultiSetCache) {
+                return ((MultiSetCache) cache).getAll(keys);
+            }
+            List<Cache.ValueWrapper> valueWrappers = new ArrayList<>(keys.size());
+            for (Object key : keys) {
+                valueWrappers.add(cache.get(key));
+            }
+            return valueWrappers;
+        } catch (Exception e) {
+            log.error(String.format("Cache#getAll failed: [cache=%s, size=%d]", cache.getName(), keys.size()), e);
+            return null;
+        }
+    }
+
+    /**
+     * Wrap the cache with {@link VersionedCache} when {@link GlobalConfiguration#getCacheGeneration()} is set
+     * and supports the cache, otherwise the cache is cleared by itself.
+     */
     @Override
     public void setCache(Cache cache) {
-        this.cache = GlobalConfiguration.instance().isIgnoreCacheException() ? CacheProxy.wrap(cache) : cache;
+        GlobalConfiguration globalConfiguration = GlobalConfiguration.instance();
+        boolean ignoreCacheException = globalConfiguration.isIgnoreCacheException();
+        this.cache = ignoreCacheException ? CacheProxy.wrap(cache) : cache;
+        CacheGeneration cacheGeneration = globalConfiguration.getCacheGeneration();
+        if (cacheGeneration != null && !(cache instanceof NoOpCache)) {
+            if (cacheGeneration.supports(cache)) {
+                this.cache = new VersionedCache(this.cache, cacheGeneration, ignoreCacheException);
+            } else {
+                log.warn("{} does not support the cache {}, which is cleared without the generation",
+                         cacheGeneration.getClass().getSimpleName(), cache.getName());
+            }
+        }
+    }
+
+    /**
+     * The put of the key waiting in {@link CacheWriter} is cancelled, so that a stale value
+     * loaded before the eviction is not written after it.
+     */
+    @Override
+    public void evict(String key) {
+        if (cache instanceof VersionedCache) {
+            VersionedCache versionedCache = (VersionedCache) cache;
+            String versionedKey = versionedCache.versionedKey(key);
+            if (versionedKey != null) {
+                CacheWriter.instance().evict(versionedCache.getDelegate(), versionedKey);
+                versionedCache.getDelegate().evict(versionedKey);
+            }
+            return;
+        }
+        if (!(cache instanceof NoOpCache)) {
+            CacheWriter.instance().evict(cache, key);
+        }
+        cache.evict(key);
     }
 
-    private static class RenameThreadFactory implements ThreadFactory {
-        ThreadFactory delegate = Executors.defaultThreadFactory();
+    @Override
+    public void evict(Iterable<String> keys) {
+        for (String key : keys) {
+            evict(key);
+        }
+    }
 
-        public Thread newThread(Runnable r) {
-            Thread thread = delegate.newThread(r);
-            String threadName = thread.getName();
-            thread.setName("doyto-cache" + threadName.substring(threadName.lastIndexOf('-')));
-            return thread;
+    /**
+     * A {@link VersionedCache} is cleared in O(1) by incrementing the generation,
+     * and the waiting puts of the old generation are cancelled.
+     */
+    @Override
+    public void clear() {
+        if (cache instanceof VersionedCache) {
+            cache.clear();
+            CacheWriter.instance().clear(((VersionedCache) cache).getDelegate());
+            return;
+        }
+        if (!(cache instanceof NoOpCache)) {
+            CacheWriter.instance().clear(cache);
         }
+        cache.clear();
     }
 }
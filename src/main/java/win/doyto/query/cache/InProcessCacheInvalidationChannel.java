@@ -0,0 +1,28 @@
+package win.doyto.query.cache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * InProcessCacheInvalidationChannel
+ * <p>
+ * Delivers the invalidations synchronously to the subscribers in the same JVM,
+ * which stands in for a message broker in the tests.
+ *
+ * @author f0rb on 2020-03-01
+ */
+public class InProcessCacheInvalidationChannel implements CacheInvalidationChannel {
+
+    private final List<Consumer<CacheInvalidation>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(CacheInvalidation cacheInvalidation) {
+        listeners.forEach(listener -> listener.accept(cacheInvalidation));
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listeners.add(listener);
+    }
+}
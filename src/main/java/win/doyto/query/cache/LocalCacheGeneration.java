@@ -0,0 +1,51 @@
+package win.doyto.query.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LocalCacheGeneration
+ * <p>
+ * Generations kept in memory, which suits the caches local to the node only.
+ * Each generation starts from a random epoch in the high 31 bits, so that a restarted node
+ * never reuses the keys written by its previous run.
+ * <p>
+ * The caches whose native cache is not a local map, like Redis, are refused by {@link #supports(Cache)},
+ * since clearing them by a generation of one node would leave the other nodes reading the stale entries.
+ * Use {@link RedisCacheGeneration} for them.
+ *
+ * @author f0rb on 2020-02-29
+ */
+public class LocalCacheGeneration implements CacheGeneration {
+
+    private static final long EPOCH_MASK = 0x7FFFFFFF00000000L;
+
+    private final Map<String, AtomicLong> generationMap = new ConcurrentHashMap<>();
+
+    private AtomicLong generation(String cacheName) {
+        return generationMap.computeIfAbsent(cacheName, name -> new AtomicLong(UUID.randomUUID().getMostSignificantBits() & EPOCH_MASK));
+    }
+
+    @Override
+    public long get(String cacheName) {
+        return generation(cacheName).get();
+    }
+
+    @Override
+    public long increment(String cacheName) {
+        return generation(cacheName).incrementAndGet();
+    }
+
+    @Override
+    public boolean supports(Cache cache) {
+        Object nativeCache = cache.getNativeCache();
+        String className = nativeCache == null ? "" : nativeCache.getClass().getName();
+        return nativeCache instanceof Map
+            || className.startsWith("com.github.benmanes.caffeine.")
+            || className.startsWith("com.google.common.cache.");
+    }
+}
@@ -0,0 +1,44 @@
+package win.doyto.query.cache;
+
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * MultiSetCache
+ * <p>
+ * A cache able to put several entries in one round trip, like MSET or a pipeline of Redis,
+ * which is used by {@link CacheWriter} to write the batches of the loaded values by {@link #fillAll(Map)},
+ * and to get several entries in one round trip, like MGET, for {@link CacheWrapper#executeAll}.
+ *
+ * @author f0rb on 2020-02-26
+ */
+public interface MultiSetCache extends Cache {
+
+    void putAll(Map<Object, Object> entries);
+
+    /**
+     * Put the values loaded for the misses, which are not changes to tell the other nodes about
+     *
+     * @param entries the keys and the loaded values
+     */
+    default void fillAll(Map<Object, Object> entries) {
+        putAll(entries);
+    }
+
+    /**
+     * Get the entries of the keys
+     *
+     * @param keys the keys to get
+     * @return the value wrappers in the order of the keys, null for the missed ones
+     */
+    default List<ValueWrapper> getAll(List<?> keys) {
+        List<ValueWrapper> valueWrappers = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            valueWrappers.add(get(key));
+        }
+        return valueWrappers;
+    }
+}
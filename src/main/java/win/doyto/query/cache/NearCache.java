@@ -0,0 +1,193 @@
+package win.doyto.query.cache;
+
+import lombok.AllArgsConstructor;
+import org.springframework.cache.Cache;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * NearCache
+ * <p>
+ * Bounded on-heap cache for {@link TwoLevelCache}, split into segments by the key hash to reduce the lock contention.
+ * <ul>
+ * <li>Each segment evicts the least recently used entry, and the entries expire after the TTL.</li>
+ * <li>A new key is only admitted into a full segment when it is accessed more frequently than the entry to evict,
+ * as estimated by a count-min sketch like TinyLFU, so that the one-off keys do not flush the hot ones.</li>
+ * </ul>
+ *
+ * @author f0rb on 2020-03-01
+ */
+final class NearCache {
+
+    private static final int MAX_SEGMENTS = 16;
+
+    private final Segment[] segments;
+    private final long ttlNanos;
+
+    NearCache(int maximumSize, long ttlMillis) {
+        int segmentCount = Math.max(1, Math.min(MAX_SEGMENTS, maximumSize / MAX_SEGMENTS));
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) {
+            segments[i] = new Segment((maximumSize + segmentCount - 1) / segmentCount);
+        }
+        ttlNanos = ttlMillis > 0 ? ttlMillis * 1_000_000L : Long.MAX_VALUE;
+    }
+
+    private Segment segment(Object key) {
+        int h = key.hashCode();
+        return segments[((h ^ (h >>> 16)) & Integer.MAX_VALUE) % segments.length];
+    }
+
+    /**
+     * @return the cached value, or null on miss
+     */
+    Cache.ValueWrapper get(Object key) {
+        return segment(key).get(key, System.nanoTime());
+    }
+
+    /**
+     * Put the value unless the key is rejected by the admission
+     */
+    void put(Object key, Cache.ValueWrapper valueWrapper) {
+        long now = System.nanoTime();
+        segment(key).put(key, new Entry(valueWrapper, ttlNanos == Long.MAX_VALUE ? Long.MAX_VALUE : now + ttlNanos), now);
+    }
+
+    void evict(Object key) {
+        segment(key).evict(key);
+    }
+
+    void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    @AllArgsConstructor
+    private static final class Entry {
+        private final Cache.ValueWrapper valueWrapper;
+        private final long expireAt;
+
+        private boolean isExpired(long now) {
+            return now - expireAt >= 0;
+        }
+    }
+
+    private static final class Segment {
+        private final int capacity;
+        private final LinkedHashMap<Object, Entry> map;
+        private final FrequencySketch sketch;
+
+        private Segment(int capacity) {
+            this.capacity = capacity;
+            this.map = new LinkedHashMap<>(16, 0.75f, true);
+            this.sketch = new FrequencySketch(capacity);
+        }
+
+        private synchronized Cache.ValueWrapper get(Object key, long now) {
+            sketch.increment(key);
+            Entry entry = map.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(now)) {
+                map.remove(key);
+                return null;
+            }
+            return entry.valueWrapper;
+        }
+
+        private synchronized void put(Object key, Entry entry, long now) {
+            if (map.size() < capacity || map.containsKey(key)) {
+                map.put(key, entry);
+                return;
+            }
+            Iterator<Map.Entry<Object, Entry>> iterator = map.entrySet().iterator();
+            Map.Entry<Object, Entry> eldest = iterator.next();
+            if (eldest.getValue().isExpired(now) || sketch.frequency(key) > sketch.frequency(eldest.getKey())) {
+                iterator.remove();
+                map.put(key, entry);
+            }
+        }
+
+        private synchronized void evict(Object key) {
+            map.remove(key);
+        }
+
+        private synchronized void clear() {
+            map.clear();
+        }
+
+        private synchronized int size() {
+            return map.size();
+        }
+    }
+
+    /**
+     * Count-min sketch of 4 rows with the counters saturated at 15,
+     * which are halved after every <i>10 * capacity</i> increments to forget the old accesses.
+     */
+    static final class FrequencySketch {
+        private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+        private static final int MAX_COUNT = 15;
+
+        private final int[] table;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int size = Integer.highestOneBit(Math.max(16, capacity * 4 - 1)) << 1;
+            table = new int[size];
+            mask = size - 1;
+            sampleSize = Math.max(10 * capacity, 160);
+        }
+
+        private int indexOf(int hash, int i) {
+            long h = (hash + SEEDS[i]) * SEEDS[i];
+            h += h >>> 32;
+            return (int) h & mask;
+        }
+
+        void increment(Object key) {
+            int hash = key.hashCode();
+            boolean added = false;
+            for (int i = 0; i < SEEDS.length; i++) {
+                int index = indexOf(hash, i);
+                if (table[index] < MAX_COUNT) {
+                    table[index]++;
+                    added = true;
+                }
+            }
+            if (added && ++additions >= sampleSize) {
+                reset();
+            }
+        }
+
+        int frequency(Object key) {
+            int hash = key.hashCode();
+            int frequency = MAX_COUNT;
+            for (int i = 0; i < SEEDS.length; i++) {
+                frequency = Math.min(frequency, table[indexOf(hash, i)]);
+            }
+            return frequency;
+        }
+
+        private void reset() {
+            for (int i = 0; i < table.length; i++) {
+                table[i] >>>= 1;
+            }
+            additions >>>= 1;
+        }
+    }
+}
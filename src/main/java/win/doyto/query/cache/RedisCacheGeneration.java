@@ -0,0 +1,32 @@
+package win.doyto.query.cache;
+
+import lombok.AllArgsConstructor;
+import org.springframework.data.redis.core.RedisOperations;
+
+/**
+ * RedisCacheGeneration
+ * <p>
+ * Generations shared by the nodes with <i>INCR</i>, which costs a round trip to read the generation
+ * for each cache access.
+ *
+ * @author f0rb on 2020-02-29
+ */
+@AllArgsConstructor
+public class RedisCacheGeneration implements CacheGeneration {
+
+    private static final String KEY_PREFIX = "doyto:cache:generation:";
+
+    private final RedisOperations<String, String> redisOperations;
+
+    @Override
+    public long get(String cacheName) {
+        String generation = redisOperations.opsForValue().get(KEY_PREFIX + cacheName);
+        return generation == null ? 0L : Long.parseLong(generation);
+    }
+
+    @Override
+    public long increment(String cacheName) {
+        Long generation = redisOperations.opsForValue().increment(KEY_PREFIX + cacheName, 1L);
+        return generation == null ? 0L : generation;
+    }
+}
@@ -0,0 +1,51 @@
+package win.doyto.query.cache;
+
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * RedisCacheInvalidationChannel
+ * <p>
+ * Broadcasts the invalidations over Redis Pub/Sub, with the message like <i>source\ncacheName\nkey</i>.
+ *
+ * @author f0rb on 2020-03-01
+ */
+public class RedisCacheInvalidationChannel implements CacheInvalidationChannel {
+
+    private static final String DEFAULT_TOPIC = "doyto:cache:invalidation";
+
+    private final RedisOperations<String, String> redisOperations;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final String topic;
+
+    public RedisCacheInvalidationChannel(RedisOperations<String, String> redisOperations, RedisMessageListenerContainer listenerContainer) {
+        this(redisOperations, listenerContainer, DEFAULT_TOPIC);
+    }
+
+    public RedisCacheInvalidationChannel(RedisOperations<String, String> redisOperations, RedisMessageListenerContainer listenerContainer, String topic) {
+        this.redisOperations = redisOperations;
+        this.listenerContainer = listenerContainer;
+        this.topic = topic;
+    }
+
+    @Override
+    public void publish(CacheInvalidation cacheInvalidation) {
+        String message = cacheInvalidation.getSource() + "\n" + cacheInvalidation.getCacheName()
+            + (cacheInvalidation.getKey() == null ? "" : "\n" + cacheInvalidation.getKey());
+        redisOperations.convertAndSend(topic, message);
+    }
+
+    @Override
+    public void subscribe(Consumer<CacheInvalidation> listener) {
+        listenerContainer.addMessageListener((message, pattern) -> {
+            String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n", 3);
+            if (parts.length >= 2) {
+                listener.accept(new CacheInvalidation(parts[0], parts[1], parts.length == 3 ? parts[2] : null));
+            }
+        }, new ChannelTopic(topic));
+    }
+}
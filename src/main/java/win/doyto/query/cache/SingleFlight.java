@@ -0,0 +1,198 @@
+package win.doyto.query.cache;
+
+import org.springframework.cache.Cache;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import win.doyto.query.config.GlobalConfiguration;
+import win.doyto.query.core.Invocable;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * SingleFlight
+ * <p>
+ * Coalesces the concurrent loads of the same key of a cache missed in {@link DefaultCacheWrapper}.
+ * <ul>
+ * <li>The first caller loads the value, and the others wait for its result
+ * at most <code>cacheLoadTimeout</code> milliseconds, then load by themselves.</li>
+ * <li>The waiting callers share the instance loaded by the first caller, the same as the hits of
+ * a local cache share the cached instance, so the loaded values must not be modified by the callers.</li>
+ * <li>The exception of the load is thrown to the waiting callers too.</li>
+ * <li>A load of the same key by the loading thread itself is not coalesced to avoid waiting for itself.</li>
+ * <li>A batch load owns the keys nobody is loading and waits for the others.</li>
+ * </ul>
+ * The coalescing is disabled when <code>cacheLoadTimeout</code> is not positive,
+ * and skipped in a transaction, whose reads may see its own uncommitted writes.
+ *
+ * @author f0rb on 2020-03-02
+ */
+public final class SingleFlight {
+
+    private static final SingleFlight instance = new SingleFlight();
+    private static final Object MISSING = new Object();
+
+    private final Map<CacheKey, Flight> flights = new ConcurrentHashMap<>();
+
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+
+    SingleFlight() {
+    }
+
+    public static SingleFlight instance() {
+        return instance;
+    }
+
+    @SuppressWarnings("unchecked")
+    <V> V load(Cache cache, Object key, Invocable<V> invocable) {
+        long timeout = GlobalConfiguration.instance().getCacheLoadTimeout();
+        if (timeout <= 0 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return invocable.invoke();
+        }
+        CacheKey cacheKey = new CacheKey(cache, key);
+        Flight flight = new Flight(Thread.currentThread());
+        Flight leader = flights.putIfAbsent(cacheKey, flight);
+        if (leader == null) {
+            return fly(cacheKey, flight, invocable);
+        }
+        if (leader.thread == Thread.currentThread()) {
+            return invocable.invoke();
+        }
+        coalesced.increment();
+        Object value = await(leader, System.currentTimeMillis() + timeout);
+        return value != MISSING ? (V) value : invocable.invoke();
+    }
+
+    /**
+     * Load the keys missed together by one call of the loader,
+     * while the keys already loading by the other callers wait for their results.
+     *
+     * @param loader load the values for the indexes of the keys, in the same order
+     * @return the values in the order of the keys
+     */
+    @SuppressWarnings("unchecked")
+    <V> List<V> loadAll(Cache cache, List<?> keys, Function<List<Integer>, List<V>> loader) {
+        long timeout = GlobalConfiguration.instance().getCacheLoadTimeout();
+        List<Integer> indexes = new ArrayList<>(keys.size());
+        if (timeout <= 0 || TransactionSynchronizationManager.isActualTransactionActive()) {
+            for (int i = 0; i < keys.size(); i++) {
+                indexes.add(i);
+            }
+            return loader.apply(indexes);
+        }
+        List<V> values = new ArrayList<>(Collections.nCopies(keys.size(), null));
+        Map<Integer, Flight> owned = new LinkedHashMap<>();
+        Map<Integer, Flight> waiting = new LinkedHashMap<>();
+        Thread thread = Thread.currentThread();
+        for (int i = 0; i < keys.size(); i++) {
+            CacheKey cacheKey = new CacheKey(cache, keys.get(i));
+            Flight flight = new Flight(thread);
+            Flight leader = flights.putIfAbsent(cacheKey, flight);
+            if (leader == null) {
+                owned.put(i, flight);
+            }
+            if (leader == null || leader.thread == thread) {
+                indexes.add(i);
+            } else {
+                waiting.put(i, leader);
+            }
+        }
+        if (!indexes.isEmpty()) {
+            loads.increment();
+            try {
+                List<V> loaded = loader.apply(indexes);
+                for (int i = 0; i < indexes.size(); i++) {
+                    values.set(indexes.get(i), loaded.get(i));
+                }
+                owned.forEach((i, flight) -> flight.complete(values.get(i)));
+            } catch (RuntimeException | Error e) {
+                owned.values().forEach(flight -> flight.completeExceptionally(e));
+                throw e;
+            } finally {
+                owned.forEach((i, flight) -> flights.remove(new CacheKey(cache, keys.get(i)), flight));
+            }
+        }
+        List<Integer> retries = new ArrayList<>();
+        long deadline = System.currentTimeMillis() + timeout;
+        for (Map.Entry<Integer, Flight> entry : waiting.entrySet()) {
+            coalesced.increment();
+            Object value = await(entry.getValue(), deadline);
+            if (value != MISSING) {
+                values.set(entry.getKey(), (V) value);
+            } else {
+                retries.add(entry.getKey());
+            }
+        }
+        if (!retries.isEmpty()) {
+            List<V> loaded = loader.apply(retries);
+            for (int i = 0; i < retries.size(); i++) {
+                values.set(retries.get(i), loaded.get(i));
+            }
+        }
+        return values;
+    }
+
+    /**
+     * @return the result of the leader, or MISSING after the deadline or an interruption
+     */
+    private Object await(Flight leader, long deadline) {
+        try {
+            return leader.get(Math.max(deadline - System.currentTimeMillis(), 0L), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+        } catch (TimeoutException e) {
+            timeouts.increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return MISSING;
+    }
+
+    private <V> V fly(CacheKey cacheKey, Flight flight, Invocable<V> invocable) {
+        loads.increment();
+        try {
+            V value = invocable.invoke();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(cacheKey, flight);
+        }
+    }
+
+    /**
+     * @return the amount of the loads executed for the misses
+     */
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    /**
+     * @return the amount of the misses which waited for the load of another caller
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    /**
+     * @return the amount of the waiting misses which timed out and loaded by themselves
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    private static final class Flight extends CompletableFuture<Object> {
+        private final Thread thread;
+
+        private Flight(Thread thread) {
+            this.thread = thread;
+        }
+    }
+}
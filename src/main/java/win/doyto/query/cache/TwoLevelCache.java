@@ -0,0 +1,262 @@
+package win.doyto.query.cache;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TwoLevelCache
+ * <p>
+ * Serves the hot keys from a bounded on-heap {@link NearCache} in front of the remote cache.
+ * <ul>
+ * <li>A miss of the near cache reads the remote cache and keeps the value near
+ * unless an invalidation happened during the read.</li>
+ * <li>The puts, evictions and clears go to both levels, and are published by the
+ * {@link CacheInvalidationChannel} to drop the key from the near caches of the other nodes.</li>
+ * <li>The values loaded for the misses are written by {@link #fillAll(Map)} without being published,
+ * since they are not changes of the values.</li>
+ * </ul>
+ * Without a channel, the values of the other nodes are only refreshed after the TTL.
+ *
+ * @author f0rb on 2020-03-01
+ */
+@Slf4j
+public class TwoLevelCache implements MultiSetCache {
+
+    private static final long DEFAULT_TTL = 60_000L;
+
+    private final String id = UUID.randomUUID().toString();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    @Getter
+    private final Cache remote;
+    private final NearCache nearCache;
+    private final CacheInvalidationChannel channel;
+
+    /**
+     * @param remote      the cache of the second level
+     * @param maximumSize the max amount of the entries kept near
+     * @param ttlMillis   the time to live of the entries kept near, 0 for no expiration
+     * @param channel     the channel of the invalidations among the nodes, maybe null
+     */
+    public TwoLevelCache(Cache remote, int maximumSize, long ttlMillis, CacheInvalidationChannel channel) {
+        this.remote = remote;
+        this.nearCache = new NearCache(maximumSize, ttlMillis);
+        this.channel = channel;
+        if (channel != null) {
+            channel.subscribe(this::onInvalidation);
+        }
+    }
+
+    /**
+     * Wrap the remote cache by the spec like <i>near-size=1000;near-ttl=60000</i>
+     *
+     * @param remote  the cache of the second level
+     * @param spec    the spec of the near cache, maybe null
+     * @param channel the channel of the invalidations among the nodes, maybe null
+     * @return the two-level cache, or the remote cache when <i>near-size</i> is absent
+     */
+    public static Cache wrap(Cache remote, String spec, CacheInvalidationChannel channel) {
+        int maximumSize = 0;
+        long ttlMillis = DEFAULT_TTL;
+        if (spec != null) {
+            for (String option : spec.split(";")) {
+                String[] kv = option.split("=", 2);
+                if (kv.length != 2) {
+                    continue;
+                }
+                if ("near-size".equals(kv[0].trim())) {
+                    maximumSize = Integer.parseInt(kv[1].trim());
+                } else if ("near-ttl".equals(kv[0].trim())) {
+                    ttlMillis = Long.parseLong(kv[1].trim());
+                } else {
+                    throw new IllegalArgumentException("Unknown cache option: " + option);
+                }
+            }
+        }
+        return maximumSize > 0 ? new TwoLevelCache(remote, maximumSize, ttlMillis, channel) : remote;
+    }
+
+    private void onInvalidation(CacheInvalidation cacheInvalidation) {
+        if (!id.equals(cacheInvalidation.getSource()) && getName().equals(cacheInvalidation.getCacheName())) {
+            invalidations.incrementAndGet();
+            if (cacheInvalidation.getKey() == null) {
+                nearCache.clear();
+            } else {
+                nearCache.evict(cacheInvalidation.getKey());
+            }
+        }
+    }
+
+    private void publish(String key) {
+        if (channel != null) {
+            try {
+                channel.publish(new CacheInvalidation(id, getName(), key));
+            } catch (Exception e) {
+                log.error("CacheInvalidationChannel#publish failed: [cache={}, key={}]: {}", getName(), key, e.getMessage());
+            }
+        }
+    }
+
+    int nearSize() {
+        return nearCache.size();
+    }
+
+    @Override
+    public String getName() {
+        return remote.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return remote.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String nearKey = key.toString();
+        ValueWrapper valueWrapper = nearCache.get(nearKey);
+        if (valueWrapper != null) {
+            return valueWrapper;
+        }
+        long version = invalidations.get();
+        valueWrapper = remote.get(key);
+        if (valueWrapper != null && version == invalidations.get()) {
+            nearCache.put(nearKey, valueWrapper);
+        }
+        return valueWrapper;
+    }
+
+    /**
+     * The keys missed near are read from the remote cache in one round trip when it is a {@link MultiSetCache}.
+     */
+    @Override
+    public List<ValueWrapper> getAll(List<?> keys) {
+        List<ValueWrapper> valueWrappers = new ArrayList<>(keys.size());
+        List<Integer> missIndexes = new ArrayList<>();
+        List<Object> missKeys = new ArrayList<>();
+        for (Object key : keys) {
+            ValueWrapper valueWrapper = nearCache.get(key.toString());
+            if (valueWrapper == null) {
+                missIndexes.add(valueWrappers.size());
+                missKeys.add(key);
+            }
+            valueWrappers.add(valueWrapper);
+        }
+        if (missKeys.isEmpty()) {
+            return valueWrappers;
+        }
+        long version = invalidations.get();
+        List<ValueWrapper> remoteValues;
+        if (remote instanceof MultiSetCache) {
+            remoteValues = ((MultiSetCache) remote).getAll(missKeys);
+        } else {
+            remoteValues = new ArrayList<>(missKeys.size());
+            for (Object key : missKeys) {
+                remoteValues.add(remote.get(key));
+            }
+        }
+        boolean fill = version == invalidations.get();
+        for (int i = 0; i < missKeys.size(); i++) {
+            ValueWrapper valueWrapper = remoteValues.get(i);
+            valueWrappers.set(missIndexes.get(i), valueWrapper);
+            if (valueWrapper != null && fill) {
+                nearCache.put(missKeys.get(i).toString(), valueWrapper);
+            }
+        }
+        return valueWrappers;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Class<T> type) {
+        ValueWrapper valueWrapper = get(key);
+        Object value = valueWrapper != null ? valueWrapper.get() : null;
+        if (value != null && type != null && !type.isInstance(value)) {
+            throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        ValueWrapper valueWrapper = get(key);
+        if (valueWrapper != null) {
+            return (T) valueWrapper.get();
+        }
+        long version = invalidations.get();
+        T value = remote.get(key, valueLoader);
+        if (version == invalidations.get()) {
+            nearCache.put(key.toString(), new SimpleValueWrapper(value));
+        }
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        invalidations.incrementAndGet();
+        remote.put(key, value);
+        nearCache.put(key.toString(), new SimpleValueWrapper(value));
+        publish(key.toString());
+    }
+
+    @Override
+    public void putAll(Map<Object, Object> entries) {
+        invalidations.incrementAndGet();
+        putRemote(entries);
+        entries.forEach((key, value) -> {
+            nearCache.put(key.toString(), new SimpleValueWrapper(value));
+            publish(key.toString());
+        });
+    }
+
+    @Override
+    public void fillAll(Map<Object, Object> entries) {
+        putRemote(entries);
+        entries.forEach((key, value) -> nearCache.put(key.toString(), new SimpleValueWrapper(value)));
+    }
+
+    private void putRemote(Map<Object, Object> entries) {
+        if (remote instanceof MultiSetCache) {
+            ((MultiSetCache) remote).putAll(entries);
+        } else {
+            entries.forEach(remote::put);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        invalidations.incrementAndGet();
+        ValueWrapper existing = remote.putIfAbsent(key, value);
+        nearCache.put(key.toString(), existing != null ? existing : new SimpleValueWrapper(value));
+        if (existing == null) {
+            publish(key.toString());
+        }
+        return existing;
+    }
+
+    @Override
+    public void evict(Object key) {
+        invalidations.incrementAndGet();
+        remote.evict(key);
+        nearCache.evict(key.toString());
+        publish(key.toString());
+    }
+
+    @Override
+    public void clear() {
+        invalidations.incrementAndGet();
+        remote.clear();
+        nearCache.clear();
+        publish(null);
+    }
+}
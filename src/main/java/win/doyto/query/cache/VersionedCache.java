@@ -0,0 +1,137 @@
+package win.doyto.query.cache;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * VersionedCache
+ * <p>
+ * Prefixes the keys with the generation of the cache like <i>3:key</i>,
+ * so that {@link #clear()} only increments the generation instead of deleting the entries,
+ * and the entries of the old generations are left to the eviction of the delegate.
+ * <p>
+ * When the generation is unavailable and the exceptions are ignored, the cache is bypassed.
+ *
+ * @author f0rb on 2020-02-29
+ */
+@Slf4j
+@AllArgsConstructor
+public class VersionedCache implements Cache {
+
+    @Getter
+    private final Cache delegate;
+    private final CacheGeneration cacheGeneration;
+    private final boolean ignoreException;
+
+    /**
+     * Build the key of the current generation
+     *
+     * @return the key with the generation, or null when the generation is unavailable
+     */
+    String versionedKey(Object key) {
+        try {
+            return cacheGeneration.get(getName()) + ":" + key;
+        } catch (RuntimeException e) {
+            if (!ignoreException) {
+                throw e;
+            }
+            log.error("CacheGeneration#get failed: [cache={}]: {}", getName(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Build the keys of the current generation, which is read only once
+     *
+     * @return the keys with the generation, or null when the generation is unavailable
+     */
+    List<String> versionedKeys(List<?> keys) {
+        String prefix = versionedKey("");
+        if (prefix == null) {
+            return null;
+        }
+        List<String> versionedKeys = new ArrayList<>(keys.size());
+        for (Object key : keys) {
+            versionedKeys.add(prefix + key);
+        }
+        return versionedKeys;
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        String versionedKey = versionedKey(key);
+        return versionedKey == null ? null : delegate.get(versionedKey);
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        String versionedKey = versionedKey(key);
+        return versionedKey == null ? null : delegate.get(versionedKey, type);
+    }
+
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String versionedKey = versionedKey(key);
+        if (versionedKey == null) {
+            try {
+                return valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+        }
+        return delegate.get(versionedKey, valueLoader);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String versionedKey = versionedKey(key);
+        if (versionedKey != null) {
+            delegate.put(versionedKey, value);
+        }
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        String versionedKey = versionedKey(key);
+        return versionedKey == null ? null : delegate.putIfAbsent(versionedKey, value);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String versionedKey = versionedKey(key);
+        if (versionedKey != null) {
+            delegate.evict(versionedKey);
+        }
+    }
+
+    /**
+     * Increment the generation, the entries of the old generation are never hit again.
+     */
+    @Override
+    public void clear() {
+        try {
+            cacheGeneration.increment(getName());
+        } catch (RuntimeException e) {
+            if (!ignoreException) {
+                throw e;
+            }
+            log.error("CacheGeneration#increment failed: [cache={}]: {}", getName(), e.getMessage());
+        }
+    }
+}
@@ -4,7 +4,10 @@ import lombok.SneakyThrows;
 import org.springframework.context.ApplicationContextInitializer;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.ConfigurableEnvironment;
+import win.doyto.query.cache.LocalCacheGeneration;
 import win.doyto.query.core.Dialect;
+import win.doyto.query.core.FieldAccessorFactory;
+import win.doyto.query.core.MemoryIsolation;
 
 /**
  * DoytoQueryInitializer
@@ -24,8 +27,54 @@ public class DoytoQueryInitializer implements ApplicationContextInitializer<Conf
 
         globalConfiguration.setIgnoreCacheException(environment.getProperty(DOYTO_QUERY_CONFIG + "ignore-cache-exception", boolean.class, globalConfiguration.isIgnoreCacheException()));
 
+        globalConfiguration.setSqlCacheSize(environment.getProperty(DOYTO_QUERY_CONFIG + "sql-cache-size", int.class, globalConfiguration.getSqlCacheSize()));
+
+        globalConfiguration.setInListPadding(environment.getProperty(DOYTO_QUERY_CONFIG + "in-list-padding", boolean.class, globalConfiguration.isInListPadding()));
+
+        globalConfiguration.setMaxInListSize(environment.getProperty(DOYTO_QUERY_CONFIG + "max-in-list-size", int.class, globalConfiguration.getMaxInListSize()));
+
+        globalConfiguration.setBatchInsertChunkSize(environment.getProperty(DOYTO_QUERY_CONFIG + "batch-insert-chunk-size", int.class, globalConfiguration.getBatchInsertChunkSize()));
+
+        globalConfiguration.setBatchInsertRewrite(environment.getProperty(DOYTO_QUERY_CONFIG + "batch-insert-rewrite", boolean.class, globalConfiguration.isBatchInsertRewrite()));
+
+        globalConfiguration.setFetchSize(environment.getProperty(DOYTO_QUERY_CONFIG + "fetch-size", int.class, globalConfiguration.getFetchSize()));
+
+        globalConfiguration.setParallelPage(environment.getProperty(DOYTO_QUERY_CONFIG + "parallel-page", boolean.class, globalConfiguration.isParallelPage()));
+
+        globalConfiguration.setPageParallelism(environment.getProperty(DOYTO_QUERY_CONFIG + "page-parallelism", int.class, globalConfiguration.getPageParallelism()));
+
+        globalConfiguration.setSkipCountForPartialPage(environment.getProperty(DOYTO_QUERY_CONFIG + "skip-count-for-partial-page", boolean.class, globalConfiguration.isSkipCountForPartialPage()));
+
+        globalConfiguration.setParallelSortThreshold(environment.getProperty(DOYTO_QUERY_CONFIG + "parallel-sort-threshold", int.class, globalConfiguration.getParallelSortThreshold()));
+
+        globalConfiguration.setMemoryIsolation(environment.getProperty(DOYTO_QUERY_CONFIG + "memory-isolation", MemoryIsolation.class, globalConfiguration.getMemoryIsolation()));
+
+        globalConfiguration.setSlowQueryThreshold(environment.getProperty(DOYTO_QUERY_CONFIG + "slow-query-threshold", long.class, globalConfiguration.getSlowQueryThreshold()));
+
+        globalConfiguration.setSqlLogSampleRate(environment.getProperty(DOYTO_QUERY_CONFIG + "sql-log-sample-rate", double.class, globalConfiguration.getSqlLogSampleRate()));
+
+        globalConfiguration.setCacheWriteQueueSize(environment.getProperty(DOYTO_QUERY_CONFIG + "cache-write-queue-size", int.class, globalConfiguration.getCacheWriteQueueSize()));
+
+        globalConfiguration.setCacheWriteBatchSize(environment.getProperty(DOYTO_QUERY_CONFIG + "cache-write-batch-size", int.class, globalConfiguration.getCacheWriteBatchSize()));
+
+        globalConfiguration.setCacheWriteTimeout(environment.getProperty(DOYTO_QUERY_CONFIG + "cache-write-timeout", long.class, globalConfiguration.getCacheWriteTimeout()));
+
+        globalConfiguration.setCacheLoadTimeout(environment.getProperty(DOYTO_QUERY_CONFIG + "cache-load-timeout", long.class, globalConfiguration.getCacheLoadTimeout()));
+
+        globalConfiguration.setQueryCacheKeyHash(environment.getProperty(DOYTO_QUERY_CONFIG + "query-cache-key-hash", boolean.class, globalConfiguration.isQueryCacheKeyHash()));
+
+        globalConfiguration.setQueryTokenTtl(environment.getProperty(DOYTO_QUERY_CONFIG + "query-token-ttl", long.class, globalConfiguration.getQueryTokenTtl()));
+
+        if (environment.getProperty(DOYTO_QUERY_CONFIG + "versioned-cache-clear", boolean.class, false) && globalConfiguration.getCacheGeneration() == null) {
+            globalConfiguration.setCacheGeneration(new LocalCacheGeneration());
+        }
+
         String dialectClass = environment.getProperty(DOYTO_QUERY_CONFIG + "dialect", globalConfiguration.getDialect().getClass().getName());
         Dialect dialect = (Dialect) Class.forName(dialectClass).getDeclaredConstructor().newInstance();
         globalConfiguration.setDialect(dialect);
+
+        String fieldAccessorFactoryClass = environment.getProperty(DOYTO_QUERY_CONFIG + "field-accessor-factory", globalConfiguration.getFieldAccessorFactory().getClass().getName());
+        FieldAccessorFactory fieldAccessorFactory = (FieldAccessorFactory) Class.forName(fieldAccessorFactoryClass).getDeclaredConstructor().newInstance();
+        globalConfiguration.setFieldAccessorFactory(fieldAccessorFactory);
     }
 }
@@ -4,7 +4,16 @@ import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
+import win.doyto.query.cache.CacheGeneration;
 import win.doyto.query.core.Dialect;
+import win.doyto.query.core.FieldAccessorFactory;
+import win.doyto.query.core.MemoryIsolation;
+import win.doyto.query.core.SqlListener;
+import win.doyto.query.core.SqlLogger;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * GlobalConfiguration
@@ -18,7 +27,29 @@ public class GlobalConfiguration {
 
     private boolean mapCamelCaseToUnderscore;
     private boolean ignoreCacheException = true;
+    private int sqlCacheSize = 256;
+    private boolean inListPadding;
+    private int maxInListSize;
+    private int batchInsertChunkSize = 1000;
+    private boolean batchInsertRewrite = false;
+    private int fetchSize;
+    private boolean parallelPage;
+    private int pageParallelism = 16;
+    private boolean skipCountForPartialPage;
+    private int parallelSortThreshold = 10000;
+    private MemoryIsolation memoryIsolation = MemoryIsolation.SERIALIZATION;
+    private long slowQueryThreshold;
+    private double sqlLogSampleRate;
+    private int cacheWriteQueueSize = 10000;
+    private int cacheWriteBatchSize = 100;
+    private long cacheWriteTimeout = 10;
+    private long cacheLoadTimeout = 1000;
+    private boolean queryCacheKeyHash;
+    private long queryTokenTtl;
+    private CacheGeneration cacheGeneration;
+    private List<SqlListener> sqlListeners = new CopyOnWriteArrayList<>(Collections.singletonList(new SqlLogger()));
     private Dialect dialect = new MySQLDialect();
+    private FieldAccessorFactory fieldAccessorFactory = new MethodHandleAccessorFactory();
 
     public static GlobalConfiguration instance() {
         return Singleton.instance;
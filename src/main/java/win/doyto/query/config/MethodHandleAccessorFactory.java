@@ -0,0 +1,75 @@
+package win.doyto.query.config;
+
+import lombok.AllArgsConstructor;
+import lombok.SneakyThrows;
+import org.apache.commons.lang3.StringUtils;
+import win.doyto.query.core.FieldAccessor;
+import win.doyto.query.core.FieldAccessorFactory;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+/**
+ * MethodHandleAccessorFactory
+ * <p>
+ * Resolve the getter/setter of a field into {@link MethodHandle}s once,
+ * and fall back to the field itself when the getter/setter is absent.
+ *
+ * @author f0rb on 2020-02-12
+ */
+class MethodHandleAccessorFactory implements FieldAccessorFactory {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    @Override
+    @SneakyThrows
+    public FieldAccessor create(Field field) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        field.setAccessible(true);
+
+        String capitalized = StringUtils.capitalize(field.getName());
+        String prefix = field.getType() == boolean.class ? "is" : "get";
+        Method getterMethod = findMethod(field.getDeclaringClass(), prefix + capitalized);
+        MethodHandle getter = getterMethod != null ? lookup.unreflect(getterMethod) : lookup.unreflectGetter(field);
+
+        Method setterMethod = findMethod(field.getDeclaringClass(), "set" + capitalized, field.getType());
+        MethodHandle setter = setterMethod != null ? lookup.unreflect(setterMethod) : lookup.unreflectSetter(field);
+
+        return new MethodHandleAccessor(getter.asType(GETTER_TYPE), setter.asType(SETTER_TYPE));
+    }
+
+    private static Method findMethod(Class<?> clazz, String name, Class<?>... parameterTypes) {
+        for (Class<?> current = clazz; current != null && current != Object.class; current = current.getSuperclass()) {
+            try {
+                Method method = current.getDeclaredMethod(name, parameterTypes);
+                method.setAccessible(true);
+                return method;
+            } catch (NoSuchMethodException e) {
+                // try super class
+            }
+        }
+        return null;
+    }
+
+    @AllArgsConstructor
+    private static final class MethodHandleAccessor implements FieldAccessor {
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        @Override
+        @SneakyThrows
+        public Object get(Object target) {
+            return (Object) getter.invokeExact(target);
+        }
+
+        @Override
+        @SneakyThrows
+        public void set(Object target, Object value) {
+            setter.invokeExact(target, value);
+        }
+    }
+}
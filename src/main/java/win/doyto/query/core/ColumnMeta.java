@@ -4,8 +4,11 @@ import lombok.AllArgsConstructor;
 import org.apache.commons.lang3.StringUtils;
 import win.doyto.query.annotation.Enumerated;
 
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.stream.Collectors;
 import javax.persistence.EnumType;
 
 import static win.doyto.query.core.CommonUtil.convertColumn;
@@ -36,25 +39,30 @@ final class ColumnMeta {
     }
 
     @SuppressWarnings("unchecked")
-    private static void appendArgs(String ex, Object value, List<Object> argList) {
+    static void appendArgs(String ex, Object value, List<Object> argList) {
         if (value instanceof Collection) {
-            Collection<Object> collection = (Collection<Object>) value;
-            if (collection.isEmpty()) {
-                return;
-            }
-            Object next = collection.iterator().next();
-            if (next instanceof Enum) {
-                Enumerated enumerated = next.getClass().getAnnotation(Enumerated.class);
-                boolean isString = enumerated != null && enumerated.value() == EnumType.STRING;
-                collection.stream()
-                          .map(element -> isString ? element.toString() : ((Enum) element).ordinal())
-                          .forEach(argList::add);
-            } else {
-                argList.addAll(collection);
-            }
+            List<Object> args = toArgs((Collection<Object>) value);
+            argList.addAll(args);
+            InClause.pad(argList, args.size(), InClause.paddedSize(args.size()));
         } else if (ex.contains(REPLACE_HOLDER)) {
             argList.add(value);
         }
     }
 
+    @SuppressWarnings("unchecked")
+    static List<Object> toArgs(Collection<Object> collection) {
+        if (collection.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Object next = collection.iterator().next();
+        if (next instanceof Enum) {
+            Enumerated enumerated = next.getClass().getAnnotation(Enumerated.class);
+            boolean isString = enumerated != null && enumerated.value() == EnumType.STRING;
+            return collection.stream()
+                             .map(element -> isString ? element.toString() : ((Enum) element).ordinal())
+                             .collect(Collectors.toList());
+        }
+        return collection instanceof List ? (List<Object>) collection : new ArrayList<>(collection);
+    }
+
 }
@@ -9,11 +9,18 @@ import org.apache.commons.lang3.reflect.FieldUtils;
 import org.apache.commons.lang3.reflect.MethodUtils;
 import win.doyto.query.config.GlobalConfiguration;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.persistence.*;
@@ -30,6 +37,9 @@ class CommonUtil {
     private static final Pattern PTN_$EX = Pattern.compile("\\$\\{(\\w+)}");
     private static final Pattern PTN_CAPITAL_CHAR = Pattern.compile("([A-Z])");
     private static final Pattern PTN_SPLIT_OR = Pattern.compile("Or(?=[A-Z])");
+    private static final Map<Field, FieldAccessor> accessorMap = new ConcurrentHashMap<>();
+    private static final Map<Field, FieldAccessor> fieldAccessorMap = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, Map<String, Function<Object, Object>>> getterMap = new ConcurrentHashMap<>();
 
     static boolean isDynamicTable(String input) {
         return PTN_$EX.matcher(input).find();
@@ -54,26 +64,41 @@ class CommonUtil {
     }
 
     static Object readFieldGetter(Object target, String fieldName) {
-        Object value;
-        try {
-            value = MethodUtils.invokeMethod(target, true, "get" + StringUtils.capitalize(fieldName));
-        } catch (IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
-            log.warn("is/get调用异常 : {}-{}", e.getClass().getName(), e.getMessage());
-            value = readField(target, fieldName);
+        Class<?> clazz = target.getClass();
+        return getterMap.computeIfAbsent(clazz, c -> new ConcurrentHashMap<>())
+                        .computeIfAbsent(fieldName, name -> getterAccessor(clazz, name))
+                        .apply(target);
+    }
+
+    /**
+     * Resolve the reader of the getter, or of the field when the getter is absent, once for each class and name.
+     */
+    private static Function<Object, Object> getterAccessor(Class<?> clazz, String fieldName) {
+        Field field = FieldUtils.getField(clazz, fieldName, true);
+        if (field != null) {
+            return accessor(field)::get;
         }
-        return value;
+        String getterName = "get" + StringUtils.capitalize(fieldName);
+        Method getter = MethodUtils.getMatchingMethod(clazz, getterName);
+        if (getter == null) {
+            return target -> {
+                log.warn("is/get调用异常 : {}-{}", NoSuchMethodException.class.getName(), getterName);
+                return null;
+            };
+        }
+        getter.setAccessible(true);
+        return target -> {
+            try {
+                return getter.invoke(target);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                log.warn("is/get调用异常 : {}-{}", e.getClass().getName(), e.getMessage());
+                return null;
+            }
+        };
     }
 
     static Object readFieldGetter(Field field, Object target) {
-        Object value;
-        try {
-            String fieldName = field.getName();
-            String prefix = field.getType().isAssignableFrom(boolean.class) ? "is" : "get";
-            value = MethodUtils.invokeMethod(target, true, prefix + StringUtils.capitalize(fieldName));
-        } catch (IllegalAccessException | NoSuchMethodException | InvocationTargetException e) {
-            log.warn("is/get调用异常 : {}-{}", e.getClass().getName(), e.getMessage());
-            value = readField(field, target);
-        }
+        Object value = accessor(field).get(target);
         if (value instanceof Enum) {
             Enumerated enumerated = field.getAnnotation(Enumerated.class);
             if (enumerated != null && enumerated.value() == EnumType.STRING) {
@@ -85,9 +110,23 @@ class CommonUtil {
         return value;
     }
 
-    @SneakyThrows
+    /**
+     * The accessor created by {@link GlobalConfiguration#getFieldAccessorFactory()},
+     * for reading through the getter like {@link #readFieldGetter} and writing through the setter like a bean.
+     */
+    static FieldAccessor accessor(Field field) {
+        return accessorMap.computeIfAbsent(field, f -> GlobalConfiguration.instance().getFieldAccessorFactory().create(f));
+    }
+
+    /**
+     * The accessor of the field itself, never running the getter/setter.
+     */
+    static FieldAccessor fieldAccessor(Field field) {
+        return fieldAccessorMap.computeIfAbsent(field, FieldHandleAccessor::new);
+    }
+
     static Object readField(Field field, Object target) {
-        return FieldUtils.readField(field, target, true);
+        return fieldAccessor(field).get(target);
     }
 
     static Object readField(Object target, String fieldName) {
@@ -102,9 +141,8 @@ class CommonUtil {
         return field;
     }
 
-    @SneakyThrows
     static void writeField(Field field, Object target, Object value) {
-        FieldUtils.writeField(field, target, value, true);
+        fieldAccessor(field).set(target, value);
     }
 
     public static boolean fieldFilter(Field field) {
@@ -136,7 +174,7 @@ class CommonUtil {
                 camelCaseToUnderscore(columnName) : columnName;
     }
 
-    private static String camelCaseToUnderscore(String camel) {
+    static String camelCaseToUnderscore(String camel) {
         return PTN_CAPITAL_CHAR.matcher(camel).replaceAll("_$1").toLowerCase();
     }
 
@@ -180,4 +218,32 @@ class CommonUtil {
         String fieldName = dialect.wrapLabel(field.getName());
         return columnName.equalsIgnoreCase(fieldName) ? columnName : columnName + " AS " + fieldName;
     }
+
+    private static final class FieldHandleAccessor implements FieldAccessor {
+        private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+        private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+        private final MethodHandle getter;
+        private final MethodHandle setter;
+
+        @SneakyThrows
+        private FieldHandleAccessor(Field field) {
+            field.setAccessible(true);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            getter = lookup.unreflectGetter(field).asType(GETTER_TYPE);
+            setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+        }
+
+        @Override
+        @SneakyThrows
+        public Object get(Object target) {
+            return (Object) getter.invokeExact(target);
+        }
+
+        @Override
+        @SneakyThrows
+        public void set(Object target, Object value) {
+            setter.invokeExact(target, value);
+        }
+    }
 }
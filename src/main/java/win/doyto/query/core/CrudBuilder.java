@@ -100,6 +100,28 @@ final class CrudBuilder<E extends Persistable<?>> extends QueryBuilder {
             readValueToArgList(fields, entity, argList);
             insertSql.append(SEPARATOR).append(wildInsertValue);
         }
+        appendOnDuplicate(insertSql, columns);
+
+        String sql = replaceHolderInString(next, insertSql.toString());
+        return new SqlAndArgs(sql, argList);
+    }
+
+    /**
+     * Build the insert sql for a single row, which is shared by all the entities in a JDBC batch.
+     */
+    public String buildCreateSql(E entity, String... columns) {
+        StringBuilder insertSql = new StringBuilder(buildInsertSql(tableName, insertColumns, wildInsertValue));
+        appendOnDuplicate(insertSql, columns);
+        return replaceHolderInString(entity, insertSql.toString());
+    }
+
+    public Object[] buildCreateArgs(E entity) {
+        List<Object> argList = new ArrayList<>(fieldsSize);
+        readValueToArgList(fields, entity, argList);
+        return argList.toArray();
+    }
+
+    private static void appendOnDuplicate(StringBuilder insertSql, String... columns) {
         if (columns.length > 0) {
             insertSql.append(" ON DUPLICATE KEY UPDATE ");
             StringJoiner stringJoiner = new StringJoiner(SEPARATOR, columns.length);
@@ -108,9 +130,6 @@ final class CrudBuilder<E extends Persistable<?>> extends QueryBuilder {
             }
             insertSql.append(stringJoiner.toString());
         }
-
-        String sql = replaceHolderInString(next, insertSql.toString());
-        return new SqlAndArgs(sql, argList);
     }
 
     public String buildUpdateAndArgs(E entity, List<Object> argList) {
@@ -1,9 +1,15 @@
 package win.doyto.query.core;
 
+import org.springframework.beans.BeanUtils;
 import win.doyto.query.entity.Persistable;
 
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * DataAccess
@@ -14,16 +20,65 @@ public interface DataAccess<E extends Persistable<I>, I extends Serializable, Q>
 
     List<E> query(Q query);
 
+    /**
+     * Query the entities lazily, the returned stream should be closed after use.
+     */
+    default Stream<E> stream(Q query) {
+        return query(query).stream();
+    }
+
+    default void forEach(Q query, Consumer<E> action) {
+        try (Stream<E> stream = stream(query)) {
+            stream.forEach(action);
+        }
+    }
+
     long count(Q query);
 
     <V> List<V> queryColumns(Q q, Class<V> clazz, String... columns);
 
+    /**
+     * Query the columns declared by the persistent fields of the projection class.
+     *
+     * @param q               query object
+     * @param projectionClass the class with the fields to select
+     * @return the projections
+     */
+    default <V> List<V> queryProjection(Q q, Class<V> projectionClass) {
+        List<E> entities = query(q);
+        List<V> list = new ArrayList<>(entities.size());
+        for (E e : entities) {
+            V v = BeanUtils.instantiateClass(projectionClass);
+            BeanUtils.copyProperties(e, v);
+            list.add(v);
+        }
+        return list;
+    }
+
     default E get(I id) {
         return get(IdWrapper.build(id));
     }
 
     E get(IdWrapper<I> w);
 
+    default List<E> getAll(Collection<I> ids) {
+        return getAllByIdWrappers(ids.stream().map(IdWrapper::build).collect(Collectors.toList()));
+    }
+
+    /**
+     * Get the entities by the id wrappers
+     *
+     * @param ws the id wrappers, maybe resolved to different tables
+     * @return the entities in the order of <code>ws</code>, null for the missing ones
+     */
+    default List<E> getAllByIdWrappers(Collection<? extends IdWrapper<I>> ws) {
+        List<E> list = new ArrayList<>(ws.size());
+        for (IdWrapper<I> w : ws) {
+            list.add(get(w));
+        }
+        return list;
+    }
+
     default int delete(I id) {
         return delete(IdWrapper.build(id));
     }
@@ -47,6 +102,22 @@ public interface DataAccess<E extends Persistable<I>, I extends Serializable, Q>
 
     int patch(E e);
 
+    default int batchUpdate(Iterable<E> entities) {
+        int count = 0;
+        for (E entity : entities) {
+            count += update(entity);
+        }
+        return count;
+    }
+
+    default int batchPatch(Iterable<E> entities) {
+        int count = 0;
+        for (E entity : entities) {
+            count += patch(entity);
+        }
+        return count;
+    }
+
     int patch(E e, Q q);
 
     List<I> queryIds(Q query);
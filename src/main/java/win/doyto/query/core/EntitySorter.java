@@ -0,0 +1,165 @@
+package win.doyto.query.core;
+
+import lombok.AllArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import win.doyto.query.config.GlobalConfiguration;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.function.Function;
+
+import static win.doyto.query.core.CommonUtil.toCamelCase;
+
+/**
+ * EntitySorter
+ * <p>
+ * Composite comparator of a sort spec like <i>a,desc;field(b,'x','y');c,asc</i> for {@link MemoryDataAccess},
+ * built once per sort spec.
+ * <ul>
+ * <li>The sort keys of each entity are extracted once before sorting.</li>
+ * <li>Nulls are the smallest like in MySQL, and <i>field(col,v1,v2)</i> ranks the values
+ * not in the list before <i>v1</i> like the FIELD function.</li>
+ * <li>A page is selected by a bounded heap of size <i>offset + limit</i> instead of sorting all the entities.</li>
+ * <li>The entities are sorted in parallel when the amount reaches <code>parallelSortThreshold</code>.</li>
+ * </ul>
+ * Ties keep the order of the input.
+ *
+ * @author f0rb on 2020-02-20
+ */
+final class EntitySorter<E> {
+
+    private static final String FIELD_PREFIX = "field(";
+
+    private final Function<E, Object>[] extractors;
+    private final boolean[] desc;
+    private final Comparator<Row<E>> rowComparator;
+
+    @SuppressWarnings("unchecked")
+    EntitySorter(Class<E> entityClass, String sort) {
+        String[] orders = sort.split(";");
+        extractors = new Function[orders.length];
+        desc = new boolean[orders.length];
+        for (int i = 0; i < orders.length; i++) {
+            String order = orders[i];
+            if (order.startsWith(FIELD_PREFIX)) {
+                String[] parts = order.substring(FIELD_PREFIX.length(), order.length() - 1).split(",");
+                List<String> values = new ArrayList<>(parts.length - 1);
+                for (int j = 1; j < parts.length; j++) {
+                    values.add(StringUtils.strip(parts[j], "'"));
+                }
+                Function<E, Object> extractor = extractor(entityClass, parts[0]);
+                extractors[i] = e -> values.indexOf(String.valueOf(KeysetCursor.toArg(extractor.apply(e)))) + 1;
+            } else {
+                String[] pd = order.split(",");
+                extractors[i] = extractor(entityClass, pd[0]);
+                desc[i] = !"asc".equalsIgnoreCase(pd[1]);
+            }
+        }
+        rowComparator = this::compare;
+    }
+
+    private static <E> Function<E, Object> extractor(Class<E> entityClass, String column) {
+        String property = toCamelCase(column);
+        Field field = FieldUtils.getField(entityClass, property, true);
+        if (field == null) {
+            throw new IllegalArgumentException("Sort field not found: " + column);
+        }
+        FieldAccessor accessor = CommonUtil.fieldAccessor(field);
+        return accessor::get;
+    }
+
+    @SuppressWarnings("unchecked")
+    private int compare(Row<E> r1, Row<E> r2) {
+        for (int i = 0; i < desc.length; i++) {
+            Object k1 = r1.keys[i];
+            Object k2 = r2.keys[i];
+            int ret;
+            if (k1 == null || k2 == null) {
+                ret = k1 == k2 ? 0 : (k1 == null ? -1 : 1);
+            } else {
+                ret = ((Comparable<Object>) k1).compareTo(k2);
+            }
+            if (ret != 0) {
+                return desc[i] ? -ret : ret;
+            }
+        }
+        return Integer.compare(r1.index, r2.index);
+    }
+
+    Comparator<E> comparator() {
+        return (e1, e2) -> compare(toRow(e1, 0), toRow(e2, 0));
+    }
+
+    private Row<E> toRow(E entity, int index) {
+        Object[] keys = new Object[extractors.length];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = extractors[i].apply(entity);
+        }
+        return new Row<>(entity, keys, index);
+    }
+
+    /**
+     * Sort the entities and take a page
+     *
+     * @param entities the entities to sort
+     * @param offset   the amount of the entities to skip
+     * @param limit    the max amount of the entities to return, negative for no limit
+     * @return the sorted page
+     */
+    List<E> sort(List<E> entities, int offset, int limit) {
+        int size = entities.size();
+        int k = limit < 0 ? size : (int) Math.min(size, (long) offset + limit);
+        if (offset >= k) {
+            return new ArrayList<>();
+        }
+        Row<E>[] rows = k <= size / 2 ? topK(entities, k) : sortAll(entities);
+        List<E> result = new ArrayList<>(k - offset);
+        for (int i = offset; i < k; i++) {
+            result.add(rows[i].entity);
+        }
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Row<E>[] sortAll(List<E> entities) {
+        Row<E>[] rows = new Row[entities.size()];
+        int i = 0;
+        for (E entity : entities) {
+            rows[i] = toRow(entity, i);
+            i++;
+        }
+        int threshold = GlobalConfiguration.instance().getParallelSortThreshold();
+        if (threshold > 0 && rows.length >= threshold) {
+            Arrays.parallelSort(rows, rowComparator);
+        } else {
+            Arrays.sort(rows, rowComparator);
+        }
+        return rows;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Row<E>[] topK(List<E> entities, int k) {
+        PriorityQueue<Row<E>> heap = new PriorityQueue<>(k + 1, rowComparator.reversed());
+        int i = 0;
+        for (E entity : entities) {
+            Row<E> row = toRow(entity, i++);
+            if (heap.size() < k) {
+                heap.add(row);
+            } else if (rowComparator.compare(row, heap.peek()) < 0) {
+                heap.poll();
+                heap.add(row);
+            }
+        }
+        Row<E>[] rows = heap.toArray(new Row[0]);
+        Arrays.sort(rows, rowComparator);
+        return rows;
+    }
+
+    @AllArgsConstructor
+    private static final class Row<E> {
+        private final E entity;
+        private final Object[] keys;
+        private final int index;
+    }
+}
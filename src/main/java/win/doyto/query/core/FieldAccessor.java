@@ -0,0 +1,15 @@
+package win.doyto.query.core;
+
+/**
+ * FieldAccessor
+ * <p>
+ * Read and write a field of an object, through the getter/setter if exists.
+ *
+ * @author f0rb on 2020-02-12
+ */
+public interface FieldAccessor {
+
+    Object get(Object target);
+
+    void set(Object target, Object value);
+}
@@ -0,0 +1,18 @@
+package win.doyto.query.core;
+
+import java.lang.reflect.Field;
+
+/**
+ * FieldAccessorFactory
+ * <p>
+ * Create a {@link FieldAccessor} for a field. It is invoked once per field
+ * and the created accessor is cached and shared by the getter reads of the builders
+ * and the row mappers. The plain field reads/writes do not go through it.
+ *
+ * @author f0rb on 2020-02-12
+ */
+@FunctionalInterface
+public interface FieldAccessorFactory {
+
+    FieldAccessor create(Field field);
+}
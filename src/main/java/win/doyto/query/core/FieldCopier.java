@@ -0,0 +1,63 @@
+package win.doyto.query.core;
+
+import org.apache.commons.lang3.SerializationUtils;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.io.Serializable;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+
+/**
+ * FieldCopier
+ * <p>
+ * Shallow copy of an entity through the constructor without arguments and the field accessors
+ * of all the instance fields, resolved once per class. The getters/setters are not invoked.
+ * Falls back to Java serialization when the class has no such constructor.
+ *
+ * @author f0rb on 2020-02-21
+ */
+final class FieldCopier<E extends Serializable> {
+
+    private final Constructor<E> constructor;
+    private final FieldAccessor[] accessors;
+
+    FieldCopier(Class<E> clazz) {
+        constructor = findConstructor(clazz);
+        accessors = Arrays.stream(FieldUtils.getAllFields(clazz))
+                          .filter(field -> !Modifier.isStatic(field.getModifiers()) && !Modifier.isFinal(field.getModifiers()))
+                          .filter(field -> !field.getName().startsWith("$"))
+                          .map(CommonUtil::fieldAccessor)
+                          .toArray(FieldAccessor[]::new);
+    }
+
+    private static <E> Constructor<E> findConstructor(Class<E> clazz) {
+        try {
+            Constructor<E> constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    E copy(E origin) {
+        if (origin == null) {
+            return null;
+        }
+        if (constructor == null || origin.getClass() != constructor.getDeclaringClass()) {
+            return SerializationUtils.clone(origin);
+        }
+        E target;
+        try {
+            target = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            return SerializationUtils.clone(origin);
+        }
+        for (FieldAccessor accessor : accessors) {
+            accessor.set(target, accessor.get(origin));
+        }
+        return target;
+    }
+}
@@ -8,8 +8,6 @@ import win.doyto.query.annotation.*;
 
 import java.lang.reflect.Field;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.IntStream;
 
 import static win.doyto.query.core.CommonUtil.wrapWithParenthesis;
@@ -23,8 +21,8 @@ import static win.doyto.query.core.Constant.*;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 final class FieldProcessor {
 
-    private static final Map<Field, Processor> FIELD_PROCESSOR_MAP = new ConcurrentHashMap<>();
     public static final Processor EMPTY_PROCESSOR = ((argList, value) -> EMPTY);
+    private static final Processor QUERY_PROCESSOR = new QueryProcessor();
 
     static String resolvedNestedQueries(List<Object> argList, Object value, NestedQueries nestedQueries, Processor processor) {
         String rest = resolvedNestedQueries(nestedQueries);
@@ -65,7 +63,7 @@ final class FieldProcessor {
         return subQuery.column() + SPACE + subQuery.op() + SPACE + wrapWithParenthesis(clause);
     }
 
-    static void init(Field field) {
+    static Processor build(Field field) {
         String fieldName = field.getName();
         Class<?> fieldType = field.getType();
         //Ternary operators should not be nested
@@ -75,45 +73,137 @@ final class FieldProcessor {
         if (boolean.class.isAssignableFrom(fieldType)) {
             processor = EMPTY_PROCESSOR;
         } else if (PageQuery.class.isAssignableFrom(fieldType)){
-            processor = (argList, value) -> QueryBuilder.buildWhere("", value, argList);
+            processor = QUERY_PROCESSOR;
         } else {
             processor = new DefaultProcessor(fieldName);
         }
         if (field.isAnnotationPresent(QueryTableAlias.class)) {
             String columnName = field.getAnnotation(QueryTableAlias.class).value();
-            FIELD_PROCESSOR_MAP.put(field, (argList, value) -> QuerySuffix.buildAndSql(argList, value, columnName + "." + fieldName));
+            return QuerySuffix.compile(columnName + "." + fieldName);
         } else if (field.isAnnotationPresent(QueryField.class)) {
             String andSQL = field.getAnnotation(QueryField.class).and();
-            FIELD_PROCESSOR_MAP.put(field, (argList, value) -> {
-                IntStream.range(0, StringUtils.countMatches(andSQL, REPLACE_HOLDER)).mapToObj(i -> value).forEach(argList::add);
+            int holderCount = StringUtils.countMatches(andSQL, REPLACE_HOLDER);
+            return (argList, value) -> {
+                for (int i = 0; i < holderCount; i++) {
+                    argList.add(value);
+                }
                 return andSQL;
-            });
+            };
         } else if (field.isAnnotationPresent(SubQuery.class)) {
-            SubQuery subQuery = field.getAnnotation(SubQuery.class);
-            FIELD_PROCESSOR_MAP.put(field, (argList, value) -> resolvedSubQuery(argList, value, subQuery, processor));
+            return new SubQueryProcessor(field.getAnnotation(SubQuery.class), processor);
         } else if (field.isAnnotationPresent(NestedQueries.class)) {
-            NestedQueries nestedQueries = field.getAnnotation(NestedQueries.class);
-            FIELD_PROCESSOR_MAP.put(field, (argList, value) -> resolvedNestedQueries(argList, value, nestedQueries, processor));
+            return new NestedQueriesProcessor(field.getAnnotation(NestedQueries.class), processor);
         } else {
-            FIELD_PROCESSOR_MAP.put(field, (argList, value) -> QuerySuffix.buildAndSql(argList, value, fieldName));
+            return QuerySuffix.compile(fieldName);
         }
     }
 
-    static String execute(List<Object> argList, Field field, Object value) {
-        return FIELD_PROCESSOR_MAP.get(field).process(argList, value);
-    }
-
     interface Processor {
         String process(List<Object> argList, Object value);
+
+        /**
+         * Append the args for the value without building the condition,
+         * used when the sql for the shape of the query is already cached.
+         */
+        default void bind(List<Object> argList, Object value) {
+            process(argList, value);
+        }
+
+        /**
+         * The shape of the condition built for the value. Values with the same shape build the same sql.
+         *
+         * @return 0 when no condition will be built, a negative number when the shape could not be decided
+         */
+        default int shape(Object value) {
+            return 1;
+        }
     }
 
-    @AllArgsConstructor
     static class DefaultProcessor implements Processor {
-        private String fieldName;
+        private final Processor processor;
+
+        DefaultProcessor(String fieldName) {
+            this.processor = QuerySuffix.compile(fieldName);
+        }
+
+        @Override
+        public String process(List<Object> argList, Object value) {
+            return WHERE + processor.process(argList, value);
+        }
+
+        @Override
+        public void bind(List<Object> argList, Object value) {
+            processor.bind(argList, value);
+        }
+
+        @Override
+        public int shape(Object value) {
+            return processor.shape(value);
+        }
+    }
+
+    private static class QueryProcessor implements Processor {
+        @Override
+        public String process(List<Object> argList, Object value) {
+            return QueryBuilder.buildWhere("", value, argList);
+        }
+
+        @Override
+        public int shape(Object value) {
+            return -1;
+        }
+    }
+
+    @AllArgsConstructor
+    private static class SubQueryProcessor implements Processor {
+        private final SubQuery subQuery;
+        private final Processor processor;
 
         @Override
         public String process(List<Object> argList, Object value) {
-            return QuerySuffix.buildWhereSql(argList, value, fieldName);
+            return resolvedSubQuery(argList, value, subQuery, processor);
+        }
+
+        @Override
+        public void bind(List<Object> argList, Object value) {
+            processor.bind(argList, value);
+        }
+
+        @Override
+        public int shape(Object value) {
+            return processor.shape(value);
+        }
+    }
+
+    private static class NestedQueriesProcessor implements Processor {
+        private final NestedQueries nestedQueries;
+        private final Processor processor;
+        private final int holderCount;
+
+        private NestedQueriesProcessor(NestedQueries nestedQueries, Processor processor) {
+            this.nestedQueries = nestedQueries;
+            this.processor = processor;
+            this.holderCount = StringUtils.countMatches(resolvedNestedQueries(nestedQueries), REPLACE_HOLDER);
+        }
+
+        @Override
+        public String process(List<Object> argList, Object value) {
+            return resolvedNestedQueries(argList, value, nestedQueries, processor);
+        }
+
+        @Override
+        public void bind(List<Object> argList, Object value) {
+            for (int i = 0; i < holderCount; i++) {
+                argList.add(value);
+            }
+            if (nestedQueries.appendWhere()) {
+                processor.bind(argList, value);
+            }
+        }
+
+        @Override
+        public int shape(Object value) {
+            return nestedQueries.appendWhere() ? processor.shape(value) : 1;
         }
     }
 
@@ -0,0 +1,171 @@
+package win.doyto.query.core;
+
+import lombok.Getter;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.apache.commons.lang3.reflect.TypeUtils;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.support.JdbcUtils;
+import win.doyto.query.annotation.Enumerated;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+import javax.persistence.EnumType;
+import javax.persistence.Transient;
+
+/**
+ * FieldRowMapper
+ * <p>
+ * Maps the columns of a row by position to the fields of a class.
+ * The reader of each column and the accessor of each field are resolved once,
+ * so that no metadata lookup or property matching is done per row like {@link org.springframework.jdbc.core.BeanPropertyRowMapper}.
+ * <p>
+ * Enums are read by name from the character columns and by ordinal from the numeric columns,
+ * or always by name when the enum or the field is annotated with <code>@Enumerated(EnumType.STRING)</code>.
+ *
+ * @author f0rb on 2020-02-22
+ */
+public final class FieldRowMapper<V> implements RowMapper<V> {
+
+    private final Constructor<V> constructor;
+    private final ColumnReader[] readers;
+    private final FieldAccessor[] accessors;
+
+    /**
+     * The columns to select for the fields, in the order of the fields.
+     */
+    @Getter
+    private final String[] columns;
+
+    /**
+     * Map the columns to the fields in the same order
+     *
+     * @param clazz  the class to create for each row
+     * @param fields the fields of the columns in the order of the columns
+     */
+    public FieldRowMapper(Class<V> clazz, List<Field> fields) {
+        try {
+            constructor = clazz.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("Constructor without arguments not found: " + clazz.getName(), e);
+        }
+        readers = fields.stream().map(field -> reader(field, resolveType(field, clazz))).toArray(ColumnReader[]::new);
+        accessors = fields.stream().map(CommonUtil::accessor).toArray(FieldAccessor[]::new);
+        columns = fields.stream().map(CommonUtil::selectAs).toArray(String[]::new);
+    }
+
+    /**
+     * Map the columns to all the persistent fields of the class, i.e. not static or <code>@Transient</code>.
+     */
+    public static <V> FieldRowMapper<V> of(Class<V> clazz) {
+        return new FieldRowMapper<>(clazz, persistentFields(clazz));
+    }
+
+    static List<Field> persistentFields(Class<?> clazz) {
+        return Arrays.asList(Arrays.stream(FieldUtils.getAllFields(clazz))
+                                   .filter(FieldRowMapper::isPersistent)
+                                   .toArray(Field[]::new));
+    }
+
+    static boolean isPersistent(Field field) {
+        return !field.getName().startsWith("$")              // $jacocoData
+            && !Modifier.isStatic(field.getModifiers())      // static field
+            && !field.isAnnotationPresent(Transient.class)   // Transient field
+            ;
+    }
+
+    /**
+     * Resolve the type variables like the id of {@link win.doyto.query.entity.CommonEntity} against the class.
+     */
+    private static Class<?> resolveType(Field field, Class<?> clazz) {
+        Class<?> type = TypeUtils.getRawType(field.getGenericType(), clazz);
+        return type != null ? type : field.getType();
+    }
+
+    @Override
+    public V mapRow(ResultSet rs, int rowNum) throws SQLException {
+        V target;
+        try {
+            target = constructor.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Failed to create " + constructor.getDeclaringClass().getName(), e);
+        }
+        for (int i = 0; i < readers.length; i++) {
+            Object value = readers[i].read(rs, i + 1);
+            if (value != null) {
+                accessors[i].set(target, value);
+            }
+        }
+        return target;
+    }
+
+    @FunctionalInterface
+    private interface ColumnReader {
+        Object read(ResultSet rs, int index) throws SQLException;
+    }
+
+    @SuppressWarnings({"unchecked", "java:S3776"})
+    private static ColumnReader reader(Field field, Class<?> type) {
+        if (type == String.class) {
+            return ResultSet::getString;
+        } else if (type == Long.class || type == long.class) {
+            return (rs, i) -> {
+                long value = rs.getLong(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == Integer.class || type == int.class) {
+            return (rs, i) -> {
+                int value = rs.getInt(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == Boolean.class || type == boolean.class) {
+            return (rs, i) -> {
+                boolean value = rs.getBoolean(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == Double.class || type == double.class) {
+            return (rs, i) -> {
+                double value = rs.getDouble(i);
+                return rs.wasNull() ? null : value;
+            };
+        } else if (type == BigDecimal.class) {
+            return ResultSet::getBigDecimal;
+        } else if (type == java.util.Date.class || type == java.sql.Timestamp.class) {
+            return ResultSet::getTimestamp;
+        } else if (type.isEnum()) {
+            return enumReader(field, (Class<? extends Enum>) type);
+        }
+        return (rs, i) -> JdbcUtils.getResultSetValue(rs, i, type);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ColumnReader enumReader(Field field, Class<? extends Enum> enumClass) {
+        Enum[] constants = enumClass.getEnumConstants();
+        if (isEnumString(field, enumClass)) {
+            return (rs, i) -> {
+                String name = rs.getString(i);
+                return name == null ? null : Enum.valueOf(enumClass, name);
+            };
+        }
+        return (rs, i) -> {
+            Object value = rs.getObject(i);
+            if (value instanceof Number) {
+                return constants[((Number) value).intValue()];
+            }
+            return value == null ? null : Enum.valueOf(enumClass, value.toString());
+        };
+    }
+
+    private static boolean isEnumString(Field field, Class<? extends Enum> enumClass) {
+        Enumerated enumerated = enumClass.getAnnotation(Enumerated.class);
+        javax.persistence.Enumerated fieldEnumerated = field.getAnnotation(javax.persistence.Enumerated.class);
+        return (enumerated != null && enumerated.value() == EnumType.STRING)
+            || (fieldEnumerated != null && fieldEnumerated.value() == EnumType.STRING);
+    }
+}
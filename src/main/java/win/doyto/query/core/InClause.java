@@ -0,0 +1,121 @@
+package win.doyto.query.core;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.StringUtils;
+import win.doyto.query.config.GlobalConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static win.doyto.query.core.Constant.*;
+
+/**
+ * InClause
+ * <p>
+ * Builds the IN/NOT IN conditions for a list of values.
+ * <ul>
+ * <li>When <code>inListPadding</code> is enabled, the amount of the placeholders is padded
+ * to the next power of two by repeating the last value, so that a query produces
+ * at most log2(n) distinct sql for the statement caches of the database and the driver.</li>
+ * <li>When the size exceeds <code>maxInListSize</code>, the values are split into chunks
+ * joined by OR for IN and by AND for NOT IN.</li>
+ * </ul>
+ *
+ * @author f0rb on 2020-02-13
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class InClause {
+
+    private static final String EMPTY_IN = "(null)";
+
+    /**
+     * Build the condition for the column and append the args
+     *
+     * @param column  the column name
+     * @param op      IN or NOT IN
+     * @param values  the values to bind
+     * @param argList the list to collect the args
+     * @return the condition like <i>id IN (?, ?)</i> or <i>(id IN (?, ?) OR id IN (?, ?))</i>
+     */
+    public static String build(String column, String op, List<?> values, List<Object> argList) {
+        String prefix = column + SPACE + op + SPACE;
+        if (values.isEmpty()) {
+            return prefix + EMPTY_IN;
+        }
+        int maxSize = maxSize();
+        List<String> conditions = new ArrayList<>(values.size() / maxSize + 1);
+        for (int from = 0; from < values.size(); from += maxSize) {
+            int to = Math.min(values.size(), from + maxSize);
+            int paddedSize = paddedSize(to - from, maxSize);
+            appendArgs(values, from, to, paddedSize, argList);
+            conditions.add(prefix + placeHolders(paddedSize));
+        }
+        if (conditions.size() == 1) {
+            return conditions.get(0);
+        }
+        String joiner = op.startsWith("NOT") ? " AND " : SPACE_OR;
+        return CommonUtil.wrapWithParenthesis(StringUtils.join(conditions, joiner));
+    }
+
+    /**
+     * Append the args only, in the same order as {@link #build(String, String, List, List)}.
+     */
+    public static void bind(List<?> values, List<Object> argList) {
+        int maxSize = maxSize();
+        for (int from = 0; from < values.size(); from += maxSize) {
+            int to = Math.min(values.size(), from + maxSize);
+            appendArgs(values, from, to, paddedSize(to - from, maxSize), argList);
+        }
+    }
+
+    /**
+     * The amount of the args bound for <code>size</code> values, which also determines the sql.
+     */
+    public static int argCount(int size) {
+        int maxSize = maxSize();
+        int chunks = size / maxSize;
+        int rest = size % maxSize;
+        return chunks * maxSize + (rest > 0 ? paddedSize(rest, maxSize) : 0);
+    }
+
+    /**
+     * The placeholders for <code>size</code> values without splitting.
+     *
+     * @return the placeholders like <i>(?, ?)</i>
+     */
+    static String placeHolders(int size) {
+        return size == 0 ? EMPTY_IN : CommonUtil.wrapWithParenthesis(StringUtils.repeat(REPLACE_HOLDER, SEPARATOR, size));
+    }
+
+    static int paddedSize(int size) {
+        return paddedSize(size, Integer.MAX_VALUE);
+    }
+
+    private static int paddedSize(int size, int maxSize) {
+        if (size <= 1 || !GlobalConfiguration.instance().isInListPadding()) {
+            return size;
+        }
+        int bucket = Integer.highestOneBit(size - 1) << 1;
+        return bucket > 0 ? Math.min(bucket, maxSize) : size;
+    }
+
+    static void pad(List<Object> argList, int size, int paddedSize) {
+        if (size > 0) {
+            Object last = argList.get(argList.size() - 1);
+            for (int i = size; i < paddedSize; i++) {
+                argList.add(last);
+            }
+        }
+    }
+
+    private static void appendArgs(List<?> values, int from, int to, int paddedSize, List<Object> argList) {
+        argList.addAll(values.subList(from, to));
+        pad(argList, to - from, paddedSize);
+    }
+
+    private static int maxSize() {
+        int maxInListSize = GlobalConfiguration.instance().getMaxInListSize();
+        return maxInListSize > 0 ? maxInListSize : Integer.MAX_VALUE;
+    }
+}
@@ -5,22 +5,26 @@ import org.apache.commons.lang3.reflect.FieldUtils;
 import org.springframework.jdbc.core.*;
 import org.springframework.jdbc.support.GeneratedKeyHolder;
 import org.springframework.jdbc.support.KeyHolder;
+import win.doyto.query.config.GlobalConfiguration;
 import win.doyto.query.entity.Persistable;
+import win.doyto.query.metrics.MetricsRecorder;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
-import java.lang.reflect.Modifier;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.sql.Statement;
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
-import javax.persistence.Transient;
 
 import static win.doyto.query.core.Constant.SEPARATOR;
 
@@ -31,27 +35,33 @@ import static win.doyto.query.core.Constant.SEPARATOR;
  */
 public final class JdbcDataAccess<E extends Persistable<I>, I extends Serializable, Q extends PageQuery> implements DataAccess<E, I, Q> {
 
-    private static final Map<Class, RowMapper> classRowMapperMap = new ConcurrentHashMap<>();
+    private static final Pattern PTN_NON_WORD = Pattern.compile("\\W");
+    private static final ColumnMapRowMapper KEY_MAPPER = new ColumnMapRowMapper();
+
+    private final Map<String, ColumnsMapper<?>> columnsMapperMap = new ConcurrentHashMap<>();
+    private final Map<Class<?>, FieldRowMapper<?>> projectionMap = new ConcurrentHashMap<>();
     private final JdbcOperations jdbcOperations;
     private final RowMapper<E> rowMapper;
     private final CrudBuilder<E> crudBuilder;
     private final String[] columnsForSelect;
     private final boolean isGeneratedId;
+    private final String idLabel;
     private final BiFunction<E, Number, Void> setIdFunc;
+    private final SqlTimer sqlTimer;
 
     @SuppressWarnings("unchecked")
     public JdbcDataAccess(JdbcOperations jdbcOperations, Class<E> entityClass, Class<I> idClass, RowMapper<E> rowMapper) {
         this.jdbcOperations = jdbcOperations;
         this.rowMapper = rowMapper;
         crudBuilder = new CrudBuilder<>(entityClass);
-        columnsForSelect = Arrays
-            .stream(FieldUtils.getAllFields(entityClass))
-            .filter(JdbcDataAccess::shouldRetain)
-            .map(CommonUtil::selectAs)
-            .toArray(String[]::new);
+        sqlTimer = new SqlTimer(entityClass.getSimpleName());
+        columnsForSelect = FieldRowMapper.persistentFields(entityClass).stream()
+                                         .map(CommonUtil::selectAs)
+                                         .toArray(String[]::new);
 
         Field[] idFields = FieldUtils.getFieldsWithAnnotation(entityClass, Id.class);
         isGeneratedId = idFields.length == 1 && idFields[0].isAnnotationPresent(GeneratedValue.class);
+        idLabel = PTN_NON_WORD.matcher(crudBuilder.idColumn).replaceAll("");
 
         if (idClass.isAssignableFrom(Integer.class)) {
             setIdFunc = (e, key) -> {
@@ -71,11 +81,13 @@ public final class JdbcDataAccess<E extends Persistable<I>, I extends Serializab
         }
     }
 
-    private static boolean shouldRetain(Field field) {
-        return !field.getName().startsWith("$")              // $jacocoData
-            && !Modifier.isStatic(field.getModifiers())      // static field
-            && !field.isAnnotationPresent(Transient.class)   // Transient field
-            ;
+    /**
+     * Record the time to build and to execute each SQL statement
+     *
+     * @param metricsRecorder the recorder, or null to record nothing
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        sqlTimer.setMetricsRecorder(metricsRecorder);
     }
 
     @Override
@@ -83,108 +95,355 @@ public final class JdbcDataAccess<E extends Persistable<I>, I extends Serializab
         return queryColumns(q, rowMapper, columnsForSelect);
     }
 
+    @Override
+    public Stream<E> stream(Q q) {
+        long start = sqlTimer.start();
+        SqlAndArgs sqlAndArgs = crudBuilder.buildSelectColumnsAndArgs(q, columnsForSelect);
+        return sqlTimer.stream(start, sqlAndArgs, () -> ResultSetStream.of(jdbcOperations, sqlAndArgs, rowMapper));
+    }
+
+    @Override
+    public void forEach(Q q, Consumer<E> action) {
+        long start = sqlTimer.start();
+        SqlAndArgs sqlAndArgs = crudBuilder.buildSelectColumnsAndArgs(q, columnsForSelect);
+        sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.query(ResultSetStream.creator(sqlAndArgs.sql, sqlAndArgs.args), (ResultSetExtractor<Void>) rs -> {
+            int rowNum = 0;
+            while (rs.next()) {
+                action.accept(rowMapper.mapRow(rs, rowNum++));
+            }
+            return null;
+        }));
+    }
+
+    /**
+     * The split columns and the row mapper are cached by the class and the columns.
+     */
     @Override
     @SuppressWarnings("unchecked")
     public final <V> List<V> queryColumns(Q q, Class<V> clazz, String... columns) {
-        columns = StringUtils.join(columns, SEPARATOR).split("\\s*,\\s*");
-        if (!classRowMapperMap.containsKey(clazz)) {
-            if (Map.class.isAssignableFrom(clazz)) {
-                classRowMapperMap.put(clazz, new ColumnMapRowMapper());
-            } else if (columns.length == 1) {
-                classRowMapperMap.put(clazz, new SingleColumnRowMapper<>(clazz));
-            } else {
-                classRowMapperMap.put(clazz, new BeanPropertyRowMapper<>(clazz));
+        String key = clazz.getName() + ":" + StringUtils.join(columns, SEPARATOR);
+        ColumnsMapper<V> columnsMapper = (ColumnsMapper<V>) columnsMapperMap.get(key);
+        if (columnsMapper == null) {
+            columnsMapper = new ColumnsMapper<>(clazz, columns);
+            if (columnsMapperMap.size() < GlobalConfiguration.instance().getSqlCacheSize()) {
+                columnsMapperMap.put(key, columnsMapper);
             }
         }
-        return queryColumns(q, classRowMapperMap.get(clazz), columns);
+        return queryColumns(q, columnsMapper.rowMapper, columnsMapper.columns);
+    }
+
+    /**
+     * The columns and the row mapper of the projection class are compiled once.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <V> List<V> queryProjection(Q q, Class<V> projectionClass) {
+        FieldRowMapper<V> projection = (FieldRowMapper<V>) projectionMap.computeIfAbsent(projectionClass, FieldRowMapper::of);
+        return queryColumns(q, projection, projection.getColumns());
     }
 
     private <V> List<V> queryColumns(Q q, RowMapper<V> rowMapper, String... columns) {
-        SqlAndArgs sqlAndArgs = crudBuilder.buildSelectColumnsAndArgs(q, columns);
-        return jdbcOperations.query(sqlAndArgs.sql, sqlAndArgs.args, rowMapper);
+        long start = sqlTimer.start();
+        return query(start, crudBuilder.buildSelectColumnsAndArgs(q, columns), rowMapper);
+    }
+
+    private <V> List<V> query(long start, SqlAndArgs sqlAndArgs, RowMapper<V> rowMapper) {
+        return sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.query(sqlAndArgs.sql, sqlAndArgs.args, rowMapper));
     }
 
     @Override
     public final long count(Q q) {
+        long start = sqlTimer.start();
         SqlAndArgs sqlAndArgs = crudBuilder.buildCountAndArgs(q);
-        return jdbcOperations.queryForObject(sqlAndArgs.sql, sqlAndArgs.args, Long.class);
+        return sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.queryForObject(sqlAndArgs.sql, sqlAndArgs.args, Long.class));
     }
 
     @Override
     public final int delete(Q q) {
-        return doUpdate(crudBuilder.buildDeleteAndArgs(q));
+        long start = sqlTimer.start();
+        return doUpdate(start, crudBuilder.buildDeleteAndArgs(q));
     }
 
     @Override
     public final E get(IdWrapper<I> w) {
-        return getEntity(crudBuilder.buildSelectById(w, columnsForSelect));
+        long start = sqlTimer.start();
+        List<E> list = query(start, crudBuilder.buildSelectById(w, columnsForSelect), rowMapper);
+        return list.isEmpty() ? null : list.get(0);
     }
 
-    private E getEntity(SqlAndArgs sqlAndArgs) {
-        List<E> list = jdbcOperations.query(sqlAndArgs.sql, sqlAndArgs.args, rowMapper);
-        return list.isEmpty() ? null : list.get(0);
+    /**
+     * Group the id wrappers by the resolved table and query each table with <i>WHERE id IN (...)</i>.
+     */
+    @Override
+    public List<E> getAllByIdWrappers(Collection<? extends IdWrapper<I>> ws) {
+        Map<String, Map<I, IdWrapper<I>>> tableIdsMap = new LinkedHashMap<>();
+        for (IdWrapper<I> w : ws) {
+            tableIdsMap.computeIfAbsent(crudBuilder.resolveTableName(w), t -> new LinkedHashMap<>()).putIfAbsent(w.getId(), w);
+        }
+        Map<String, Map<I, E>> tableEntitiesMap = new HashMap<>();
+        for (Map.Entry<String, Map<I, IdWrapper<I>>> entry : tableIdsMap.entrySet()) {
+            Map<I, IdWrapper<I>> idMap = entry.getValue();
+            long start = sqlTimer.start();
+            SqlAndArgs sqlAndArgs = crudBuilder.buildSelectByIds(idMap.values().iterator().next(), new ArrayList<>(idMap.keySet()), columnsForSelect);
+            Map<I, E> entityMap = new HashMap<>();
+            for (E e : query(start, sqlAndArgs, rowMapper)) {
+                entityMap.put(e.getId(), e);
+            }
+            tableEntitiesMap.put(entry.getKey(), entityMap);
+        }
+
+        List<E> list = new ArrayList<>(ws.size());
+        for (IdWrapper<I> w : ws) {
+            list.add(tableEntitiesMap.get(crudBuilder.resolveTableName(w)).get(w.getId()));
+        }
+        return list;
     }
 
     @Override
     public int delete(IdWrapper<I> w) {
-        String sql = crudBuilder.buildDeleteById(w);
-        SqlAndArgs.logSqlInfo(sql, Arrays.asList(w.getId()));
-        return jdbcOperations.update(sql, w.getId());
+        long start = sqlTimer.start();
+        SqlAndArgs sqlAndArgs = new SqlAndArgs(crudBuilder.buildDeleteById(w), new Object[]{w.getId()});
+        return doUpdate(start, sqlAndArgs);
     }
 
     @Override
     public final void create(E e) {
-        List<Object> args = new ArrayList<>();
-        String sql = crudBuilder.buildCreateAndArgs(e, args);
-        SqlAndArgs.logSqlInfo(sql, args);
+        long start = sqlTimer.start();
+        List<Object> argList = new ArrayList<>();
+        String sql = crudBuilder.buildCreateAndArgs(e, argList);
+        SqlAndArgs sqlAndArgs = new SqlAndArgs(sql, argList);
 
         if (isGeneratedId) {
             KeyHolder keyHolder = new GeneratedKeyHolder();
-            jdbcOperations.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
-                int i = 1;
-                for (Object arg : args) {
-                    ps.setObject(i++, arg);
-                }
-                return ps;
-            }, keyHolder);
+            sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.update(connection -> prepareStatement(connection, sql, sqlAndArgs.args), keyHolder));
             setIdFunc.apply(e, keyHolder.getKey());
         } else {
-            jdbcOperations.update(sql, args.toArray());
+            doUpdate(start, sqlAndArgs);
+        }
+    }
+
+    private static PreparedStatement prepareStatement(Connection connection, String sql, Object[] args) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
+        setArgs(ps, args);
+        return ps;
+    }
+
+    private static void setArgs(PreparedStatement ps, Object[] args) throws SQLException {
+        int i = 1;
+        for (Object arg : args) {
+            ps.setObject(i++, arg);
         }
     }
 
+    /**
+     * Insert the entities chunk by chunk, so that neither the statement
+     * nor the args grow with the amount of the entities.
+     * The generated ids are set back to the entities.
+     */
     @Override
     public int batchInsert(Iterable<E> entities, String... columns) {
-        if (!entities.iterator().hasNext()) {
-            return 0;
+        int chunkSize = GlobalConfiguration.instance().getBatchInsertChunkSize();
+        if (chunkSize <= 0) {
+            chunkSize = Integer.MAX_VALUE;
+        }
+        int count = 0;
+        List<E> chunk = new ArrayList<>(Math.min(chunkSize, 128));
+        for (E entity : entities) {
+            chunk.add(entity);
+            if (chunk.size() == chunkSize) {
+                count += insertChunk(chunk, columns);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            count += insertChunk(chunk, columns);
+        }
+        return count;
+    }
+
+    private int insertChunk(List<E> chunk, String... columns) {
+        long start = sqlTimer.start();
+        if (GlobalConfiguration.instance().isBatchInsertRewrite()) {
+            SqlAndArgs sqlAndArgs = crudBuilder.buildCreateAndArgs(chunk, columns);
+            if (!isGeneratedId) {
+                return doUpdate(start, sqlAndArgs);
+            }
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            int count = sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.update(connection -> prepareStatement(connection, sqlAndArgs.sql, sqlAndArgs.args), keyHolder));
+            fillGeneratedIds(chunk, keyHolder.getKeyList());
+            return count;
+        }
+
+        String sql = crudBuilder.buildCreateSql(chunk.get(0), columns);
+        List<Object[]> batchArgs = new ArrayList<>(chunk.size());
+        for (E entity : chunk) {
+            batchArgs.add(crudBuilder.buildCreateArgs(entity));
+        }
+        if (!isGeneratedId) {
+            return batchUpdate(start, sql, batchArgs);
         }
-        return doUpdate(crudBuilder.buildCreateAndArgs(entities, columns));
+        Integer count = sqlTimer.execute(start, new SqlAndArgs(sql, batchArgs.get(0)), batchArgs.size(), () -> jdbcOperations.execute((ConnectionCallback<Integer>) connection -> {
+            try (PreparedStatement ps = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+                for (Object[] args : batchArgs) {
+                    setArgs(ps, args);
+                    ps.addBatch();
+                }
+                int updated = sum(ps.executeBatch());
+                List<Map<String, Object>> keyList = new ArrayList<>(chunk.size());
+                try (ResultSet rs = ps.getGeneratedKeys()) {
+                    while (rs.next()) {
+                        keyList.add(KEY_MAPPER.mapRow(rs, keyList.size()));
+                    }
+                }
+                fillGeneratedIds(chunk, keyList);
+                return updated;
+            }
+        }));
+        return count == null ? 0 : count;
     }
 
-    private int doUpdate(SqlAndArgs sqlAndArgs) {
-        return jdbcOperations.update(sqlAndArgs.sql, sqlAndArgs.args);
+    /**
+     * Drivers return no key for the rows updated by ON DUPLICATE KEY UPDATE, or extra ones,
+     * so the keys are only matched to the rows by position when each row got exactly one.
+     */
+    private void fillGeneratedIds(List<E> chunk, List<Map<String, Object>> keyList) {
+        if (keyList.size() != chunk.size()) {
+            return;
+        }
+        for (int i = 0; i < chunk.size(); i++) {
+            E entity = chunk.get(i);
+            Number key = readGeneratedKey(keyList.get(i));
+            if (entity.getId() == null && key != null) {
+                setIdFunc.apply(entity, key);
+            }
+        }
+    }
+
+    private Number readGeneratedKey(Map<String, Object> keys) {
+        for (Map.Entry<String, Object> entry : keys.entrySet()) {
+            if (idLabel.equalsIgnoreCase(entry.getKey())) {
+                return (Number) entry.getValue();
+            }
+        }
+        return keys.size() == 1 ? (Number) keys.values().iterator().next() : null;
+    }
+
+    private static int sum(int[] updateCounts) {
+        int count = 0;
+        for (int updateCount : updateCounts) {
+            count += updateCount == Statement.SUCCESS_NO_INFO ? 1 : updateCount;
+        }
+        return count;
+    }
+
+    private int doUpdate(long start, SqlAndArgs sqlAndArgs) {
+        return sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.update(sqlAndArgs.sql, sqlAndArgs.args));
     }
 
     @Override
     public final int update(E e) {
-        return doUpdate(crudBuilder.buildUpdateAndArgs(e));
+        long start = sqlTimer.start();
+        return doUpdate(start, crudBuilder.buildUpdateAndArgs(e));
     }
 
     @Override
     public final int patch(E e) {
-        return doUpdate(crudBuilder.buildPatchAndArgsWithId(e));
+        long start = sqlTimer.start();
+        return doUpdate(start, crudBuilder.buildPatchAndArgsWithId(e));
     }
 
     @Override
     public final int patch(E e, Q q) {
-        return doUpdate(crudBuilder.buildPatchAndArgsWithQuery(e, q));
+        long start = sqlTimer.start();
+        return doUpdate(start, crudBuilder.buildPatchAndArgsWithQuery(e, q));
+    }
+
+    @Override
+    public int batchUpdate(Iterable<E> entities) {
+        return batchExecute(entities, crudBuilder::buildUpdateAndArgs);
+    }
+
+    @Override
+    public int batchPatch(Iterable<E> entities) {
+        return batchExecute(entities, crudBuilder::buildPatchAndArgsWithId);
+    }
+
+    /**
+     * Group the entities by the built sql, i.e. the table and the columns to set,
+     * and execute each group as JDBC batches of at most <code>batchInsertChunkSize</code> rows.
+     */
+    private int batchExecute(Iterable<E> entities, BiFunction<E, List<Object>, String> sqlBuilder) {
+        int chunkSize = GlobalConfiguration.instance().getBatchInsertChunkSize();
+        if (chunkSize <= 0) {
+            chunkSize = Integer.MAX_VALUE;
+        }
+        int count = 0;
+        long start = sqlTimer.start();
+        Map<String, List<Object[]>> batchArgsMap = new LinkedHashMap<>();
+        for (E entity : entities) {
+            List<Object> argList = new ArrayList<>();
+            String sql = sqlBuilder.apply(entity, argList);
+            List<Object[]> batchArgs = batchArgsMap.computeIfAbsent(sql, k -> new ArrayList<>());
+            batchArgs.add(argList.toArray());
+            if (batchArgs.size() == chunkSize) {
+                count += batchUpdate(start, sql, batchArgs);
+                batchArgsMap.remove(sql);
+                start = sqlTimer.start();
+            }
+        }
+        for (Map.Entry<String, List<Object[]>> entry : batchArgsMap.entrySet()) {
+            count += batchUpdate(start, entry.getKey(), entry.getValue());
+        }
+        return count;
+    }
+
+    private int batchUpdate(long start, String sql, List<Object[]> batchArgs) {
+        return sum(sqlTimer.execute(start, new SqlAndArgs(sql, batchArgs.get(0)), batchArgs.size(), () -> jdbcOperations.batchUpdate(sql, batchArgs)));
     }
 
     @Override
     public List<I> queryIds(Q query) {
-        SqlAndArgs sqlAndArgs = crudBuilder.buildSelectIdAndArgs(query);
-        return jdbcOperations.query(sqlAndArgs.sql, sqlAndArgs.args, new SingleColumnRowMapper<>());
+        long start = sqlTimer.start();
+        return query(start, crudBuilder.buildSelectIdAndArgs(query), new SingleColumnRowMapper<>());
     }
 
+
+    private static final class ColumnsMapper<V> {
+        private static final Pattern PTN_SPLIT = Pattern.compile("\\s*,\\s*");
+        private static final Pattern PTN_LABEL = Pattern.compile("(?i)^(?:.*\\s+AS\\s+|.*\\.)?[`\"]?(\\w+)[`\"]?$");
+
+        private final String[] columns;
+        private final RowMapper<V> rowMapper;
+
+        @SuppressWarnings("unchecked")
+        private ColumnsMapper(Class<V> clazz, String[] columns) {
+            this.columns = PTN_SPLIT.split(StringUtils.join(columns, SEPARATOR));
+            if (Map.class.isAssignableFrom(clazz)) {
+                rowMapper = (RowMapper<V>) new ColumnMapRowMapper();
+            } else if (this.columns.length == 1) {
+                rowMapper = new SingleColumnRowMapper<>(clazz);
+            } else {
+                List<Field> fields = resolveFields(clazz, this.columns);
+                rowMapper = fields != null ? new FieldRowMapper<>(clazz, fields) : new BeanPropertyRowMapper<>(clazz);
+            }
+        }
+
+        /**
+         * Resolve the field of each column by its label.
+         *
+         * @return the fields in the order of the columns, or null if any column has no field
+         */
+        private static List<Field> resolveFields(Class<?> clazz, String[] columns) {
+            List<Field> fields = new ArrayList<>(columns.length);
+            for (String column : columns) {
+                Matcher matcher = PTN_LABEL.matcher(column.trim());
+                Field field = matcher.matches() ? FieldUtils.getField(clazz, CommonUtil.toCamelCase(matcher.group(1)), true) : null;
+                if (field == null) {
+                    return null;
+                }
+                fields.add(field);
+            }
+            return fields;
+        }
+    }
 }
@@ -54,8 +54,14 @@ public class JoinQueryBuilder {
         return matcher.appendTail(sb).toString();
     }
 
+    /**
+     * Keyset pagination is not supported since the joined rows may be grouped and have no id to break ties.
+     */
     @SuppressWarnings("java:S4973")
     private String build(PageQuery pageQuery, List<Object> argList, String... columns) {
+        if (KeysetCursor.isKeyset(pageQuery) && !(columns.length == 1 && COUNT == columns[0])) {
+            throw new IllegalArgumentException("Keyset pagination is not supported by join queries: " + entityClass.getName());
+        }
         pageQuery = SerializationUtils.clone(pageQuery);
 
         String join = buildJoin(pageQuery, argList);
@@ -0,0 +1,254 @@
+package win.doyto.query.core;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.NoArgsConstructor;
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import javax.persistence.Id;
+
+import static win.doyto.query.core.CommonUtil.toCamelCase;
+import static win.doyto.query.core.Constant.*;
+
+/**
+ * KeysetCursor
+ * <p>
+ * Keyset pagination: instead of skipping <i>offset</i> rows, a page starts after the sort keys of
+ * the last row of the previous page, with ties broken by the id column.
+ * The cursor is an opaque string encoding the sort keys with their types.
+ * The sort columns must not be null in the rows paged through, since a null can not be compared
+ * by <i>&lt;</i> or <i>&gt;</i> in SQL and the databases do not agree on where the nulls are sorted.
+ *
+ * @author f0rb on 2020-02-17
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+public final class KeysetCursor {
+
+    /**
+     * The property of {@link win.doyto.query.entity.Persistable#getId()}, and the default id column
+     */
+    private static final String ID = "id";
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    @AllArgsConstructor
+    static final class SortKey {
+        final String column;
+        final String property;
+        final boolean desc;
+    }
+
+    static boolean isKeyset(PageQuery pageQuery) {
+        return pageQuery.getAfter() != null;
+    }
+
+    /**
+     * Resolve the sort keys of the query and append the id column as the last key to break ties.
+     *
+     * @param pageQuery the query
+     * @param idColumn  the id column of the table
+     */
+    static List<SortKey> sortKeys(PageQuery pageQuery, String idColumn) {
+        List<SortKey> sortKeys = new ArrayList<>();
+        String sort = pageQuery.getSort();
+        if (sort != null) {
+            for (String order : sort.split(";")) {
+                String[] pd = order.split(",");
+                if (pd.length != 2 || pd[0].startsWith("field(")) {
+                    throw new IllegalArgumentException("Keyset pagination only supports sorting by columns: " + sort);
+                }
+                sortKeys.add(new SortKey(pd[0], toCamelCase(pd[0]), "desc".equalsIgnoreCase(pd[1])));
+            }
+        }
+        if (sortKeys.isEmpty() || !idColumn.equals(sortKeys.get(sortKeys.size() - 1).column)) {
+            sortKeys.add(new SortKey(idColumn, ID, false));
+        }
+        return sortKeys;
+    }
+
+    /**
+     * Resolve the id column of the entity class the same way as {@link QueryBuilder}
+     */
+    static String idColumn(Class<?> entityClass) {
+        Field[] idFields = FieldUtils.getFieldsWithAnnotation(entityClass, Id.class);
+        return idFields.length > 0 ? CommonUtil.resolveColumn(idFields[0]) : ID;
+    }
+
+    static String buildSort(List<SortKey> sortKeys) {
+        List<String> orders = new ArrayList<>(sortKeys.size());
+        for (SortKey sortKey : sortKeys) {
+            orders.add(sortKey.column + (sortKey.desc ? ",desc" : ",asc"));
+        }
+        return String.join(";", orders);
+    }
+
+    /**
+     * Build the condition to seek the rows after the cursor.
+     * <ul>
+     * <li>Same direction: <i>(a, id) &gt; (?, ?)</i></li>
+     * <li>Mixed directions: <i>(a &lt; ? OR a = ? AND id &gt; ?)</i></li>
+     * </ul>
+     */
+    static String buildPredicate(List<SortKey> sortKeys) {
+        if (isSameDirection(sortKeys)) {
+            List<String> columns = new ArrayList<>(sortKeys.size());
+            sortKeys.forEach(sortKey -> columns.add(sortKey.column));
+            String op = sortKeys.get(0).desc ? " < " : " > ";
+            return CommonUtil.wrapWithParenthesis(String.join(SEPARATOR, columns)) + op + InClause.placeHolders(sortKeys.size());
+        }
+        List<String> ors = new ArrayList<>(sortKeys.size());
+        StringBuilder equals = new StringBuilder();
+        for (SortKey sortKey : sortKeys) {
+            ors.add(equals + sortKey.column + (sortKey.desc ? " < " : " > ") + REPLACE_HOLDER);
+            equals.append(sortKey.column).append(EQUAL).append(REPLACE_HOLDER).append(" AND ");
+        }
+        return CommonUtil.wrapWithParenthesis(String.join(SPACE_OR, ors));
+    }
+
+    /**
+     * Append the args for {@link #buildPredicate(List)}
+     */
+    static void bindArgs(List<SortKey> sortKeys, List<Object> values, List<Object> argList) {
+        if (isSameDirection(sortKeys)) {
+            argList.addAll(values);
+            return;
+        }
+        for (int i = 0; i < values.size(); i++) {
+            argList.addAll(values.subList(0, i + 1));
+        }
+    }
+
+    private static boolean isSameDirection(List<SortKey> sortKeys) {
+        return sortKeys.stream().allMatch(sortKey -> sortKey.desc == sortKeys.get(0).desc);
+    }
+
+    /**
+     * Build the cursor of the next page from the last row of the current page
+     *
+     * @param pageQuery the query of the current page
+     * @param last      the last row of the current page
+     * @return the cursor to set as <i>after</i> of the next page
+     * @throws IllegalArgumentException if a sort column of the last row is null
+     */
+    public static String next(PageQuery pageQuery, Object last) {
+        List<SortKey> sortKeys = sortKeys(pageQuery, idColumn(last.getClass()));
+        List<Object> values = new ArrayList<>(sortKeys.size());
+        for (SortKey sortKey : sortKeys) {
+            Object value = toArg(CommonUtil.readField(last, sortKey.property));
+            if (value == null) {
+                throw new IllegalArgumentException("Keyset pagination does not support null in the sort column: " + sortKey.column);
+            }
+            values.add(value);
+        }
+        return encode(values);
+    }
+
+    /**
+     * Convert an enum to its ordinal or name according to {@link win.doyto.query.annotation.Enumerated}
+     */
+    @SuppressWarnings("unchecked")
+    static Object toArg(Object value) {
+        return value instanceof Enum ? ColumnMeta.toArgs(Collections.singletonList(value)).get(0) : value;
+    }
+
+    static String encode(List<Object> values) {
+        String[] tagged = new String[values.size()];
+        for (int i = 0; i < tagged.length; i++) {
+            tagged[i] = tag(values.get(i));
+        }
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(tagged);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(json);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Failed to encode cursor", e);
+        }
+    }
+
+    /**
+     * Decode the cursor of the query
+     *
+     * @param cursor   the cursor built by {@link #next(PageQuery, Object)}
+     * @param sortKeys the sort keys of the query
+     * @return the values of the sort keys
+     */
+    static List<Object> decode(String cursor, List<SortKey> sortKeys) {
+        List<Object> values = decode(cursor);
+        if (values.size() != sortKeys.size()) {
+            throw new IllegalArgumentException("Cursor does not match the sort: " + buildSort(sortKeys));
+        }
+        if (values.contains(null)) {
+            throw new IllegalArgumentException("Keyset pagination does not support null in the cursor: " + cursor);
+        }
+        return values;
+    }
+
+    static List<Object> decode(String cursor) {
+        String[] tagged;
+        try {
+            tagged = objectMapper.readValue(Base64.getUrlDecoder().decode(cursor), String[].class);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, e);
+        }
+        List<Object> values = new ArrayList<>(tagged.length);
+        for (String s : tagged) {
+            values.add(untag(s));
+        }
+        return values;
+    }
+
+    private static String tag(Object value) {
+        if (value == null) {
+            return "n";
+        } else if (value instanceof Integer) {
+            return "i" + value;
+        } else if (value instanceof Long) {
+            return "l" + value;
+        } else if (value instanceof BigDecimal) {
+            return "d" + value;
+        } else if (value instanceof Double || value instanceof Float) {
+            return "f" + value;
+        } else if (value instanceof Boolean) {
+            return "b" + value;
+        } else if (value instanceof Date) {
+            return "t" + ((Date) value).getTime();
+        }
+        return "s" + value;
+    }
+
+    private static Object untag(String s) {
+        if (s == null || s.isEmpty()) {
+            throw new IllegalArgumentException("Invalid cursor value: " + s);
+        }
+        String value = s.substring(1);
+        switch (s.charAt(0)) {
+            case 'n':
+                return null;
+            case 'i':
+                return Integer.valueOf(value);
+            case 'l':
+                return Long.valueOf(value);
+            case 'd':
+                return new BigDecimal(value);
+            case 'f':
+                return Double.valueOf(value);
+            case 'b':
+                return Boolean.valueOf(value);
+            case 't':
+                return new Timestamp(Long.parseLong(value));
+            case 's':
+                return value;
+            default:
+                throw new IllegalArgumentException("Invalid cursor value: " + s);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package win.doyto.query.core;
 
+import lombok.Setter;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.SerializationUtils;
@@ -7,6 +8,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.lang3.reflect.FieldUtils;
 import org.springframework.beans.BeanUtils;
 import win.doyto.query.annotation.NestedQueries;
+import win.doyto.query.config.GlobalConfiguration;
 import win.doyto.query.annotation.SubQuery;
 import win.doyto.query.entity.CommonEntity;
 import win.doyto.query.entity.Persistable;
@@ -18,7 +20,10 @@ import java.lang.reflect.Type;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiPredicate;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 
@@ -27,6 +32,13 @@ import static win.doyto.query.core.QuerySuffix.*;
 
 /**
  * MemoryDataAccess
+ * <p>
+ * Secondary indexes can be created on the entity fields by {@link #createIndex(String, IndexType)}.
+ * The most selective index among the conditions of a query is used to collect the candidates,
+ * which are still filtered by all the conditions.
+ * <p>
+ * The entities returned by {@link #get(IdWrapper)} are isolated according to {@link MemoryIsolation},
+ * which defaults to <code>memoryIsolation</code> of {@link GlobalConfiguration}.
  *
  * @author f0rb
  */
@@ -40,8 +52,30 @@ public class MemoryDataAccess<E extends Persistable<I>, I extends Serializable,
     private final List<Field> fields;
     private final Field idField;
     private Class<I> idFieldType;
+    private final Map<String, MemoryIndex<I>> indexMap = new ConcurrentHashMap<>();
+    private final Class<E> entityClass;
+    private final String idColumn;
+    private final Map<Class<?>, FilterPlan<E>[]> filterPlanMap = new ConcurrentHashMap<>();
+    private final Map<String, EntitySorter<E>> sorterMap = new ConcurrentHashMap<>();
+    private final FieldCopier<E> fieldCopier;
+    @Setter
+    private MemoryIsolation isolation = GlobalConfiguration.instance().getMemoryIsolation();
+
+    public enum IndexType {
+        /**
+         * For equality and <i>In</i>
+         */
+        HASH,
+        /**
+         * For equality, <i>In</i>, <i>Gt/Ge/Lt/Le</i> and <i>Start</i>
+         */
+        SORTED
+    }
 
     public MemoryDataAccess(Class<E> entityClass) {
+        this.entityClass = entityClass;
+        this.idColumn = KeysetCursor.idColumn(entityClass);
+        this.fieldCopier = new FieldCopier<>(entityClass);
         tableMap.put(entityClass, entitiesMap);
 
         // init fields
@@ -65,6 +99,59 @@ public class MemoryDataAccess<E extends Persistable<I>, I extends Serializable,
 
     }
 
+    /**
+     * Create an index on the entity field, which is kept up to date by the write operations.
+     * <p>
+     * Except for {@link MemoryIsolation#SNAPSHOT}, the query methods return the stored entities,
+     * so an indexed field changed on them without {@link #update} or {@link #patch}
+     * leaves the entity under the old value in the index and unreachable by the new one.
+     *
+     * @param fieldName the field name of the entity
+     * @param indexType the type of the index
+     */
+    public void createIndex(String fieldName, IndexType indexType) {
+        if (fields.stream().noneMatch(field -> field.getName().equals(fieldName))) {
+            throw new IllegalArgumentException("Field not found: " + fieldName);
+        }
+        MemoryIndex<I> index = new MemoryIndex<>(indexType);
+        synchronized (indexMap) {
+            entitiesMap.values().forEach(e -> index.add(readField(e, fieldName), e.getId()));
+            indexMap.put(fieldName, index);
+        }
+    }
+
+    private void index(E e) {
+        indexMap.forEach((fieldName, index) -> index.add(readField(e, fieldName), e.getId()));
+    }
+
+    private void unindex(E e) {
+        indexMap.forEach((fieldName, index) -> index.remove(readField(e, fieldName), e.getId()));
+    }
+
+    /**
+     * The writes always hold the lock of the index map, so that none is missed by a concurrent {@link #createIndex}.
+     */
+    private E put(E e) {
+        synchronized (indexMap) {
+            E old = entitiesMap.put(e.getId(), e);
+            if (old != null) {
+                unindex(old);
+            }
+            index(e);
+            return old;
+        }
+    }
+
+    private E remove(I id) {
+        synchronized (indexMap) {
+            E old = entitiesMap.remove(id);
+            if (old != null) {
+                unindex(old);
+            }
+            return old;
+        }
+    }
+
     protected void generateNewId(E entity) {
         try {
             Object newId = chooseIdValue(idGenerator.incrementAndGet(), idFieldType);
@@ -84,7 +171,23 @@ public class MemoryDataAccess<E extends Persistable<I>, I extends Serializable,
 
     @Override
     public E get(IdWrapper<I> idWrapper) {
-        return SerializationUtils.clone(entitiesMap.get(idWrapper.getId()));
+        E e = entitiesMap.get(idWrapper.getId());
+        switch (isolation) {
+            case SNAPSHOT:
+                return e;
+            case FIELD_COPY:
+                return fieldCopier.copy(e);
+            default:
+                return SerializationUtils.clone(e);
+        }
+    }
+
+    /**
+     * The entity to store for a write, a copy for {@link MemoryIsolation#SNAPSHOT}
+     * so that the stored entities are never modified by the callers.
+     */
+    private E toStored(E e) {
+        return isolation == MemoryIsolation.SNAPSHOT ? fieldCopier.copy(e) : e;
     }
 
     @Override
@@ -97,12 +200,12 @@ public class MemoryDataAccess<E extends Persistable<I>, I extends Serializable,
         if (idField != null) {
             generateNewId(e);
         }
-        entitiesMap.put(e.getId(), e);
+        put(toStored(e));
     }
 
     @Override
     public int update(E e) {
-        return entitiesMap.put(e.getId(), e) == null ? 0 : 1;
+        return put(toStored(e)) == null ? 0 : 1;
     }
 
     @Override
@@ -112,13 +215,27 @@ public class MemoryDataAccess<E extends Persistable<I>, I extends Serializable,
             return 0;
         }
 
+        if (isolation == MemoryIsolation.SNAPSHOT) {
+            E snapshot = fieldCopier.copy(origin);
+            copyNonNullFields(patch, snapshot);
+            put(snapshot);
+        } else {
+            synchronized (indexMap) {
+                unindex(origin);
+                copyNonNullFields(patch, origin);
+                index(origin);
+            }
+        }
+        return 1;
+    }
+
+    private void copyNonNullFields(E patch, E origin) {
         for (Field field : fields) {
             Object value = readField(field, patch);
             if (value != null) {
                 writeField(field, origin, value);
             }
         }
-        return 1;
     }
 
     @Override
@@ -133,13 +250,13 @@ public class MemoryDataAccess<E extends Persistable<I>, I extends Serializable,
 
     @Override
     public int delete(IdWrapper<I> idWrapper) {
-        return entitiesMap.remove(idWrapper.getId()) == null ? 0 : 1;
+        return remove(idWrapper.getId()) == null ? 0 : 1;
     }
 
     @Override
     public int delete(Q query) {
         List<E> list = query(query);
-        list.stream().map(Persistable::getId).forEach(entitiesMap::remove);
+        list.stream().map(Persistable::getId).forEach(this::remove);
         return list.size();
     }
 
@@ -151,62 +268,208 @@ public class MemoryDataAccess<E extends Persistable<I>, I extends Serializable,
      * @return true, Entity符合条件需要保留; false, Entity不符合条件需要过滤掉
      */
     protected boolean filterByQuery(Q query, E entity) {
-        for (Field field : query.getClass().getDeclaredFields()) {
-            if (supportFilter(field)) {
-                Object v1 = readField(field, query);
-                if (isValidValue(v1, field)) {
-                    boolean shouldNotRemain = unsatisfied(entity, field.getName(), v1);
-                    if (shouldNotRemain) {
-                        return false;
-                    }
-                }
-            }
-        }
-        return true;
+        return buildPredicate(query).test(entity);
     }
 
-    private boolean supportFilter(Field field) {
+    private static boolean supportFilter(Field field) {
         return fieldFilter(field) && !field.isAnnotationPresent(SubQuery.class) && !field.isAnnotationPresent(NestedQueries.class);
     }
 
     protected Boolean unsatisfied(E entity, String queryFieldName, Object queryFieldValue) {
+        return !compileMatcher(queryFieldName).test(entity, queryFieldValue);
+    }
+
+    private FilterPlan<E>[] filterPlans(Class<?> queryClass) {
+        return filterPlanMap.computeIfAbsent(queryClass, clazz -> Arrays
+            .stream(clazz.getDeclaredFields())
+            .filter(MemoryDataAccess::supportFilter)
+            .map(field -> new FilterPlan<>(field, compileMatcher(field.getName())))
+            .toArray(FilterPlan[]::new));
+    }
+
+    /**
+     * Compile the condition of a query field against the entity,
+     * with the suffix, the Or-splitting, the matcher and the entity field accessor resolved.
+     */
+    private BiPredicate<E, Object> compileMatcher(String queryFieldName) {
         if (containsOr(queryFieldName)) {
-            boolean result = true;
-            for (String s : splitByOr(queryFieldName)) {
-                result &= unsatisfied(entity, s, queryFieldValue);
-            }
-            return result;
+            BiPredicate<E, Object>[] matchers = Arrays.stream(splitByOr(queryFieldName))
+                                                      .map(this::compileMatcher)
+                                                      .toArray(BiPredicate[]::new);
+            return (entity, value) -> {
+                for (BiPredicate<E, Object> matcher : matchers) {
+                    if (matcher.test(entity, value)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
         }
         QuerySuffix querySuffix = resolve(queryFieldName);
-        String columnName = querySuffix.resolveColumnName(queryFieldName);
         FilterExecutor.Matcher matcher = FilterExecutor.get(querySuffix);
+        Field entityField = FieldUtils.getField(entityClass, querySuffix.resolveColumnName(queryFieldName), true);
+        if (entityField == null) {
+            return (entity, value) -> matcher.match(value, null);
+        }
+        FieldAccessor entityAccessor = fieldAccessor(entityField);
+        return (entity, value) -> matcher.match(value, entityAccessor.get(entity));
+    }
 
-        Object entityFieldValue = readField(entity, columnName);
-        return !matcher.match(queryFieldValue, entityFieldValue);
+    /**
+     * Only the values of the query are read per call, the conditions are compiled once per query class.
+     */
+    private Predicate<E> buildPredicate(Q query) {
+        FilterPlan<E>[] plans = filterPlans(query.getClass());
+        List<BiPredicate<E, Object>> matchers = new ArrayList<>(plans.length);
+        List<Object> values = new ArrayList<>(plans.length);
+        for (FilterPlan<E> plan : plans) {
+            Object value = plan.accessor.get(query);
+            if (plan.isValidValue(value)) {
+                matchers.add(plan.matcher);
+                values.add(value);
+            }
+        }
+        int size = matchers.size();
+        if (size == 0) {
+            return entity -> true;
+        }
+        BiPredicate<E, Object>[] matcherArr = matchers.toArray(new BiPredicate[size]);
+        Object[] valueArr = values.toArray();
+        return entity -> {
+            for (int i = 0; i < size; i++) {
+                if (!matcherArr[i].test(entity, valueArr[i])) {
+                    return false;
+                }
+            }
+            return true;
+        };
     }
 
     @Override
     public List<E> query(Q query) {
-        List<E> queryList = entitiesMap
-            .values().stream()
-            .filter(item -> filterByQuery(query, item))
+        List<E> queryList = candidates(query).stream()
+            .filter(buildFilter(query))
             .collect(Collectors.toList());
 
+        if (query instanceof PageQuery) {
+            queryList = sortAndPage(queryList, (PageQuery) query);
+        }
+
+        return queryList;
+    }
+
+    private List<E> sortAndPage(List<E> queryList, PageQuery pageQuery) {
+        String sort = resolveSort(pageQuery);
+        int offset = pageQuery.needPaging() ? pageQuery.calcOffset() : 0;
+        int limit = pageQuery.needPaging() ? pageQuery.getPageSize() : -1;
+        if (sort != null) {
+            return sorter(sort).sort(queryList, offset, limit);
+        }
+        if (pageQuery.needPaging()) {
+            int end = (int) Math.min(queryList.size(), (long) offset + limit);
+            return offset <= end ? new ArrayList<>(queryList.subList(offset, end)) : new ArrayList<>();
+        }
+        return queryList;
+    }
+
+    private EntitySorter<E> sorter(String sort) {
+        EntitySorter<E> sorter = sorterMap.get(sort);
+        if (sorter == null) {
+            sorter = new EntitySorter<>(entityClass, sort);
+            if (sorterMap.size() < GlobalConfiguration.instance().getSqlCacheSize()) {
+                sorterMap.put(sort, sorter);
+            }
+        }
+        return sorter;
+    }
+
+    /**
+     * Filter the entities lazily, only sorting needs to buffer the matched entities.
+     */
+    @Override
+    public Stream<E> stream(Q query) {
+        Stream<E> stream = candidates(query).stream().filter(buildFilter(query));
         if (query instanceof PageQuery) {
             PageQuery pageQuery = (PageQuery) query;
-            if (pageQuery.getSort() != null) {
-                doSort(queryList, pageQuery.getSort());
+            if (resolveSort(pageQuery) != null) {
+                return sortAndPage(stream.collect(Collectors.toList()), pageQuery).stream();
             }
             if (pageQuery.needPaging()) {
-                int from = pageQuery.getPageNumber() * pageQuery.getPageSize();
-                int end = Math.min(queryList.size(), from + pageQuery.getPageSize());
-                if (from <= end) {
-                    queryList = new ArrayList<>(queryList.subList(from, end));
+                stream = stream.skip(pageQuery.calcOffset()).limit(pageQuery.getPageSize());
+            }
+        }
+        return stream;
+    }
+
+    private Collection<E> candidates(Q query) {
+        Collection<I> ids = indexMap.isEmpty() ? null : planIndex(query);
+        if (ids == null) {
+            return entitiesMap.values();
+        }
+        List<E> candidates = new ArrayList<>(ids.size());
+        for (I id : ids) {
+            E e = entitiesMap.get(id);
+            if (e != null) {
+                candidates.add(e);
+            }
+        }
+        return candidates;
+    }
+
+    /**
+     * Pick the index matching the fewest ids among the conditions of the query.
+     *
+     * @return the ids matched by the picked index, or null for a full scan
+     */
+    Collection<I> planIndex(Q query) {
+        Collection<I> best = null;
+        for (FilterPlan<E> plan : filterPlans(query.getClass())) {
+            MemoryIndex<I> index = plan.columnName == null ? null : indexMap.get(plan.columnName);
+            if (index == null) {
+                continue;
+            }
+            Object value = plan.accessor.get(query);
+            if (plan.isValidValue(value)) {
+                int limit = best == null ? entitiesMap.size() - 1 : best.size() - 1;
+                Collection<I> ids = index.lookup(plan.querySuffix, value, limit);
+                if (ids != null) {
+                    best = ids;
                 }
             }
         }
+        return best;
+    }
 
-        return queryList;
+    private Predicate<E> buildFilter(Q query) {
+        Predicate<E> filter = buildPredicate(query);
+        if (query instanceof PageQuery && KeysetCursor.isKeyset((PageQuery) query) && !((PageQuery) query).getAfter().isEmpty()) {
+            PageQuery pageQuery = (PageQuery) query;
+            List<KeysetCursor.SortKey> sortKeys = KeysetCursor.sortKeys(pageQuery, idColumn);
+            List<Object> cursor = KeysetCursor.decode(pageQuery.getAfter(), sortKeys);
+            filter = filter.and(item -> isAfter(item, sortKeys, cursor));
+        }
+        return filter;
+    }
+
+    /**
+     * The cursor has no null, and the rows with null in the sort columns are
+     * the smallest, the same as {@link EntitySorter}.
+     */
+    private boolean isAfter(E entity, List<KeysetCursor.SortKey> sortKeys, List<Object> cursor) {
+        for (int i = 0; i < sortKeys.size(); i++) {
+            KeysetCursor.SortKey sortKey = sortKeys.get(i);
+            Comparable value = (Comparable) KeysetCursor.toArg(readField(entity, sortKey.property));
+            Object bound = cursor.get(i);
+            int ret = value == null || bound == null ? Boolean.compare(value != null, bound != null) : value.compareTo(bound);
+            if (ret != 0) {
+                return sortKey.desc ? ret < 0 : ret > 0;
+            }
+        }
+        return false;
+    }
+
+    private String resolveSort(PageQuery pageQuery) {
+        return KeysetCursor.isKeyset(pageQuery) ? KeysetCursor.buildSort(KeysetCursor.sortKeys(pageQuery, idColumn)) : pageQuery.getSort();
     }
 
     @Override
@@ -227,23 +490,41 @@ public class MemoryDataAccess<E extends Persistable<I>, I extends Serializable,
     }
 
     protected void doSort(List<E> queryList, String sort) {
-        String[] orders = sort.split(";");
-        for (int i = orders.length - 1; i >= 0; i--) {
-            String order = orders[i];
-            queryList.sort((o1, o2) -> {
-                String[] pd = order.split(",");
-                String property = toCamelCase(pd[0]);
-                Comparable c1 = (Comparable) readField(o1, property);
-                Object c2 = readField(o2, property);
-                int ret = c1.compareTo(c2);
-                return "asc".equalsIgnoreCase(pd[1]) ? ret : -ret;
-            });
-        }
+        queryList.sort(sorter(sort).comparator());
     }
 
     @Override
     public long count(Q query) {
-        return entitiesMap.values().stream().filter(item -> filterByQuery(query, item)).count();
+        return candidates(query).stream().filter(buildPredicate(query)).count();
+    }
+
+    private static final class FilterPlan<E> {
+        private final FieldAccessor accessor;
+        private final boolean isPrimitiveBoolean;
+        private final boolean isNotIn;
+        private final QuerySuffix querySuffix;
+        private final String columnName;
+        private final BiPredicate<E, Object> matcher;
+
+        private FilterPlan(Field field, BiPredicate<E, Object> matcher) {
+            String fieldName = field.getName();
+            this.accessor = fieldAccessor(field);
+            this.isPrimitiveBoolean = field.getType() == boolean.class;
+            this.isNotIn = fieldName.endsWith(NotIn.name());
+            this.querySuffix = resolve(fieldName);
+            this.columnName = containsOr(fieldName) ? null : querySuffix.resolveColumnName(fieldName);
+            this.matcher = matcher;
+        }
+
+        /**
+         * Same as {@link CommonUtil#isValidValue(Object, Field)} with the field checks resolved.
+         */
+        private boolean isValidValue(Object value) {
+            return !(value == null
+                || (isPrimitiveBoolean && Boolean.FALSE.equals(value))
+                || (isNotIn && value instanceof Collection && ((Collection<?>) value).isEmpty())
+            );
+        }
     }
 
     private static class FilterExecutor {
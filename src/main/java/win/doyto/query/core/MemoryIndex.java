@@ -0,0 +1,86 @@
+package win.doyto.query.core;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * MemoryIndex
+ * <p>
+ * Secondary index of an entity field for {@link MemoryDataAccess}, mapping the field values to the ids.
+ * A hash index serves equality and <i>In</i>, a sorted index also serves <i>Gt/Ge/Lt/Le</i> and <i>Start</i>.
+ * Null values are not indexed since no indexed condition matches them.
+ *
+ * @author f0rb on 2020-02-19
+ */
+final class MemoryIndex<I> {
+
+    private final Map<Object, Set<I>> map;
+    private final NavigableMap<Object, Set<I>> sortedMap;
+
+    MemoryIndex(MemoryDataAccess.IndexType indexType) {
+        if (indexType == MemoryDataAccess.IndexType.SORTED) {
+            sortedMap = new ConcurrentSkipListMap<>();
+            map = sortedMap;
+        } else {
+            sortedMap = null;
+            map = new ConcurrentHashMap<>();
+        }
+    }
+
+    void add(Object value, I id) {
+        if (value != null) {
+            map.computeIfAbsent(value, k -> ConcurrentHashMap.newKeySet()).add(id);
+        }
+    }
+
+    void remove(Object value, I id) {
+        if (value != null) {
+            map.computeIfPresent(value, (k, ids) -> ids.remove(id) && ids.isEmpty() ? null : ids);
+        }
+    }
+
+    /**
+     * Collect the ids matching the condition
+     *
+     * @param querySuffix the operator of the condition
+     * @param value       the value of the condition
+     * @param limit       give up when more ids than the limit are matched
+     * @return the matched ids, or null if the condition is not supported by this index or matches more than the limit
+     */
+    Collection<I> lookup(QuerySuffix querySuffix, Object value, int limit) {
+        switch (querySuffix) {
+            case NONE:
+                Set<I> ids = map.get(value);
+                return ids == null ? Collections.emptySet() : ids.size() > limit ? null : ids;
+            case In:
+                return collect(((Collection<?>) value).stream().map(map::get).filter(Objects::nonNull).iterator(), limit);
+            case Gt:
+                return sortedMap == null ? null : collect(sortedMap.tailMap(value, false).values().iterator(), limit);
+            case Ge:
+                return sortedMap == null ? null : collect(sortedMap.tailMap(value, true).values().iterator(), limit);
+            case Lt:
+                return sortedMap == null ? null : collect(sortedMap.headMap(value, false).values().iterator(), limit);
+            case Le:
+                return sortedMap == null ? null : collect(sortedMap.headMap(value, true).values().iterator(), limit);
+            case Start:
+                if (sortedMap == null || !(value instanceof String)) {
+                    return null;
+                }
+                return collect(sortedMap.subMap(value, true, value + Character.toString(Character.MAX_VALUE), true).values().iterator(), limit);
+            default:
+                return null;
+        }
+    }
+
+    private Collection<I> collect(Iterator<Set<I>> iterator, int limit) {
+        Set<I> result = new LinkedHashSet<>();
+        while (iterator.hasNext()) {
+            result.addAll(iterator.next());
+            if (result.size() > limit) {
+                return null;
+            }
+        }
+        return result;
+    }
+}
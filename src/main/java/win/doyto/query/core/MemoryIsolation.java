@@ -0,0 +1,24 @@
+package win.doyto.query.core;
+
+/**
+ * MemoryIsolation
+ * <p>
+ * How {@link MemoryDataAccess} isolates the stored entities from the callers.
+ *
+ * @author f0rb on 2020-02-21
+ */
+public enum MemoryIsolation {
+    /**
+     * Return a deep copy by Java serialization for each get.
+     */
+    SERIALIZATION,
+    /**
+     * Return a shallow copy of the fields for each get.
+     */
+    FIELD_COPY,
+    /**
+     * Store a shallow copy of the fields for each write, and return the stored instance for each get.
+     * The returned entities are shared and should not be modified.
+     */
+    SNAPSHOT
+}
@@ -38,12 +38,15 @@ public class PageQuery implements Serializable {
     @Pattern(regexp = SORT_RX, message = "Sorting field format error", groups = PageGroup.class)
     private String sort;
 
+    @ApiModelProperty(value = "Cursor of keyset pagination, the next cursor of the previous page or an empty string for the first page")
+    private String after;
+
     public Integer getPageNumber() {
-        return getDefault(pageNumber, 0, pageSize == null);
+        return getDefault(pageNumber, 0, pageSize == null && after == null);
     }
 
     public Integer getPageSize() {
-        return getDefault(pageSize, 10, pageNumber == null);
+        return getDefault(pageSize, 10, pageNumber == null && after == null);
     }
 
     private Integer getDefault(Integer number, int defaultValue, boolean canBeNull) {
@@ -58,7 +61,7 @@ public class PageQuery implements Serializable {
     }
 
     public int calcOffset() {
-        return needPaging() ? getPageSize() * getPageNumber() : 0;
+        return needPaging() && after == null ? getPageSize() * getPageNumber() : 0;
     }
 
     public boolean needPaging() {
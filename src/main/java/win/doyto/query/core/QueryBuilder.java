@@ -7,7 +7,6 @@ import win.doyto.query.config.GlobalConfiguration;
 
 import java.lang.reflect.Field;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import javax.persistence.Id;
 import javax.persistence.Table;
@@ -25,7 +24,6 @@ public class QueryBuilder {
     static final Pattern PTN_REPLACE = Pattern.compile("\\w*");
     private static final Pattern PTN_SORT = Pattern.compile(",(asc|desc)", Pattern.CASE_INSENSITIVE);
 
-    private static final Map<Class, Field[]> classFieldsMap = new ConcurrentHashMap<>();
     protected static final String EQUALS_REPLACE_HOLDER = " = " + Constant.REPLACE_HOLDER;
 
     protected final String tableName;
@@ -53,15 +51,39 @@ public class QueryBuilder {
     }
 
     @SuppressWarnings("java:S4973")
-    static String build(PageQuery pageQuery, List<Object> argList, String operation, String[] columns, String from) {
-        String sql;
-        sql = buildStart(operation, columns, from);
-        sql = buildWhere(sql, pageQuery, argList);
+    String build(PageQuery pageQuery, List<Object> argList, String operation, String[] columns, String from) {
+        String start = buildStart(operation, columns, from);
+        QueryPlan queryPlan = QueryPlan.of(pageQuery.getClass());
         // intentionally use ==
-        if (!(columns.length == 1 && COUNT == columns[0])) {
-            // not SELECT COUNT(*)
-            sql = buildOrderBy(sql, pageQuery, operation);
-            sql = buildPaging(sql, pageQuery);
+        if (columns.length == 1 && COUNT == columns[0]) {
+            return queryPlan.buildWhere(start, pageQuery, argList);
+        }
+        // not SELECT COUNT(*)
+        if (SELECT == operation && KeysetCursor.isKeyset(pageQuery)) {
+            return buildKeyset(start, queryPlan, pageQuery, argList, idColumn);
+        }
+        // the paging is appended per call, so that the pages of the same query share the cached sql
+        String sql = queryPlan.build(start, pageQuery, argList, pageQuery.getSort(), where -> buildOrderBy(where, pageQuery, operation));
+        return buildPaging(sql, pageQuery);
+    }
+
+    /**
+     * Seek the rows after the cursor instead of skipping the offset rows.
+     * The args of the cursor are appended after the args of the WHERE clause.
+     */
+    private static String buildKeyset(String start, QueryPlan queryPlan, PageQuery pageQuery, List<Object> argList, String idColumn) {
+        List<KeysetCursor.SortKey> sortKeys = KeysetCursor.sortKeys(pageQuery, idColumn);
+        String sort = KeysetCursor.buildSort(sortKeys);
+        boolean seek = !pageQuery.getAfter().isEmpty();
+        List<Object> tailKey = Arrays.asList(sort, seek);
+        String sql = buildPaging(queryPlan.build(start, pageQuery, argList, tailKey, where -> {
+            if (seek) {
+                where += (where.contains(WHERE) ? " AND " : WHERE) + KeysetCursor.buildPredicate(sortKeys);
+            }
+            return buildOrderBy(where, sort);
+        }), pageQuery);
+        if (seek) {
+            KeysetCursor.bindArgs(sortKeys, KeysetCursor.decode(pageQuery.getAfter(), sortKeys), argList);
         }
         return sql;
     }
@@ -74,11 +96,15 @@ public class QueryBuilder {
     static String buildOrderBy(String sql, PageQuery pageQuery, String operation) {
         // intentionally use ==
         if (SELECT == operation && pageQuery.getSort() != null) {
-            sql += " ORDER BY " + PTN_SORT.matcher(pageQuery.getSort()).replaceAll(" $1").replace(";", SEPARATOR);
+            sql = buildOrderBy(sql, pageQuery.getSort());
         }
         return sql;
     }
 
+    private static String buildOrderBy(String sql, String sort) {
+        return sql + " ORDER BY " + PTN_SORT.matcher(sort).replaceAll(" $1").replace(";", SEPARATOR);
+    }
+
     static String buildPaging(String sql, PageQuery pageQuery) {
         if (pageQuery.needPaging()) {
             sql = GlobalConfiguration.instance().getDialect().buildPageSql(sql, pageQuery.getPageSize(), pageQuery.calcOffset());
@@ -87,37 +113,7 @@ public class QueryBuilder {
     }
 
     public static String buildWhere(String sql, Object query, List<Object> argList) {
-        initFields(query);
-        Field[] fields = classFieldsMap.get(query.getClass());
-        List<Object> whereList = new ArrayList<>(fields.length);
-        for (Field field : fields) {
-            String fieldName = field.getName();
-            Object value = readFieldGetter(field, query);
-            if (isValidValue(value, field)) {
-                if (sql.contains("${" + fieldName + "}") && value instanceof String && PTN_REPLACE.matcher((String) value).matches()) {
-                    sql = sql.replaceAll("\\$\\{" + fieldName + "}", String.valueOf(value));
-                } else {
-                    String and = FieldProcessor.execute(argList, field, value);
-                    if (and != null) {
-                        whereList.add(and);
-                    }
-                }
-            }
-        }
-        if (!whereList.isEmpty()) {
-            sql += WHERE + StringUtils.join(whereList, " AND ");
-        }
-        return sql;
-    }
-
-    private static void initFields(Object query) {
-        Class<?> clazz = query.getClass();
-        if (!classFieldsMap.containsKey(clazz)) {
-            classFieldsMap.put(clazz, Arrays.stream(clazz.getDeclaredFields()).filter(CommonUtil::fieldFilter).toArray(Field[]::new));
-            for (Field field : classFieldsMap.get(clazz)) {
-                FieldProcessor.init(field);
-            }
-        }
+        return QueryPlan.of(query.getClass()).buildWhere(sql, query, argList);
     }
 
     public String buildSelectAndArgs(PageQuery query, List<Object> argList) {
@@ -151,6 +147,24 @@ public class QueryBuilder {
         return new SqlAndArgs(sql, Collections.singletonList(idOrIdWrapper.getId()));
     }
 
+    /**
+     * Build <i>SELECT ... FROM table WHERE id IN (...)</i> for the ids in the same table
+     *
+     * @param idWrapper any of the id wrappers, used to resolve the table name
+     * @param ids       the ids in the table resolved from <code>idWrapper</code>
+     * @param columns   the columns to select
+     * @return the sql and the args
+     */
+    protected SqlAndArgs buildSelectByIds(IdWrapper<?> idWrapper, List<?> ids, String... columns) {
+        if (columns.length == 0) {
+            columns = new String[]{"*"};
+        }
+        List<Object> argList = new ArrayList<>(ids.size());
+        String sql = SELECT + StringUtils.join(columns, SEPARATOR) + FROM + resolveTableName(idWrapper)
+            + WHERE + InClause.build(idColumn, "IN", ids, argList);
+        return new SqlAndArgs(sql, argList);
+    }
+
     protected SqlAndArgs buildSelectIdAndArgs(PageQuery query) {
         return buildSelectColumnsAndArgs(query, idColumn);
     }
@@ -0,0 +1,235 @@
+package win.doyto.query.core;
+
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.reflect.FieldUtils;
+import org.springframework.cache.Cache;
+import win.doyto.query.config.GlobalConfiguration;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Pattern;
+
+/**
+ * QueryCacheInvalidator
+ * <p>
+ * Invalidates the cached query results by the rows written instead of clearing the query caches.
+ * <ul>
+ * <li>A query with an equality condition on an entity field, like <i>username=test</i>,
+ * depends on the tag of the first such condition, other queries depend on the untagged token.</li>
+ * <li>The key of a cached result is prefixed by the table token and the token of its dependency,
+ * so a write only replaces the tokens of the untagged queries and of the tags of the old and the new rows,
+ * and the results keyed by the replaced tokens are never hit again.</li>
+ * <li>When the rows are unknown, like <i>delete by query</i>, the table token is replaced
+ * to invalidate all the results at once without deleting any key.</li>
+ * </ul>
+ * The tokens are stored in the query cache with the keys starting with <i>#</i> to be shared by the nodes,
+ * so the query caches should evict the orphaned results by size or TTL.
+ * <p>
+ * The tokens are read from the cache for each query by default. A positive <code>queryTokenTtl</code>
+ * lets each node reuse the tokens it read or renewed for that many milliseconds,
+ * so the writes of the other nodes may be missed until then.
+ * A failed read of a token skips the query cache and a failed renewal is logged,
+ * so an outage of the cache never fails a query or a committed write.
+ *
+ * @author f0rb on 2020-02-28
+ */
+@Slf4j
+public final class QueryCacheInvalidator<E> {
+
+    private static final String TABLE_KEY = "#";
+    private static final String UNTAGGED_KEY = "#*";
+    private static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+
+    private final Class<?> queryClass;
+    private final TrackedField[] trackedFields;
+    private final Map<String, LocalToken> localTokens = new ConcurrentHashMap<>();
+
+    /**
+     * Track the fields of the query class which are compared to the entity fields of the same names and types
+     * by equality, i.e. without suffix or annotation.
+     * A query field of another type, like an Integer for an enum, is converted by the database
+     * and can not be matched with the written value, so the query stays untagged.
+     */
+    public QueryCacheInvalidator(Class<E> entityClass, Class<?> queryClass) {
+        this.queryClass = queryClass;
+        List<TrackedField> fields = new ArrayList<>();
+        for (Field queryField : FieldUtils.getAllFields(queryClass)) {
+            Field entityField = FieldUtils.getField(entityClass, queryField.getName(), true);
+            if (isTracked(queryField) && entityField != null && entityField.getType() == queryField.getType()
+                && FieldRowMapper.isPersistent(entityField)) {
+                fields.add(new TrackedField(queryField.getName(), CommonUtil.accessor(queryField), CommonUtil.fieldAccessor(entityField)));
+            }
+        }
+        trackedFields = fields.toArray(new TrackedField[0]);
+    }
+
+    private static boolean isTracked(Field field) {
+        Class<?> type = field.getType();
+        return !field.getName().startsWith("$")
+            && !Modifier.isStatic(field.getModifiers())
+            && field.getDeclaringClass() != PageQuery.class
+            && field.getAnnotations().length == 0
+            && QuerySuffix.resolve(field.getName()) == QuerySuffix.NONE
+            && !type.isPrimitive() && !type.isArray() && !Collection.class.isAssignableFrom(type);
+    }
+
+    /**
+     * Build the prefix of the key for the cached result of the query
+     *
+     * @return the prefix, or null when the tokens can not be read from the cache
+     */
+    public String keyPrefix(Cache cache, Object query) {
+        String tag = queryClass.isInstance(query) ? tag(query) : null;
+        String tableToken = token(cache, TABLE_KEY);
+        String token = tableToken == null ? null : token(cache, tag != null ? "#" + tag : UNTAGGED_KEY);
+        return token == null ? null : tableToken + "." + token + ":";
+    }
+
+    private String tag(Object query) {
+        for (TrackedField trackedField : trackedFields) {
+            Object value = trackedField.queryAccessor.get(query);
+            if (value != null) {
+                return trackedField.tag(value);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Invalidate the results which may contain the row before or after the write
+     *
+     * @param cache   the query cache
+     * @param origin  the row before the write, null for create
+     * @param current the row after the write, null for delete, or the fields to patch
+     */
+    public void invalidate(Cache cache, E origin, E current) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(UNTAGGED_KEY);
+        // the column left null in a new row may be filled by the default value of the database
+        if (!collect(keys, origin, false) || !collect(keys, current, origin == null)) {
+            invalidateAll(cache);
+            return;
+        }
+        keys.forEach(key -> renew(cache, key));
+    }
+
+    /**
+     * Invalidate the results which may contain the created rows
+     */
+    public void invalidateCreated(Cache cache, Iterable<E> entities) {
+        Set<String> keys = new LinkedHashSet<>();
+        keys.add(UNTAGGED_KEY);
+        for (E e : entities) {
+            if (!collect(keys, e, true)) {
+                invalidateAll(cache);
+                return;
+            }
+        }
+        keys.forEach(key -> renew(cache, key));
+    }
+
+    public void invalidateAll(Cache cache) {
+        renew(cache, TABLE_KEY);
+    }
+
+    private boolean collect(Set<String> keys, E entity, boolean unknownIfNull) {
+        if (entity == null) {
+            return true;
+        }
+        for (TrackedField trackedField : trackedFields) {
+            Object value = trackedField.entityAccessor.get(entity);
+            if (value != null) {
+                keys.add("#" + trackedField.tag(value));
+            } else if (unknownIfNull) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String token(Cache cache, String key) {
+        long now = System.currentTimeMillis();
+        LocalToken localToken = localTokens.get(key);
+        if (localToken != null && localToken.cache == cache && localToken.expireAt > now) {
+            return localToken.token;
+        }
+        String token = loadToken(cache, key);
+        if (token != null) {
+            keep(cache, key, token, now);
+        }
+        return token;
+    }
+
+    /**
+     * A missing token is created rather than defaulted,
+     * so that the results of a token evicted from the cache are not hit again.
+     */
+    private static String loadToken(Cache cache, String key) {
+        try {
+            Cache.ValueWrapper valueWrapper = cache.get(key);
+            if (valueWrapper != null && valueWrapper.get() != null) {
+                return valueWrapper.get().toString();
+            }
+            String token = newToken();
+            valueWrapper = cache.putIfAbsent(key, token);
+            return valueWrapper != null && valueWrapper.get() != null ? valueWrapper.get().toString() : token;
+        } catch (Exception e) {
+            log.error(String.format("Cache#get failed: [cache=%s, key=%s]", cache.getName(), key), e);
+            return null;
+        }
+    }
+
+    /**
+     * The renewed token is kept locally even if the put fails,
+     * so that this node never hits the results of the old token again.
+     */
+    private void renew(Cache cache, String key) {
+        String token = newToken();
+        keep(cache, key, token, System.currentTimeMillis());
+        try {
+            cache.put(key, token);
+        } catch (Exception e) {
+            log.error(String.format("Cache#put failed: [cache=%s, key=%s]", cache.getName(), key), e);
+        }
+    }
+
+    private void keep(Cache cache, String key, String token, long now) {
+        localTokens.put(key, new LocalToken(cache, token, now + GlobalConfiguration.instance().getQueryTokenTtl()));
+    }
+
+    private static String newToken() {
+        return Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, Character.MAX_RADIX);
+    }
+
+    @AllArgsConstructor
+    private static final class LocalToken {
+        private final Cache cache;
+        private final String token;
+        private final long expireAt;
+    }
+
+    @AllArgsConstructor
+    private static final class TrackedField {
+        private final String name;
+        private final FieldAccessor queryAccessor;
+        private final FieldAccessor entityAccessor;
+
+        /**
+         * A string is tagged in lower case without accents and trailing spaces,
+         * so that the values equal by a case or accent insensitive collation share the tag.
+         */
+        private String tag(Object value) {
+            return name + "=" + QueryKeyEncoder.encodeValue(value instanceof String ? normalize((String) value) : value);
+        }
+
+        private static String normalize(String value) {
+            String decomposed = Normalizer.normalize(value, Normalizer.Form.NFKD);
+            return COMBINING_MARKS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT).replaceAll("\\s+$", "");
+        }
+    }
+}
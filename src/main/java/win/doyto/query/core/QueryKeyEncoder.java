@@ -0,0 +1,203 @@
+package win.doyto.query.core;
+
+import org.apache.commons.lang3.reflect.FieldUtils;
+
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * QueryKeyEncoder
+ * <p>
+ * Encodes a query object to a canonical cache key like <i>username=test,idIn=[1,2],pageSize=10</i>,
+ * with the fields and their accessors resolved once for each query class. The values are read through
+ * the getters, the same as the args of the query.
+ * <ul>
+ * <li>The non-null fields are written in the declared order, the subclass first.</li>
+ * <li>The elements of a Set and the entries of a Map are sorted, so that equal sets and maps give the same key.</li>
+ * <li>An object referring back to itself is written as <i>#cycle</i> instead of recursing.</li>
+ * <li>Enums are written by name and dates by milliseconds.</li>
+ * </ul>
+ * {@link #hash(String)} shortens a key to 128 bits for the remote caches.
+ *
+ * @author f0rb on 2020-02-27
+ */
+public final class QueryKeyEncoder {
+
+    private static final Map<Class<?>, QueryKeyEncoder> encoderMap = new ConcurrentHashMap<>();
+    private static final ThreadLocal<MessageDigest> md5 = ThreadLocal.withInitial(QueryKeyEncoder::newMd5);
+
+    private final String[] names;
+    private final FieldAccessor[] accessors;
+    private final boolean[] paging;
+
+    private QueryKeyEncoder(Class<?> queryClass) {
+        List<Field> fields = new ArrayList<>();
+        for (Field field : FieldUtils.getAllFields(queryClass)) {
+            if (!field.getName().startsWith("$") && !Modifier.isStatic(field.getModifiers())) {
+                fields.add(field);
+            }
+        }
+        names = new String[fields.size()];
+        accessors = new FieldAccessor[fields.size()];
+        paging = new boolean[fields.size()];
+        for (int i = 0; i < names.length; i++) {
+            Field field = fields.get(i);
+            names[i] = field.getName();
+            accessors[i] = CommonUtil.accessor(field);
+            paging[i] = field.getDeclaringClass() == PageQuery.class;
+        }
+    }
+
+    private static QueryKeyEncoder of(Class<?> queryClass) {
+        return encoderMap.computeIfAbsent(queryClass, QueryKeyEncoder::new);
+    }
+
+    /**
+     * Encode all the non-null fields of the query
+     */
+    public static String encode(Object query) {
+        StringBuilder sb = new StringBuilder();
+        of(query.getClass()).append(sb, query, true, newPath(query));
+        return sb.toString();
+    }
+
+    /**
+     * Encode the non-null fields of the query except the paging fields of {@link PageQuery},
+     * so that the pages of the same query share the key.
+     */
+    public static String encodeWithoutPaging(Object query) {
+        StringBuilder sb = new StringBuilder();
+        of(query.getClass()).append(sb, query, false, newPath(query));
+        return sb.toString();
+    }
+
+    /**
+     * Hash the key to 128 bits in 22 characters of URL-safe Base64
+     */
+    public static String hash(String key) {
+        byte[] digest = md5.get().digest(key.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+    }
+
+    private static MessageDigest newMd5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Set<Object> newPath(Object root) {
+        Set<Object> path = Collections.newSetFromMap(new IdentityHashMap<>());
+        path.add(root);
+        return path;
+    }
+
+    private void append(StringBuilder sb, Object target, boolean withPaging, Set<Object> path) {
+        boolean first = true;
+        for (int i = 0; i < names.length; i++) {
+            if (!withPaging && paging[i]) {
+                continue;
+            }
+            Object value = accessors[i].get(target);
+            if (value != null) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                sb.append(names[i]).append('=');
+                appendValue(sb, value, path);
+            }
+        }
+    }
+
+    static String encodeValue(Object value) {
+        return encodeValue(value, Collections.newSetFromMap(new IdentityHashMap<>()));
+    }
+
+    private static String encodeValue(Object value, Set<Object> path) {
+        StringBuilder sb = new StringBuilder();
+        appendValue(sb, value, path);
+        return sb.toString();
+    }
+
+    private static void appendValue(StringBuilder sb, Object value, Set<Object> path) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Enum) {
+            sb.append(((Enum<?>) value).name());
+        } else if (value instanceof Date) {
+            sb.append(((Date) value).getTime());
+        } else if (value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+            || value instanceof Character) {
+            escape(sb, value.toString());
+        } else if (!path.add(value)) {
+            sb.append("#cycle");
+        } else {
+            appendComposite(sb, value, path);
+            path.remove(value);
+        }
+    }
+
+    private static void appendComposite(StringBuilder sb, Object value, Set<Object> path) {
+        if (value instanceof Map) {
+            List<String> entries = new ArrayList<>(((Map<?, ?>) value).size());
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                entries.add(encodeValue(entry.getKey(), path) + "=" + encodeValue(entry.getValue(), path));
+            }
+            Collections.sort(entries);
+            sb.append('{').append(String.join(",", entries)).append('}');
+        } else if (value instanceof Set) {
+            List<String> elements = new ArrayList<>(((Set<?>) value).size());
+            for (Object element : (Set<?>) value) {
+                elements.add(encodeValue(element, path));
+            }
+            Collections.sort(elements);
+            sb.append('[').append(String.join(",", elements)).append(']');
+        } else if (value instanceof Collection) {
+            appendElements(sb, (Collection<?>) value, path);
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            List<Object> elements = new ArrayList<>(length);
+            for (int i = 0; i < length; i++) {
+                elements.add(Array.get(value, i));
+            }
+            appendElements(sb, elements, path);
+        } else if (value.getClass().getName().startsWith("java.")) {
+            escape(sb, value.toString());
+        } else {
+            sb.append('{');
+            of(value.getClass()).append(sb, value, true, path);
+            sb.append('}');
+        }
+    }
+
+    private static void appendElements(StringBuilder sb, Collection<?> elements, Set<Object> path) {
+        sb.append('[');
+        boolean first = true;
+        for (Object element : elements) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            appendValue(sb, element, path);
+        }
+        sb.append(']');
+    }
+
+    private static void escape(StringBuilder sb, String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '\\' || c == ',' || c == '=' || c == '[' || c == ']' || c == '{' || c == '}') {
+                sb.append('\\');
+            }
+            sb.append(c);
+        }
+    }
+}
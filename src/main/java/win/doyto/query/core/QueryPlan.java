@@ -0,0 +1,167 @@
+package win.doyto.query.core;
+
+import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import org.apache.commons.lang3.StringUtils;
+import win.doyto.query.config.GlobalConfiguration;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+import static win.doyto.query.core.CommonUtil.readFieldGetter;
+import static win.doyto.query.core.Constant.WHERE;
+
+/**
+ * QueryPlan
+ * <p>
+ * Compiled WHERE clause builder of a query class.
+ * All the work independent of the query values, like resolving suffixes, column names,
+ * Or-splitting, table alias and annotations, is done once per query class.
+ * <p>
+ * The built sql is also cached by the shape of the query, i.e. which fields are present
+ * and the sizes of the collections, so that a query with a known shape only binds the args.
+ *
+ * @author f0rb on 2020-02-11
+ */
+final class QueryPlan {
+
+    private static final Map<Class<?>, QueryPlan> planMap = new ConcurrentHashMap<>();
+
+    private final FieldPlan[] fieldPlans;
+    private final Map<ShapeKey, String> sqlCache = new ConcurrentHashMap<>();
+
+    private QueryPlan(Class<?> queryClass) {
+        fieldPlans = Arrays.stream(queryClass.getDeclaredFields())
+                           .filter(CommonUtil::fieldFilter)
+                           .map(FieldPlan::new)
+                           .toArray(FieldPlan[]::new);
+    }
+
+    static QueryPlan of(Class<?> queryClass) {
+        return planMap.computeIfAbsent(queryClass, QueryPlan::new);
+    }
+
+    String buildWhere(String sql, Object query, List<Object> argList) {
+        return build(sql, query, argList, null, UnaryOperator.identity());
+    }
+
+    /**
+     * Build the sql starting with <code>start</code> for the query
+     *
+     * @param start   the sql before the WHERE clause
+     * @param query   the query object
+     * @param argList the list to collect the args
+     * @param tailKey the values which the <code>tail</code> depends on
+     * @param tail    append the clauses after the WHERE clause
+     * @return the sql
+     */
+    String build(String start, Object query, List<Object> argList, Object tailKey, UnaryOperator<String> tail) {
+        Object[] values = new Object[fieldPlans.length];
+        int[] shape = new int[fieldPlans.length];
+        boolean cacheable = !start.contains("${");
+        for (int i = 0; i < fieldPlans.length; i++) {
+            FieldPlan fieldPlan = fieldPlans[i];
+            Object value = readFieldGetter(fieldPlan.field, query);
+            if (fieldPlan.isValidValue(value)) {
+                values[i] = value;
+                shape[i] = fieldPlan.processor.shape(value);
+                cacheable &= shape[i] >= 0;
+            }
+        }
+        if (!cacheable) {
+            return tail.apply(doBuildWhere(start, values, argList));
+        }
+
+        GlobalConfiguration config = GlobalConfiguration.instance();
+        ShapeKey shapeKey = new ShapeKey(start, shape, config.isMapCamelCaseToUnderscore(),
+                                         config.isInListPadding(), config.getMaxInListSize(), tailKey);
+        String sql = sqlCache.get(shapeKey);
+        if (sql != null) {
+            for (int i = 0; i < fieldPlans.length; i++) {
+                if (shape[i] > 0) {
+                    fieldPlans[i].processor.bind(argList, values[i]);
+                }
+            }
+            return sql;
+        }
+        sql = tail.apply(doBuildWhere(start, values, argList));
+        if (sqlCache.size() < config.getSqlCacheSize()) {
+            sqlCache.putIfAbsent(shapeKey, sql);
+        }
+        return sql;
+    }
+
+    int cacheSize() {
+        return sqlCache.size();
+    }
+
+    private String doBuildWhere(String sql, Object[] values, List<Object> argList) {
+        List<Object> whereList = new ArrayList<>(fieldPlans.length);
+        for (int i = 0; i < fieldPlans.length; i++) {
+            FieldPlan fieldPlan = fieldPlans[i];
+            Object value = values[i];
+            if (value == null) {
+                continue;
+            }
+            if (fieldPlan.isPlaceHolderValue(sql, value)) {
+                sql = sql.replace(fieldPlan.placeHolder, (String) value);
+            } else {
+                String and = fieldPlan.processor.process(argList, value);
+                if (and != null) {
+                    whereList.add(and);
+                }
+            }
+        }
+        if (!whereList.isEmpty()) {
+            sql += WHERE + StringUtils.join(whereList, " AND ");
+        }
+        return sql;
+    }
+
+    @EqualsAndHashCode
+    @AllArgsConstructor
+    private static final class ShapeKey {
+        private final String start;
+        private final int[] shape;
+        private final boolean mapCamelCaseToUnderscore;
+        private final boolean inListPadding;
+        private final int maxInListSize;
+        private final Object tailKey;
+    }
+
+    private static final class FieldPlan {
+        private final Field field;
+        private final String placeHolder;
+        private final boolean isPrimitiveBoolean;
+        private final boolean isNotIn;
+        private final FieldProcessor.Processor processor;
+
+        private FieldPlan(Field field) {
+            this.field = field;
+            this.placeHolder = "${" + field.getName() + "}";
+            this.isPrimitiveBoolean = field.getType() == boolean.class;
+            this.isNotIn = field.getName().endsWith(QuerySuffix.NotIn.name());
+            this.processor = FieldProcessor.build(field);
+        }
+
+        /**
+         * Same as {@link CommonUtil#isValidValue(Object, Field)} with the field checks resolved.
+         */
+        private boolean isValidValue(Object value) {
+            return !(value == null
+                || (isPrimitiveBoolean && Boolean.FALSE.equals(value))
+                || (isNotIn && value instanceof Collection && ((Collection<?>) value).isEmpty())
+            );
+        }
+
+        private boolean isPlaceHolderValue(String sql, Object value) {
+            return value instanceof String && sql.contains(placeHolder) && QueryBuilder.PTN_REPLACE.matcher((String) value).matches();
+        }
+    }
+}
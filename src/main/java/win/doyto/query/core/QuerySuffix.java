@@ -3,16 +3,15 @@ package win.doyto.query.core;
 import lombok.Getter;
 import org.apache.commons.lang3.StringUtils;
 
+import win.doyto.query.config.GlobalConfiguration;
+
 import java.util.*;
-import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 import static win.doyto.query.core.CommonUtil.containsOr;
-import static win.doyto.query.core.Constant.SEPARATOR;
-import static win.doyto.query.core.Constant.WHERE;
+import static win.doyto.query.core.Constant.*;
 
 /**
  * QuerySuffix
@@ -37,13 +36,11 @@ enum QuerySuffix {
     NONE("=");
 
     private static final Pattern SUFFIX_PTN;
-    private static final Map<QuerySuffix, Function<ColumnMeta, String>> sqlFuncMap = new EnumMap<>(QuerySuffix.class);
 
     static {
         List<String> suffixList = Arrays.stream(values()).filter(querySuffix -> querySuffix != NONE).map(Enum::name).collect(Collectors.toList());
         String suffixPtn = StringUtils.join(suffixList, "|");
         SUFFIX_PTN = Pattern.compile("(" + suffixPtn + ")$");
-        Arrays.stream(values()).forEach(querySuffix -> sqlFuncMap.put(querySuffix, querySuffix::buildAndSql));
     }
 
     private final String op;
@@ -64,6 +61,17 @@ enum QuerySuffix {
     }
 
     static String buildAndSql(List<Object> argList, Object value, String fieldName) {
+        return compile(fieldName).process(argList, value);
+    }
+
+    /**
+     * Resolve the suffix, the column name and the Or-splitting of the field name once,
+     * so that only the value binding is left to do for each query.
+     *
+     * @param fieldName the field name of the query object, maybe with a table alias like <i>u.usernameLike</i>
+     * @return a processor which appends the args and returns the condition for the field
+     */
+    static FieldProcessor.Processor compile(String fieldName) {
         if (containsOr(fieldName)) {
             final String alias;
             int indexOfDot = fieldName.indexOf('.') + 1;
@@ -73,27 +81,12 @@ enum QuerySuffix {
             } else {
                 alias = "";
             }
-            Object finalValue = value;
-            String andSql = Arrays.stream(CommonUtil.splitByOr(fieldName))
-                                  .map(s -> buildAndSql(argList, finalValue, alias + s))
-                                  .collect(Collectors.joining(Constant.SPACE_OR));
-            return CommonUtil.wrapWithParenthesis(andSql);
+            FieldProcessor.Processor[] processors = Arrays.stream(CommonUtil.splitByOr(fieldName))
+                                                          .map(s -> compile(alias + s))
+                                                          .toArray(FieldProcessor.Processor[]::new);
+            return new OrProcessor(processors);
         }
-        QuerySuffix querySuffix = resolve(fieldName);
-        if (querySuffix == Like) {
-            value = CommonUtil.escapeLike(String.valueOf(value));
-        } else if (querySuffix == Start) {
-            value = CommonUtil.escapeStart(String.valueOf(value));
-        }
-        return sqlFuncMap.get(querySuffix).apply(new ColumnMeta(fieldName, value, argList));
-    }
-
-    static String buildWhereSql(List<Object> argList, Object value, String fieldName) {
-        return WHERE + buildAndSql(argList, value, fieldName);
-    }
-
-    private String buildAndSql(ColumnMeta columnMeta) {
-        return columnMeta.defaultSql(this, this.getEx(columnMeta.value));
+        return new ColumnProcessor(resolve(fieldName), fieldName);
     }
 
     String resolveColumnName(String fieldName) {
@@ -105,15 +98,123 @@ enum QuerySuffix {
         return ex.getEx(value);
     }
 
+    /**
+     * Condition of a single column with everything except the value resolved at compile time.
+     */
+    static final class ColumnProcessor implements FieldProcessor.Processor {
+        private final QuerySuffix querySuffix;
+        private final String columnName;
+        private final String underscoreColumnName;
+        private final boolean isLikeOp;
+
+        ColumnProcessor(QuerySuffix querySuffix, String fieldName) {
+            this.querySuffix = querySuffix;
+            this.columnName = querySuffix.resolveColumnName(fieldName);
+            this.underscoreColumnName = CommonUtil.camelCaseToUnderscore(columnName);
+            this.isLikeOp = querySuffix.getOp().contains("LIKE");
+        }
+
+        private Object escape(Object value) {
+            if (querySuffix == Like) {
+                value = CommonUtil.escapeLike(String.valueOf(value));
+            } else if (querySuffix == Start) {
+                value = CommonUtil.escapeStart(String.valueOf(value));
+            }
+            return value;
+        }
+
+        private boolean isBlankLike(Object value) {
+            return isLikeOp && value instanceof String && StringUtils.isBlank((String) value);
+        }
+
+        private boolean isInOp(Object value) {
+            return querySuffix.ex == Ex.COLLECTION && value instanceof Collection;
+        }
+
+        @SuppressWarnings("unchecked")
+        private List<Object> toArgs(Object value) {
+            return ColumnMeta.toArgs((Collection<Object>) value);
+        }
+
+        @Override
+        public String process(List<Object> argList, Object value) {
+            value = escape(value);
+            if (isBlankLike(value)) {
+                return null;
+            }
+            String column = GlobalConfiguration.instance().isMapCamelCaseToUnderscore() ? underscoreColumnName : columnName;
+            if (isInOp(value)) {
+                return InClause.build(column, querySuffix.op, toArgs(value), argList);
+            }
+            String ex = querySuffix.getEx(value);
+            ColumnMeta.appendArgs(ex, value, argList);
+            return ex.isEmpty() ? column + SPACE + querySuffix.op : column + SPACE + querySuffix.op + SPACE + ex;
+        }
+
+        @Override
+        public void bind(List<Object> argList, Object value) {
+            value = escape(value);
+            if (isInOp(value)) {
+                InClause.bind(toArgs(value), argList);
+            } else if (!isBlankLike(value)) {
+                ColumnMeta.appendArgs(querySuffix.ex == Ex.EMPTY ? EMPTY : REPLACE_HOLDER, value, argList);
+            }
+        }
+
+        @Override
+        public int shape(Object value) {
+            if (isInOp(value)) {
+                return InClause.argCount(((Collection<?>) value).size()) + 1;
+            }
+            if (value instanceof Collection) {
+                return ((Collection<?>) value).size() + 1;
+            }
+            return isBlankLike(escape(value)) ? 0 : 1;
+        }
+    }
+
+    /**
+     * Conditions of the columns split by <i>Or</i> from a field name.
+     */
+    static final class OrProcessor implements FieldProcessor.Processor {
+        private final FieldProcessor.Processor[] processors;
+
+        OrProcessor(FieldProcessor.Processor[] processors) {
+            this.processors = processors;
+        }
+
+        @Override
+        public String process(List<Object> argList, Object value) {
+            StringBuilder andSql = new StringBuilder(String.valueOf(processors[0].process(argList, value)));
+            for (int i = 1; i < processors.length; i++) {
+                andSql.append(SPACE_OR).append(processors[i].process(argList, value));
+            }
+            return CommonUtil.wrapWithParenthesis(andSql.toString());
+        }
+
+        @Override
+        public void bind(List<Object> argList, Object value) {
+            for (FieldProcessor.Processor processor : processors) {
+                processor.bind(argList, value);
+            }
+        }
+
+        @Override
+        public int shape(Object value) {
+            for (FieldProcessor.Processor processor : processors) {
+                if (processor.shape(value) != 1) {
+                    return -1;
+                }
+            }
+            return 1;
+        }
+    }
+
     @SuppressWarnings("java:S1214")
     interface Ex {
         Ex REPLACE_HOLDER = value -> Constant.REPLACE_HOLDER;
         Ex EMPTY = value -> Constant.EMPTY;
-        Ex COLLECTION = value -> {
-            int size = ((Collection<?>) value).size();
-            String replaceHolders = IntStream.range(0, size).mapToObj(i -> Constant.REPLACE_HOLDER).collect(Collectors.joining(SEPARATOR));
-            return CommonUtil.wrapWithParenthesis(StringUtils.trimToNull(replaceHolders));
-        };
+        Ex COLLECTION = value -> InClause.placeHolders(InClause.paddedSize(((Collection<?>) value).size()));
 
         String getEx(Object value);
     }
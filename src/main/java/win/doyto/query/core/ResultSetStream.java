@@ -0,0 +1,111 @@
+package win.doyto.query.core;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import org.springframework.jdbc.core.JdbcOperations;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.jdbc.support.JdbcAccessor;
+import org.springframework.jdbc.support.JdbcUtils;
+import win.doyto.query.config.GlobalConfiguration;
+
+import java.sql.*;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import javax.sql.DataSource;
+
+/**
+ * ResultSetStream
+ * <p>
+ * Maps the rows of a forward-only and read-only ResultSet lazily,
+ * with the fetch size from {@link GlobalConfiguration#getFetchSize()}.
+ *
+ * @author f0rb on 2020-02-16
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class ResultSetStream {
+
+    static PreparedStatementCreator creator(String sql, Object[] args) {
+        return connection -> prepareStatement(connection, sql, args);
+    }
+
+    private static PreparedStatement prepareStatement(Connection connection, String sql, Object[] args) throws SQLException {
+        PreparedStatement ps = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        int fetchSize = GlobalConfiguration.instance().getFetchSize();
+        if (fetchSize != 0) {
+            ps.setFetchSize(fetchSize);
+        }
+        int i = 1;
+        for (Object arg : args) {
+            ps.setObject(i++, arg);
+        }
+        return ps;
+    }
+
+    /**
+     * The connection, the statement and the ResultSet are released when the stream is closed,
+     * so the stream should be used in a try-with-resources statement.
+     * <p>
+     * Falls back to a materialized list when the DataSource is not accessible.
+     */
+    static <T> Stream<T> of(JdbcOperations jdbcOperations, SqlAndArgs sqlAndArgs, RowMapper<T> rowMapper) {
+        if (!(jdbcOperations instanceof JdbcAccessor)) {
+            return jdbcOperations.query(sqlAndArgs.sql, sqlAndArgs.args, rowMapper).stream();
+        }
+        JdbcAccessor jdbcAccessor = (JdbcAccessor) jdbcOperations;
+        DataSource dataSource = jdbcAccessor.getDataSource();
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        PreparedStatement ps = null;
+        ResultSet rs = null;
+        try {
+            ps = prepareStatement(connection, sqlAndArgs.sql, sqlAndArgs.args);
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            close(rs, ps, connection, dataSource);
+            throw jdbcAccessor.getExceptionTranslator().translate("ResultSetStream", sqlAndArgs.sql, e);
+        }
+        ResultSet resultSet = rs;
+        PreparedStatement statement = ps;
+        return StreamSupport.stream(new RowSpliterator<>(jdbcAccessor, sqlAndArgs.sql, resultSet, rowMapper), false)
+                            .onClose(() -> close(resultSet, statement, connection, dataSource));
+    }
+
+    private static void close(ResultSet rs, Statement ps, Connection connection, DataSource dataSource) {
+        JdbcUtils.closeResultSet(rs);
+        JdbcUtils.closeStatement(ps);
+        DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+
+    private static class RowSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final JdbcAccessor jdbcAccessor;
+        private final String sql;
+        private final ResultSet rs;
+        private final RowMapper<T> rowMapper;
+        private int rowNum = 0;
+
+        RowSpliterator(JdbcAccessor jdbcAccessor, String sql, ResultSet rs, RowMapper<T> rowMapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED);
+            this.jdbcAccessor = jdbcAccessor;
+            this.sql = sql;
+            this.rs = rs;
+            this.rowMapper = rowMapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            try {
+                if (!rs.next()) {
+                    return false;
+                }
+                action.accept(rowMapper.mapRow(rs, rowNum++));
+                return true;
+            } catch (SQLException e) {
+                throw jdbcAccessor.getExceptionTranslator().translate("ResultSetStream", sql, e);
+            }
+        }
+    }
+}
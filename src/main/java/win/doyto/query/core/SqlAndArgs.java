@@ -1,10 +1,8 @@
 package win.doyto.query.core;
 
 import lombok.Getter;
-import lombok.extern.slf4j.Slf4j;
 
 import java.util.List;
-import java.util.stream.Collectors;
 
 import static win.doyto.query.core.CommonUtil.wrapWithParenthesis;
 import static win.doyto.query.core.Constant.SEPARATOR;
@@ -14,26 +12,39 @@ import static win.doyto.query.core.Constant.SEPARATOR;
  *
  * @author f0rb on 2019-05-31
  */
-@Slf4j
 @Getter
 public class SqlAndArgs {
     String sql;
     Object[] args;
 
     public SqlAndArgs(String sql, List<?> argList) {
+        this(sql, argList.toArray());
+    }
+
+    public SqlAndArgs(String sql, Object[] args) {
         this.sql = sql;
-        this.args = argList.toArray();
-        logSqlInfo(sql, argList);
+        this.args = args;
     }
 
-    static void logSqlInfo(String sql, List<?> argList) {
-        if (log.isDebugEnabled()) {
-            log.debug("SQL  : {}", sql);
-            String params = argList
-                    .stream()
-                    .map(arg -> arg + (arg == null ? "" : wrapWithParenthesis(arg.getClass().getName())))
-                    .collect(Collectors.joining(SEPARATOR));
-            log.debug("Param: {}", params);
+    /**
+     * Format the args with their types like <i>1(java.lang.Integer), test(java.lang.String)</i>
+     */
+    public String formatArgs() {
+        StringBuilder sb = new StringBuilder();
+        for (Object arg : args) {
+            if (sb.length() > 0) {
+                sb.append(SEPARATOR);
+            }
+            sb.append(arg);
+            if (arg != null) {
+                sb.append(wrapWithParenthesis(arg.getClass().getName()));
+            }
         }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return sql + " [" + formatArgs() + "]";
     }
 }
@@ -0,0 +1,26 @@
+package win.doyto.query.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * SqlEvent
+ * <p>
+ * A SQL statement executed, with the args of the first row for a batch.
+ * The args are formatted only by {@link SqlAndArgs#formatArgs()}.
+ *
+ * @author f0rb on 2020-02-25
+ */
+@Getter
+@AllArgsConstructor
+public class SqlEvent {
+    /**
+     * The simple name of the entity class, or the table of the associative service
+     */
+    private final String source;
+    private final SqlAndArgs sqlAndArgs;
+    private final int batchSize;
+    private final long buildNanos;
+    private final long executeNanos;
+    private final boolean success;
+}
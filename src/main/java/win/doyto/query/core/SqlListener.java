@@ -0,0 +1,33 @@
+package win.doyto.query.core;
+
+/**
+ * SqlListener
+ * <p>
+ * SPI to receive each SQL statement before and after its execution,
+ * registered by {@link win.doyto.query.config.GlobalConfiguration#getSqlListeners()}.
+ *
+ * @author f0rb on 2020-02-25
+ */
+public interface SqlListener {
+
+    /**
+     * Checked before each statement, so that no event is built when no listener is enabled.
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /**
+     * Called before the execution, so that a statement hanging or failing is observed as well.
+     *
+     * @param source     the simple name of the entity class, or the table of the associative service
+     * @param sqlAndArgs the statement, with the args of the first row for a batch
+     */
+    default void beforeSql(String source, SqlAndArgs sqlAndArgs) {
+    }
+
+    /**
+     * Called after the execution, whether it succeeded or not.
+     */
+    void onSql(SqlEvent event);
+}
@@ -0,0 +1,45 @@
+package win.doyto.query.core;
+
+import lombok.extern.slf4j.Slf4j;
+import win.doyto.query.config.GlobalConfiguration;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * SqlLogger
+ * <p>
+ * The default {@link SqlListener} which logs every statement at DEBUG level before its execution,
+ * or a sample of the statements and all the failed ones at INFO level after the execution
+ * by {@link GlobalConfiguration#getSqlLogSampleRate()} when DEBUG is disabled.
+ *
+ * @author f0rb on 2020-02-25
+ */
+@Slf4j
+public final class SqlLogger implements SqlListener {
+
+    @Override
+    public boolean isEnabled() {
+        return log.isDebugEnabled() || (GlobalConfiguration.instance().getSqlLogSampleRate() > 0 && log.isInfoEnabled());
+    }
+
+    @Override
+    public void beforeSql(String source, SqlAndArgs sqlAndArgs) {
+        if (log.isDebugEnabled()) {
+            log.debug("SQL  : {}", sqlAndArgs.getSql());
+            log.debug("Param: {}", sqlAndArgs.formatArgs());
+        }
+    }
+
+    @Override
+    public void onSql(SqlEvent event) {
+        SqlAndArgs sqlAndArgs = event.getSqlAndArgs();
+        if (log.isDebugEnabled()) {
+            if (!event.isSuccess()) {
+                log.debug("Failed after {} ms", (event.getBuildNanos() + event.getExecuteNanos()) / 1_000_000);
+            }
+        } else if (!event.isSuccess() || ThreadLocalRandom.current().nextDouble() < GlobalConfiguration.instance().getSqlLogSampleRate()) {
+            log.info("SQL  : {} | Param: {} | {} ms{}", sqlAndArgs.getSql(), sqlAndArgs.formatArgs(),
+                     (event.getBuildNanos() + event.getExecuteNanos()) / 1_000_000, event.isSuccess() ? "" : " | failed");
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package win.doyto.query.core;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import win.doyto.query.config.GlobalConfiguration;
+import win.doyto.query.metrics.MetricsRecorder;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * SqlTimer
+ * <p>
+ * Times the building and the execution of each SQL statement,
+ * publishes it to the enabled {@link SqlListener}s and the {@link MetricsRecorder},
+ * and logs the statements slower than {@link GlobalConfiguration#getSlowQueryThreshold()}.
+ * Nothing is timed when none of them is enabled.
+ *
+ * @author f0rb on 2020-02-24
+ */
+@Slf4j
+public final class SqlTimer {
+
+    static final long DISABLED = Long.MIN_VALUE;
+
+    private final String source;
+
+    @Setter
+    private MetricsRecorder metricsRecorder;
+
+    /**
+     * @param source the simple name of the entity class, or the table of the statements
+     */
+    public SqlTimer(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Call before building the SQL
+     *
+     * @return the start time to pass to {@link #execute(long, SqlAndArgs, Supplier)}
+     */
+    public long start() {
+        GlobalConfiguration globalConfiguration = GlobalConfiguration.instance();
+        boolean enabled = metricsRecorder != null || globalConfiguration.getSlowQueryThreshold() > 0
+            || isAnyEnabled(globalConfiguration.getSqlListeners());
+        return enabled ? System.nanoTime() : DISABLED;
+    }
+
+    private static boolean isAnyEnabled(List<SqlListener> sqlListeners) {
+        for (SqlListener sqlListener : sqlListeners) {
+            if (sqlListener.isEnabled()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public <T> T execute(long buildStart, SqlAndArgs sqlAndArgs, Supplier<T> statement) {
+        return execute(buildStart, sqlAndArgs, 1, statement);
+    }
+
+    /**
+     * Execute the statement built since <code>buildStart</code>
+     *
+     * @param buildStart the time returned by {@link #start()}
+     * @param sqlAndArgs the statement, with the args of the first row for a batch
+     * @param batchSize  the amount of the rows of a batch, 1 for a single statement
+     * @param statement  the execution of the statement
+     * @return the result of the statement
+     */
+    public <T> T execute(long buildStart, SqlAndArgs sqlAndArgs, int batchSize, Supplier<T> statement) {
+        if (buildStart == DISABLED) {
+            return statement.get();
+        }
+        beforeSql(sqlAndArgs);
+        long executeStart = System.nanoTime();
+        boolean success = false;
+        try {
+            T result = statement.get();
+            success = true;
+            return result;
+        } finally {
+            record(sqlAndArgs, batchSize, executeStart - buildStart, System.nanoTime() - executeStart, success);
+        }
+    }
+
+    /**
+     * Execute the query of the lazy stream built since <code>buildStart</code>,
+     * and record it when the stream is closed, so that the time to read and map the rows is included.
+     *
+     * @param buildStart the time returned by {@link #start()}
+     * @param sqlAndArgs the statement
+     * @param statement  the creation of the stream
+     * @return the stream recorded at close
+     */
+    public <T> Stream<T> stream(long buildStart, SqlAndArgs sqlAndArgs, Supplier<Stream<T>> statement) {
+        if (buildStart == DISABLED) {
+            return statement.get();
+        }
+        beforeSql(sqlAndArgs);
+        long executeStart = System.nanoTime();
+        Stream<T> stream;
+        try {
+            stream = statement.get();
+        } catch (RuntimeException | Error e) {
+            record(sqlAndArgs, 1, executeStart - buildStart, System.nanoTime() - executeStart, false);
+            throw e;
+        }
+        AtomicBoolean closed = new AtomicBoolean();
+        return stream.onClose(() -> {
+            if (closed.compareAndSet(false, true)) {
+                record(sqlAndArgs, 1, executeStart - buildStart, System.nanoTime() - executeStart, true);
+            }
+        });
+    }
+
+    private void beforeSql(SqlAndArgs sqlAndArgs) {
+        for (SqlListener sqlListener : GlobalConfiguration.instance().getSqlListeners()) {
+            if (sqlListener.isEnabled()) {
+                try {
+                    sqlListener.beforeSql(source, sqlAndArgs);
+                } catch (RuntimeException e) {
+                    log.warn("SqlListener failed: " + sqlListener.getClass().getName(), e);
+                }
+            }
+        }
+    }
+
+    private void record(SqlAndArgs sqlAndArgs, int batchSize, long buildNanos, long executeNanos, boolean success) {
+        SqlEvent event = null;
+        for (SqlListener sqlListener : GlobalConfiguration.instance().getSqlListeners()) {
+            if (sqlListener.isEnabled()) {
+                if (event == null) {
+                    event = new SqlEvent(source, sqlAndArgs, batchSize, buildNanos, executeNanos, success);
+                }
+                try {
+                    sqlListener.onSql(event);
+                } catch (RuntimeException e) {
+                    log.warn("SqlListener failed: " + sqlListener.getClass().getName(), e);
+                }
+            }
+        }
+        if (metricsRecorder != null) {
+            metricsRecorder.recordSql(source, sqlAndArgs.sql, buildNanos, executeNanos, success);
+        }
+        long threshold = GlobalConfiguration.instance().getSlowQueryThreshold();
+        long millis = (buildNanos + executeNanos) / 1_000_000;
+        if (threshold > 0 && millis >= threshold) {
+            log.warn("Slow SQL [{}] {} ms (build {} ms): {}", source, millis, buildNanos / 1_000_000, sqlAndArgs.sql);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package win.doyto.query.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.cache.Cache;
+import win.doyto.query.cache.MultiSetCache;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * InstrumentedCache
+ * <p>
+ * Decorates a {@link Cache} to record the hits, the misses, the puts and the evictions to a {@link MetricsRecorder}.
+ *
+ * @author f0rb on 2020-02-24
+ */
+@AllArgsConstructor
+public class InstrumentedCache implements Cache {
+
+    @Getter
+    private final Cache delegate;
+    private final MetricsRecorder metricsRecorder;
+
+    /**
+     * Keep {@link MultiSetCache} supported by the decorator
+     */
+    public static Cache wrap(Cache cache, MetricsRecorder metricsRecorder) {
+        return cache instanceof MultiSetCache ? new InstrumentedMultiSetCache((MultiSetCache) cache, metricsRecorder)
+            : new InstrumentedCache(cache, metricsRecorder);
+    }
+
+    @Override
+    public String getName() {
+        return delegate.getName();
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return delegate.getNativeCache();
+    }
+
+    @Override
+    public ValueWrapper get(Object key) {
+        long start = System.nanoTime();
+        ValueWrapper valueWrapper = delegate.get(key);
+        record(valueWrapper != null ? MetricsRecorder.CacheEvent.HIT : MetricsRecorder.CacheEvent.MISS, start);
+        return valueWrapper;
+    }
+
+    @Override
+    public <T> T get(Object key, Class<T> type) {
+        long start = System.nanoTime();
+        T value = delegate.get(key, type);
+        record(value != null ? MetricsRecorder.CacheEvent.HIT : MetricsRecorder.CacheEvent.MISS, start);
+        return value;
+    }
+
+    /**
+     * A miss is recorded when the value loader is called.
+     */
+    @Override
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        long start = System.nanoTime();
+        boolean[] loaded = {false};
+        T value = delegate.get(key, () -> {
+            loaded[0] = true;
+            return valueLoader.call();
+        });
+        record(loaded[0] ? MetricsRecorder.CacheEvent.MISS : MetricsRecorder.CacheEvent.HIT, start);
+        return value;
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        long start = System.nanoTime();
+        delegate.put(key, value);
+        record(MetricsRecorder.CacheEvent.PUT, start);
+    }
+
+    @Override
+    public ValueWrapper putIfAbsent(Object key, Object value) {
+        long start = System.nanoTime();
+        ValueWrapper valueWrapper = delegate.putIfAbsent(key, value);
+        record(MetricsRecorder.CacheEvent.PUT, start);
+        return valueWrapper;
+    }
+
+    @Override
+    public void evict(Object key) {
+        long start = System.nanoTime();
+        delegate.evict(key);
+        record(MetricsRecorder.CacheEvent.EVICT, start);
+    }
+
+    @Override
+    public void clear() {
+        delegate.clear();
+    }
+
+    void record(MetricsRecorder.CacheEvent event, long start) {
+        metricsRecorder.recordCache(delegate.getName(), event, System.nanoTime() - start);
+    }
+
+    private static final class InstrumentedMultiSetCache extends InstrumentedCache implements MultiSetCache {
+        private final MultiSetCache multiSetCache;
+
+        private InstrumentedMultiSetCache(MultiSetCache delegate, MetricsRecorder metricsRecorder) {
+            super(delegate, metricsRecorder);
+            this.multiSetCache = delegate;
+        }
+
+        @Override
+        public void putAll(Map<Object, Object> entries) {
+            long start = System.nanoTime();
+            multiSetCache.putAll(entries);
+            record(MetricsRecorder.CacheEvent.PUT, start);
+        }
+
+        @Override
+        public void fillAll(Map<Object, Object> entries) {
+            long start = System.nanoTime();
+            multiSetCache.fillAll(entries);
+            record(MetricsRecorder.CacheEvent.PUT, start);
+        }
+
+        @Override
+        public List<ValueWrapper> getAll(List<?> keys) {
+            long start = System.nanoTime();
+            List<ValueWrapper> valueWrappers = multiSetCache.getAll(keys);
+            for (ValueWrapper valueWrapper : valueWrappers) {
+                record(valueWrapper != null ? MetricsRecorder.CacheEvent.HIT : MetricsRecorder.CacheEvent.MISS, start);
+            }
+            return valueWrappers;
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package win.doyto.query.metrics;
+
+import lombok.Getter;
+import win.doyto.query.core.DataAccess;
+import win.doyto.query.core.IdWrapper;
+import win.doyto.query.entity.Persistable;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+
+/**
+ * InstrumentedDataAccess
+ * <p>
+ * Decorates a {@link DataAccess} to record the time, the rows and the outcome of each operation
+ * to a {@link MetricsRecorder}. The stream is lazy and passed through without recording,
+ * and the count is recorded without rows since it reads no rows.
+ *
+ * @author f0rb on 2020-02-24
+ */
+public final class InstrumentedDataAccess<E extends Persistable<I>, I extends Serializable, Q> implements DataAccess<E, I, Q> {
+
+    @Getter
+    private final DataAccess<E, I, Q> delegate;
+    private final String entity;
+    private final MetricsRecorder metricsRecorder;
+
+    public InstrumentedDataAccess(DataAccess<E, I, Q> delegate, Class<E> entityClass, MetricsRecorder metricsRecorder) {
+        this.delegate = delegate;
+        this.entity = entityClass.getSimpleName();
+        this.metricsRecorder = metricsRecorder;
+    }
+
+    private <T> T record(String operation, Supplier<T> supplier) {
+        return record(operation, supplier, result -> result instanceof Collection ? ((Collection<?>) result).size() : (result == null ? 0 : 1));
+    }
+
+    private <T> T record(String operation, Supplier<T> supplier, ToIntFunction<T> rowsOf) {
+        long start = System.nanoTime();
+        boolean success = false;
+        int rows = -1;
+        try {
+            T result = supplier.get();
+            success = true;
+            rows = rowsOf.applyAsInt(result);
+            return result;
+        } finally {
+            metricsRecorder.recordOperation(entity, operation, System.nanoTime() - start, rows, success);
+        }
+    }
+
+    private int recordUpdate(String operation, IntSupplier supplier) {
+        long start = System.nanoTime();
+        boolean success = false;
+        int rows = -1;
+        try {
+            rows = supplier.getAsInt();
+            success = true;
+            return rows;
+        } finally {
+            metricsRecorder.recordOperation(entity, operation, System.nanoTime() - start, rows, success);
+        }
+    }
+
+    @Override
+    public List<E> query(Q query) {
+        return record("query", () -> delegate.query(query));
+    }
+
+    @Override
+    public Stream<E> stream(Q query) {
+        return delegate.stream(query);
+    }
+
+    @Override
+    public void forEach(Q query, Consumer<E> action) {
+        int[] rows = {0};
+        recordUpdate("forEach", () -> {
+            delegate.forEach(query, e -> {
+                rows[0]++;
+                action.accept(e);
+            });
+            return rows[0];
+        });
+    }
+
+    @Override
+    public long count(Q query) {
+        return record("count", () -> delegate.count(query), count -> -1);
+    }
+
+    @Override
+    public <V> List<V> queryColumns(Q q, Class<V> clazz, String... columns) {
+        return record("queryColumns", () -> delegate.queryColumns(q, clazz, columns));
+    }
+
+    @Override
+    public <V> List<V> queryProjection(Q q, Class<V> projectionClass) {
+        return record("queryProjection", () -> delegate.queryProjection(q, projectionClass));
+    }
+
+    @Override
+    public E get(IdWrapper<I> w) {
+        return record("get", () -> delegate.get(w));
+    }
+
+    @Override
+    public List<E> getAllByIdWrappers(Collection<? extends IdWrapper<I>> ws) {
+        return record("getAll", () -> delegate.getAllByIdWrappers(ws));
+    }
+
+    @Override
+    public int delete(IdWrapper<I> w) {
+        return recordUpdate("delete", () -> delegate.delete(w));
+    }
+
+    @Override
+    public int delete(Q query) {
+        return recordUpdate("delete", () -> delegate.delete(query));
+    }
+
+    @Override
+    public void create(E e) {
+        recordUpdate("create", () -> {
+            delegate.create(e);
+            return 1;
+        });
+    }
+
+    @Override
+    public int batchInsert(Iterable<E> entities, String... columns) {
+        return recordUpdate("batchInsert", () -> delegate.batchInsert(entities, columns));
+    }
+
+    @Override
+    public int update(E e) {
+        return recordUpdate("update", () -> delegate.update(e));
+    }
+
+    @Override
+    public int patch(E e) {
+        return recordUpdate("patch", () -> delegate.patch(e));
+    }
+
+    @Override
+    public int batchUpdate(Iterable<E> entities) {
+        return recordUpdate("batchUpdate", () -> delegate.batchUpdate(entities));
+    }
+
+    @Override
+    public int batchPatch(Iterable<E> entities) {
+        return recordUpdate("batchPatch", () -> delegate.batchPatch(entities));
+    }
+
+    @Override
+    public int patch(E e, Q q) {
+        return recordUpdate("patch", () -> delegate.patch(e, q));
+    }
+
+    @Override
+    public List<I> queryIds(Q query) {
+        return record("queryIds", () -> delegate.queryIds(query));
+    }
+}
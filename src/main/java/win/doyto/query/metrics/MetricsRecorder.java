@@ -0,0 +1,51 @@
+package win.doyto.query.metrics;
+
+/**
+ * MetricsRecorder
+ * <p>
+ * SPI to receive the timings of the data access operations, the SQL statements and the caches.
+ * All the times are in nanoseconds, and the methods are called on the hot path,
+ * so the implementations should record without blocking.
+ *
+ * @author f0rb on 2020-02-24
+ */
+public interface MetricsRecorder {
+
+    enum CacheEvent {
+        HIT, MISS, PUT, EVICT
+    }
+
+    /**
+     * Record an operation of {@link win.doyto.query.core.DataAccess}
+     *
+     * @param entity    the simple name of the entity class
+     * @param operation the name of the operation, like query, count, get, create
+     * @param nanos     the time of the whole operation
+     * @param rows      the amount of the rows returned or affected, -1 if unknown
+     * @param success   false if the operation threw an exception
+     */
+    default void recordOperation(String entity, String operation, long nanos, int rows, boolean success) {
+    }
+
+    /**
+     * Record a SQL statement executed by {@link win.doyto.query.core.JdbcDataAccess}
+     *
+     * @param entity       the simple name of the entity class
+     * @param sql          the SQL statement
+     * @param buildNanos   the time to build the SQL and the args
+     * @param executeNanos the time to execute the statement and map the rows
+     * @param success      false if the execution threw an exception
+     */
+    default void recordSql(String entity, String sql, long buildNanos, long executeNanos, boolean success) {
+    }
+
+    /**
+     * Record an access of the cache
+     *
+     * @param cache the name of the cache
+     * @param event hit or miss of a get, a put or an evict
+     * @param nanos the time of the access
+     */
+    default void recordCache(String cache, CacheEvent event, long nanos) {
+    }
+}
@@ -0,0 +1,125 @@
+package win.doyto.query.metrics;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import win.doyto.query.cache.CacheWriter;
+import win.doyto.query.cache.SingleFlight;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * MicrometerMetricsRecorder
+ * <p>
+ * Binds the metrics to Micrometer, which is an optional dependency:
+ * <ul>
+ * <li><i>doyto.query.operation</i>: timer tagged by entity, operation and outcome</li>
+ * <li><i>doyto.query.rows</i>: distribution summary of the rows tagged by entity and operation</li>
+ * <li><i>doyto.query.sql.build</i>, <i>doyto.query.sql.execute</i>: timers tagged by entity and outcome</li>
+ * <li><i>doyto.query.cache</i>: timer tagged by cache and event</li>
+ * <li><i>doyto.query.cache.load</i>: counter of the loads for the cache misses tagged by result,
+ * <i>loaded</i>, <i>coalesced</i> into a concurrent load or <i>timeout</i> of waiting for it</li>
+ * <li><i>doyto.query.cache.write</i>: counter of the background puts tagged by result,
+ * <i>written</i>, <i>coalesced</i> into a later put of the same key or <i>dropped</i> for the full queue</li>
+ * </ul>
+ * The meters are registered once for each combination of the tags.
+ *
+ * @author f0rb on 2020-02-24
+ */
+public class MicrometerMetricsRecorder implements MetricsRecorder {
+
+    private static final String ENTITY = "entity";
+    private static final String OPERATION = "operation";
+    private static final String OUTCOME = "outcome";
+
+    private final MeterRegistry registry;
+    private final Map<String, Map<String, OperationMeters>> operationMetersMap = new ConcurrentHashMap<>();
+    private final Map<String, SqlMeters> sqlMetersMap = new ConcurrentHashMap<>();
+    private final Map<String, Map<CacheEvent, Timer>> cacheTimersMap = new ConcurrentHashMap<>();
+
+    public MicrometerMetricsRecorder(MeterRegistry registry) {
+        this.registry = registry;
+        SingleFlight singleFlight = SingleFlight.instance();
+        FunctionCounter.builder("doyto.query.cache.load", singleFlight, SingleFlight::getLoads)
+                       .tags("result", "loaded").register(registry);
+        FunctionCounter.builder("doyto.query.cache.load", singleFlight, SingleFlight::getCoalesced)
+                       .tags("result", "coalesced").register(registry);
+        FunctionCounter.builder("doyto.query.cache.load", singleFlight, SingleFlight::getTimeouts)
+                       .tags("result", "timeout").register(registry);
+        CacheWriter cacheWriter = CacheWriter.instance();
+        FunctionCounter.builder("doyto.query.cache.write", cacheWriter, CacheWriter::getWritten)
+                       .tags("result", "written").register(registry);
+        FunctionCounter.builder("doyto.query.cache.write", cacheWriter, CacheWriter::getCoalesced)
+                       .tags("result", "coalesced").register(registry);
+        FunctionCounter.builder("doyto.query.cache.write", cacheWriter, CacheWriter::getDropped)
+                       .tags("result", "dropped").register(registry);
+    }
+
+    @Override
+    public void recordOperation(String entity, String operation, long nanos, int rows, boolean success) {
+        OperationMeters meters = operationMetersMap.computeIfAbsent(entity, k -> new ConcurrentHashMap<>())
+                                                   .computeIfAbsent(operation, k -> new OperationMeters(entity, operation));
+        (success ? meters.success : meters.error).record(nanos, TimeUnit.NANOSECONDS);
+        if (rows >= 0) {
+            meters.rows.record(rows);
+        }
+    }
+
+    @Override
+    public void recordSql(String entity, String sql, long buildNanos, long executeNanos, boolean success) {
+        SqlMeters meters = sqlMetersMap.computeIfAbsent(entity, SqlMeters::new);
+        meters.build.record(buildNanos, TimeUnit.NANOSECONDS);
+        (success ? meters.success : meters.error).record(executeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordCache(String cache, CacheEvent event, long nanos) {
+        cacheTimersMap.computeIfAbsent(cache, this::cacheTimers).get(event).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    private Map<CacheEvent, Timer> cacheTimers(String cache) {
+        Map<CacheEvent, Timer> timers = new EnumMap<>(CacheEvent.class);
+        for (CacheEvent event : CacheEvent.values()) {
+            timers.put(event, Timer.builder("doyto.query.cache")
+                                   .tags("cache", cache, "event", event.name().toLowerCase())
+                                   .register(registry));
+        }
+        return timers;
+    }
+
+    private final class OperationMeters {
+        private final Timer success;
+        private final Timer error;
+        private final DistributionSummary rows;
+
+        private OperationMeters(String entity, String operation) {
+            success = operationTimer(entity, operation, "success");
+            error = operationTimer(entity, operation, "error");
+            rows = DistributionSummary.builder("doyto.query.rows")
+                                      .tags(ENTITY, entity, OPERATION, operation)
+                                      .register(registry);
+        }
+
+        private Timer operationTimer(String entity, String operation, String outcome) {
+            return Timer.builder("doyto.query.operation")
+                        .tags(ENTITY, entity, OPERATION, operation, OUTCOME, outcome)
+                        .register(registry);
+        }
+    }
+
+    private final class SqlMeters {
+        private final Timer build;
+        private final Timer success;
+        private final Timer error;
+
+        private SqlMeters(String entity) {
+            build = Timer.builder("doyto.query.sql.build").tags(ENTITY, entity).register(registry);
+            success = Timer.builder("doyto.query.sql.execute").tags(ENTITY, entity, OUTCOME, "success").register(registry);
+            error = Timer.builder("doyto.query.sql.execute").tags(ENTITY, entity, OUTCOME, "error").register(registry);
+        }
+    }
+}
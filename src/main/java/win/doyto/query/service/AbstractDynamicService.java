@@ -1,30 +1,41 @@
 package win.doyto.query.service;
 
 import lombok.Setter;
-import org.apache.commons.lang3.builder.ToStringBuilder;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.support.NoOpCache;
 import org.springframework.context.annotation.Lazy;
-import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.support.*;
+import win.doyto.query.cache.CacheInvalidationChannel;
 import win.doyto.query.cache.CacheWrapper;
+import win.doyto.query.cache.TwoLevelCache;
+import win.doyto.query.config.GlobalConfiguration;
 import win.doyto.query.core.*;
 import win.doyto.query.entity.EntityAspect;
 import win.doyto.query.entity.Persistable;
 import win.doyto.query.entity.UserIdProvider;
+import win.doyto.query.metrics.InstrumentedCache;
+import win.doyto.query.metrics.InstrumentedDataAccess;
+import win.doyto.query.metrics.MetricsRecorder;
 import win.doyto.query.util.BeanUtil;
 
 import java.io.Serializable;
-import java.util.Arrays;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
 
 /**
  * AbstractDynamicService
@@ -40,6 +51,9 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
 
     protected final CacheWrapper<E> entityCacheWrapper = CacheWrapper.createInstance();
     protected final CacheWrapper<List<E>> queryCacheWrapper = CacheWrapper.createInstance();
+    protected final CacheWrapper<Long> countCacheWrapper = CacheWrapper.createInstance();
+
+    private final QueryCacheInvalidator<E> queryCacheInvalidator;
 
     @Autowired(required = false)
     private UserIdProvider userIdProvider;
@@ -48,6 +62,12 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
     @Autowired(required = false)
     private CacheManager cacheManager;
 
+    @Autowired(required = false)
+    private MetricsRecorder metricsRecorder;
+
+    @Autowired(required = false)
+    private CacheInvalidationChannel cacheInvalidationChannel;
+
     @Lazy
     @Autowired(required = false)
     protected List<EntityAspect<E>> entityAspects = new LinkedList<>();
@@ -56,18 +76,47 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
 
     @SuppressWarnings("unchecked")
     public AbstractDynamicService() {
-        entityClass = (Class<E>) BeanUtil.getActualTypeArguments(getClass())[0];
+        Type[] typeArguments = BeanUtil.getActualTypeArguments(getClass());
+        entityClass = (Class<E>) typeArguments[0];
         dataAccess = new MemoryDataAccess<>(entityClass);
+        Class<?> queryClass = typeArguments.length > 2 && typeArguments[2] instanceof Class ? (Class<?>) typeArguments[2] : PageQuery.class;
+        queryCacheInvalidator = new QueryCacheInvalidator<>(entityClass, queryClass);
     }
 
     @Autowired
     @SuppressWarnings("unchecked")
     public void setJdbcOperations(JdbcOperations jdbcOperations) {
-        dataAccess = new JdbcDataAccess<>(jdbcOperations, entityClass, (Class<I>) BeanUtil.getActualTypeArguments(getClass())[1], getRowMapper());
+        dataAccess = instrument(new JdbcDataAccess<>(jdbcOperations, entityClass, (Class<I>) BeanUtil.getActualTypeArguments(getClass())[1], getRowMapper()));
     }
 
+    /**
+     * Record the metrics of the data access and the caches set afterwards.
+     */
+    public void setMetricsRecorder(MetricsRecorder metricsRecorder) {
+        this.metricsRecorder = metricsRecorder;
+        dataAccess = instrument(dataAccess);
+    }
+
+    private DataAccess<E, I, Q> instrument(DataAccess<E, I, Q> dataAccess) {
+        if (dataAccess instanceof InstrumentedDataAccess) {
+            dataAccess = ((InstrumentedDataAccess<E, I, Q>) dataAccess).getDelegate();
+        }
+        if (dataAccess instanceof JdbcDataAccess) {
+            ((JdbcDataAccess<E, I, Q>) dataAccess).setMetricsRecorder(metricsRecorder);
+        }
+        return metricsRecorder == null ? dataAccess : new InstrumentedDataAccess<>(dataAccess, entityClass, metricsRecorder);
+    }
+
+    private Cache instrument(Cache cache) {
+        return metricsRecorder == null || cache instanceof NoOpCache ? cache : InstrumentedCache.wrap(cache, metricsRecorder);
+    }
+
+    /**
+     * Map the columns by position to the persistent fields of the entity,
+     * in the same order as the columns selected by {@link JdbcDataAccess}.
+     */
     protected RowMapper<E> getRowMapper() {
-        return new BeanPropertyRowMapper<>(entityClass);
+        return FieldRowMapper.of(entityClass);
     }
 
     @Autowired(required = false)
@@ -75,19 +124,38 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
         transactionOperations = new TransactionTemplate(transactionManager);
     }
 
+    /**
+     * Set the caches of the names in the list, and an entry with a spec like
+     * <i>module:user(near-size=1000;near-ttl=60000)</i> keeps the hot keys of its caches
+     * in a near cache in front of the cache from the CacheManager, see {@link TwoLevelCache}.
+     */
     @SuppressWarnings("java:S4973")
     @Value("${doyto.query.caches:}")
     public void setCacheList(String caches) {
-        List<String> cacheList = Arrays.stream(caches.split("[,\\s]")).filter(s -> !s.isEmpty()).collect(Collectors.toList());
+        Map<String, String> cacheSpecs = new HashMap<>();
+        for (String cache : caches.split("[,\\s]")) {
+            int index = cache.indexOf('(');
+            if (index > 0 && cache.endsWith(")")) {
+                cacheSpecs.put(cache.substring(0, index), cache.substring(index + 1, cache.length() - 1));
+            } else if (!cache.isEmpty()) {
+                cacheSpecs.put(cache, null);
+            }
+        }
         if (cacheManager != null) {
             String cacheName = getCacheName();
-            if (cacheList.contains(cacheName) || cacheName != entityClass.getSimpleName().intern()) {
-                entityCacheWrapper.setCache(cacheManager.getCache(cacheName));
-                queryCacheWrapper.setCache(cacheManager.getCache(getQueryCacheName()));
+            if (cacheSpecs.containsKey(cacheName) || cacheName != entityClass.getSimpleName().intern()) {
+                String spec = cacheSpecs.get(cacheName);
+                entityCacheWrapper.setCache(createCache(cacheName, spec));
+                queryCacheWrapper.setCache(createCache(getQueryCacheName(), spec));
+                countCacheWrapper.setCache(createCache(getCountCacheName(), spec));
             }
         }
     }
 
+    private Cache createCache(String name, String spec) {
+        return TwoLevelCache.wrap(instrument(cacheManager.getCache(name)), spec, cacheInvalidationChannel);
+    }
+
     protected String resolveCacheKey(IdWrapper<I> w) {
         return w.toCacheKey();
     }
@@ -100,14 +168,37 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
         return getCacheName() + ":query";
     }
 
+    private String getCountCacheName() {
+        return getCacheName() + ":count";
+    }
+
     protected void clearCache() {
         entityCacheWrapper.clear();
-        queryCacheWrapper.clear();
+        clearQueryCache();
     }
 
     protected void evictCache(String key) {
         entityCacheWrapper.evict(key);
-        queryCacheWrapper.clear();
+        clearQueryCache();
+    }
+
+    /**
+     * Evict the entity and invalidate only the query results which may contain the row before or after the write.
+     */
+    private void evictCache(String key, E origin, E current) {
+        entityCacheWrapper.evict(key);
+        if (caching()) {
+            queryCacheInvalidator.invalidate(queryCacheWrapper.getCache(), origin, current);
+        }
+    }
+
+    /**
+     * Invalidate all the query results in O(1) by renewing the table token of the keys.
+     */
+    private void clearQueryCache() {
+        if (caching()) {
+            queryCacheInvalidator.invalidateAll(queryCacheWrapper.getCache());
+        }
     }
 
     protected boolean caching() {
@@ -116,23 +207,66 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
 
     @Override
     public List<E> query(Q query) {
-        String key = null;
-        if (caching() && !TransactionSynchronizationManager.isActualTransactionActive()) {
-            key = ToStringBuilder.reflectionToString(query, NonNullToStringStyle.NO_CLASS_NAME_NON_NULL_STYLE);
+        return queryCacheWrapper.execute(queryKey("", query, true), () -> dataAccess.query(query));
+    }
+
+    /**
+     * Build the key of the query cache from the canonical form of the query,
+     * or null to skip the cache when caching is disabled, in a transaction or the tokens are unavailable.
+     *
+     * @param prefix     the prefix to tell the kinds of results apart in the same cache
+     * @param query      the query
+     * @param withPaging false to exclude the paging fields
+     * @return the key, hashed to 128 bits when <code>queryCacheKeyHash</code> is enabled
+     */
+    private String queryKey(String prefix, Q query, boolean withPaging) {
+        if (!caching() || TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        String keyPrefix = queryCacheInvalidator.keyPrefix(queryCacheWrapper.getCache(), query);
+        if (keyPrefix == null) {
+            return null;
         }
-        return queryCacheWrapper.execute(key, () -> dataAccess.query(query));
+        String key = keyPrefix + prefix
+            + (withPaging ? QueryKeyEncoder.encode(query) : QueryKeyEncoder.encodeWithoutPaging(query));
+        return GlobalConfiguration.instance().isQueryCacheKeyHash() ? QueryKeyEncoder.hash(key) : key;
     }
 
+    @SuppressWarnings("unchecked")
+    private <V> List<V> cacheQuery(String key, Invocable<List<V>> invocable) {
+        return ((CacheWrapper<List<V>>) (CacheWrapper<?>) queryCacheWrapper).execute(key, invocable);
+    }
+
+    @Override
+    public Stream<E> stream(Q query) {
+        return dataAccess.stream(query);
+    }
+
+    @Override
+    public void forEach(Q query, Consumer<E> action) {
+        dataAccess.forEach(query, action);
+    }
+
+    /**
+     * The count is cached by the query without the paging fields,
+     * so that the pages of the same query share the count.
+     */
     public long count(Q query) {
-        return dataAccess.count(query);
+        return countCacheWrapper.execute(queryKey("", query, false), () -> dataAccess.count(query));
     }
 
     public List<I> queryIds(Q query) {
-        return dataAccess.queryIds(query);
+        return cacheQuery(queryKey("ids:", query, true), () -> dataAccess.queryIds(query));
     }
 
     public <V> List<V> queryColumns(Q query, Class<V> clazz, String... columns) {
-        return dataAccess.queryColumns(query, clazz, columns);
+        String prefix = "columns(" + clazz.getName() + ";" + String.join(",", columns) + "):";
+        return cacheQuery(queryKey(prefix, query, true), () -> dataAccess.queryColumns(query, clazz, columns));
+    }
+
+    @Override
+    public <V> List<V> queryProjection(Q query, Class<V> projectionClass) {
+        return dataAccess.queryProjection(query, projectionClass);
     }
 
     public void create(E e) {
@@ -148,7 +282,7 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
         } else {
             dataAccess.create(e);
         }
-        evictCache(resolveCacheKey(e.toIdWrapper()));
+        evictCache(resolveCacheKey(e.toIdWrapper()), null, e);
     }
 
     public int update(E e) {
@@ -177,21 +311,59 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
         } else {
             invocable.invoke();
         }
-        evictCache(resolveCacheKey(e.toIdWrapper()));
+        evictCache(resolveCacheKey(e.toIdWrapper()), origin, e);
         return 1;
     }
 
     public int batchInsert(Iterable<E> entities, String... columns) {
-        if (userIdProvider != null) {
-            for (E e : entities) {
+        List<E> entityList = new ArrayList<>();
+        for (E e : entities) {
+            if (userIdProvider != null) {
                 userIdProvider.setupUserId(e);
             }
+            entityList.add(e);
+        }
+        int insert = dataAccess.batchInsert(entityList, columns);
+        entityCacheWrapper.clear();
+        if (caching()) {
+            queryCacheInvalidator.invalidateCreated(queryCacheWrapper.getCache(), entityList);
         }
-        int insert = dataAccess.batchInsert(entities, columns);
-        clearCache();
         return insert;
     }
 
+    @Override
+    public int batchUpdate(Iterable<E> entities) {
+        return doBatchUpdate(entities, this::update, dataAccess::batchUpdate);
+    }
+
+    @Override
+    public int batchPatch(Iterable<E> entities) {
+        return doBatchUpdate(entities, this::patch, dataAccess::batchPatch);
+    }
+
+    private int doBatchUpdate(Iterable<E> entities, ToIntFunction<E> single, ToIntFunction<Iterable<E>> batch) {
+        if (!entityAspects.isEmpty()) {
+            int count = 0;
+            for (E e : entities) {
+                count += single.applyAsInt(e);
+            }
+            return count;
+        }
+        List<E> entityList = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+        for (E e : entities) {
+            if (userIdProvider != null) {
+                userIdProvider.setupUserId(e);
+            }
+            entityList.add(e);
+            keys.add(resolveCacheKey(e.toIdWrapper()));
+        }
+        int count = batch.applyAsInt(entityList);
+        entityCacheWrapper.evict(keys);
+        clearQueryCache();
+        return count;
+    }
+
     public int patch(E e, Q q) {
         if (userIdProvider != null) {
             userIdProvider.setupUserId(e);
@@ -212,6 +384,25 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
         return entityCacheWrapper.execute(resolveCacheKey(w), () -> fetch(w));
     }
 
+    /**
+     * Look up the cache for all the id wrappers through the cache wrapper, then fetch all the missing ones
+     * from the data access at once and put them into the cache.
+     */
+    @Override
+    public List<E> getAllByIdWrappers(Collection<? extends IdWrapper<I>> ws) {
+        if (!caching()) {
+            return dataAccess.getAllByIdWrappers(ws);
+        }
+        List<IdWrapper<I>> wrappers = new ArrayList<>(ws);
+        List<String> keys = new ArrayList<>(wrappers.size());
+        wrappers.forEach(w -> keys.add(resolveCacheKey(w)));
+        return entityCacheWrapper.executeAll(keys, missIndexes -> {
+            List<IdWrapper<I>> misses = new ArrayList<>(missIndexes.size());
+            missIndexes.forEach(i -> misses.add(wrappers.get(i)));
+            return dataAccess.getAllByIdWrappers(misses);
+        });
+    }
+
     @Override
     public E fetch(IdWrapper<I> w) {
         return dataAccess.get(w);
@@ -231,7 +422,7 @@ public abstract class AbstractDynamicService<E extends Persistable<I>, I extends
                 dataAccess.delete(w);
             }
             String key = resolveCacheKey(w);
-            evictCache(key);
+            evictCache(key, e, null);
             entityCacheWrapper.execute(key, () -> null);
         }
         return e;
@@ -5,6 +5,7 @@ import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.transaction.annotation.Transactional;
 import win.doyto.query.core.SqlAndArgs;
+import win.doyto.query.core.SqlTimer;
 import win.doyto.query.entity.UserIdProvider;
 
 import java.util.Collection;
@@ -21,6 +22,7 @@ import static java.util.Collections.singleton;
 public class AssociativeServiceTemplate<L, R> implements AssociativeService<L, R> {
 
     private final AssociativeSqlBuilder sqlBuilder;
+    private final SqlTimer sqlTimer;
     private final SingleColumnRowMapper<L> leftRowMapper = new SingleColumnRowMapper<>();
     private final SingleColumnRowMapper<R> rightRowMapper = new SingleColumnRowMapper<>();
 
@@ -36,6 +38,7 @@ public class AssociativeServiceTemplate<L, R> implements AssociativeService<L, R
 
     public AssociativeServiceTemplate(String table, String left, String right, String createUserColumn) {
         this.sqlBuilder = new AssociativeSqlBuilder(table, left, right, createUserColumn);
+        this.sqlTimer = new SqlTimer(table);
     }
 
     public boolean exists(Collection<L> leftIds, Collection<R> rightIds) {
@@ -51,33 +54,47 @@ public class AssociativeServiceTemplate<L, R> implements AssociativeService<L, R
         if (leftIds.length == 0 || rightIds.length == 0) {
             return 0L;
         }
+        long start = sqlTimer.start();
         SqlAndArgs sqlAndArgs = sqlBuilder.buildCount(leftIds, rightIds);
-        return jdbcOperations.queryForObject(sqlAndArgs.getSql(), sqlAndArgs.getArgs(), Long.class);
+        return sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.queryForObject(sqlAndArgs.getSql(), sqlAndArgs.getArgs(), Long.class));
     }
 
     @Override
     public List<R> getByLeftId(L leftId) {
-        return jdbcOperations.query(sqlBuilder.getByLeftId, rightRowMapper, leftId);
+        return query(sqlBuilder.getByLeftId, rightRowMapper, leftId);
     }
 
     @Override
     public void deleteByLeftId(L leftId) {
-        jdbcOperations.update(sqlBuilder.deleteByLeftId, leftId);
+        update(sqlBuilder.deleteByLeftId, leftId);
     }
 
     @Override
     public List<L> getByRightId(R rightId) {
-        return jdbcOperations.query(sqlBuilder.getByRightId, leftRowMapper, rightId);
+        return query(sqlBuilder.getByRightId, leftRowMapper, rightId);
     }
 
     @Override
     public void deleteByRightId(R rightId) {
-        jdbcOperations.update(sqlBuilder.deleteByRightId, rightId);
+        update(sqlBuilder.deleteByRightId, rightId);
+    }
+
+    private <T> List<T> query(String sql, SingleColumnRowMapper<T> rowMapper, Object id) {
+        long start = sqlTimer.start();
+        SqlAndArgs sqlAndArgs = new SqlAndArgs(sql, new Object[]{id});
+        return sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.query(sqlAndArgs.getSql(), sqlAndArgs.getArgs(), rowMapper));
+    }
+
+    private int update(String sql, Object id) {
+        long start = sqlTimer.start();
+        SqlAndArgs sqlAndArgs = new SqlAndArgs(sql, new Object[]{id});
+        return sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.update(sqlAndArgs.getSql(), sqlAndArgs.getArgs()));
     }
 
     private void deallocate(Object[] leftIds, Object[] rightIds) {
+        long start = sqlTimer.start();
         SqlAndArgs sqlAndArgs = sqlBuilder.buildDeallocate(leftIds, rightIds);
-        jdbcOperations.update(sqlAndArgs.getSql(), sqlAndArgs.getArgs());
+        sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.update(sqlAndArgs.getSql(), sqlAndArgs.getArgs()));
     }
 
     @Override
@@ -111,9 +128,10 @@ public class AssociativeServiceTemplate<L, R> implements AssociativeService<L, R
     }
 
     public int allocate(Collection<L> leftIds, Collection<R> rightIds) {
+        long start = sqlTimer.start();
         SqlAndArgs sqlAndArgs = sqlBuilder.buildAllocate(
             leftIds, rightIds, (Long) (userIdProvider == null ? null : userIdProvider.getUserId()));
-        return jdbcOperations.update(sqlAndArgs.getSql(), sqlAndArgs.getArgs());
+        return sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.update(sqlAndArgs.getSql(), sqlAndArgs.getArgs()));
     }
 
 }
@@ -1,13 +1,12 @@
 package win.doyto.query.service;
 
+import win.doyto.query.core.InClause;
 import win.doyto.query.core.SqlAndArgs;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 /**
  * AssociativeSqlBuilder
@@ -17,10 +16,12 @@ import java.util.stream.IntStream;
 class AssociativeSqlBuilder {
 
     public static final String WHERE = " WHERE ";
-    public static final String IN_S = " IN (%s)";
+    public static final String IN = "IN";
     public static final String DELETE_FROM = "DELETE FROM ";
 
-    private final String deallocateFormat;
+    private final String left;
+    private final String right;
+    private final String deallocate;
     private final String count;
     private final String insert;
     private final String insertPlaceholders;
@@ -32,8 +33,10 @@ class AssociativeSqlBuilder {
     final String deleteByRightId;
 
     public AssociativeSqlBuilder(String table, String left, String right, String createUserColumn) {
-        deallocateFormat = DELETE_FROM + table + WHERE + left + IN_S + " AND " + right + IN_S;
-        count = "SELECT COUNT(*) FROM " + table + WHERE + left + IN_S + " AND " + right + IN_S;
+        this.left = left;
+        this.right = right;
+        deallocate = DELETE_FROM + table + WHERE;
+        count = "SELECT COUNT(*) FROM " + table + WHERE;
         if (createUserColumn == null) {
             insert = "INSERT INTO " + table + " (" + left + ", " + right + ") values (?, ?)";
             insertPlaceholders = ", (?, ?)";
@@ -50,25 +53,19 @@ class AssociativeSqlBuilder {
         deleteByRightId = DELETE_FROM + table + WHERE + right + " = ?";
     }
 
-    private String generateReplaceHolders(int size) {
-        return "?" + IntStream.range(1, size).mapToObj(i -> ", ?").collect(Collectors.joining());
-    }
-
-    private List<Object> unionArgs(Object[] leftIds, Object[] rightIds) {
+    private SqlAndArgs buildWhere(String start, Object[] leftIds, Object[] rightIds) {
         List<Object> argList = new ArrayList<>(leftIds.length + rightIds.length);
-        Collections.addAll(argList, leftIds);
-        Collections.addAll(argList, rightIds);
-        return argList;
+        String sql = start + InClause.build(left, IN, Arrays.asList(leftIds), argList)
+            + " AND " + InClause.build(right, IN, Arrays.asList(rightIds), argList);
+        return new SqlAndArgs(sql, argList);
     }
 
     public SqlAndArgs buildDeallocate(Object[] leftIds, Object[] rightIds) {
-        String sql = String.format(deallocateFormat, generateReplaceHolders(leftIds.length), generateReplaceHolders(rightIds.length));
-        return new SqlAndArgs(sql, unionArgs(leftIds, rightIds));
+        return buildWhere(deallocate, leftIds, rightIds);
     }
 
     public SqlAndArgs buildCount(Object[] leftIds, Object[] rightIds) {
-        String sql = String.format(count, generateReplaceHolders(leftIds.length), generateReplaceHolders(rightIds.length));
-        return new SqlAndArgs(sql, unionArgs(leftIds, rightIds));
+        return buildWhere(count, leftIds, rightIds);
     }
 
     public SqlAndArgs buildAllocate(Collection leftIds, Collection rightIds, Long userId) {
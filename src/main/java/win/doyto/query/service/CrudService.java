@@ -5,6 +5,9 @@ import win.doyto.query.core.PageQuery;
 import win.doyto.query.entity.Persistable;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * CrudService
@@ -18,6 +21,15 @@ public interface CrudService<E extends Persistable<I>, I extends Serializable, Q
         return get(IdWrapper.build(id));
     }
 
+    /**
+     * @param ids entity ids
+     * @return entities in the order of <code>ids</code>, null for the missing ones
+     * @see #getAllByIdWrappers(Collection)
+     */
+    default List<E> getAll(Collection<I> ids) {
+        return getAllByIdWrappers(ids.stream().map(IdWrapper::build).collect(Collectors.toList()));
+    }
+
     /**
      * force to get a new entity object from database
      *
@@ -5,6 +5,8 @@ import win.doyto.query.core.PageQuery;
 import win.doyto.query.entity.Persistable;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * CommonCrudService
@@ -46,6 +48,32 @@ interface DynamicService<E extends Persistable<I>, I extends Serializable, Q ext
      */
     int batchInsert(Iterable<E> entities, String... columns);
 
+    /**
+     * 按实体分组批量执行<i>UPDATE [TABLE] SET ... WHERE id = ?</i>
+     * <ol>
+     * <li><b>会</b>按id清理缓存</li>
+     * <li><b>不会</b>在更新前查询实体</li>
+     * <li>存在{@link win.doyto.query.entity.EntityAspect}时逐个执行{@link #update(Object)}</li>
+     * </ol>
+     *
+     * @param entities entities to update
+     * @return amount of updated entities
+     */
+    int batchUpdate(Iterable<E> entities);
+
+    /**
+     * 按非空字段分组批量执行<i>UPDATE [TABLE] SET ... WHERE id = ?</i>
+     * <ol>
+     * <li><b>会</b>按id清理缓存</li>
+     * <li><b>不会</b>在更新前查询实体</li>
+     * <li>存在{@link win.doyto.query.entity.EntityAspect}时逐个执行{@link #patch(Object)}</li>
+     * </ol>
+     *
+     * @param entities entities to patch
+     * @return amount of updated entities
+     */
+    int batchPatch(Iterable<E> entities);
+
     /**
      * 执行<i>UPDATE [TABLE] SET ... WHERE ...</i>
      * <ol>
@@ -82,6 +110,14 @@ interface DynamicService<E extends Persistable<I>, I extends Serializable, Q ext
      */
     E get(IdWrapper<I> w);
 
+    /**
+     * Get entities from cache and then database in bulk
+     *
+     * @param ws the id wrappers, maybe from different sharding tables
+     * @return entities in the order of <code>ws</code>, null for the missing ones
+     */
+    List<E> getAllByIdWrappers(Collection<? extends IdWrapper<I>> ws);
+
     /**
      * force to get a new entity object from database
      *
@@ -1,31 +1,40 @@
 package win.doyto.query.service;
 
-import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcOperations;
 import win.doyto.query.core.JoinQueryBuilder;
 import win.doyto.query.core.PageQuery;
 import win.doyto.query.core.SqlAndArgs;
+import win.doyto.query.core.SqlTimer;
 
 import java.util.List;
+import java.util.function.Function;
 
 /**
  * JoinQueryExecutor
  *
  * @author f0rb on 2019-06-09
  */
-@AllArgsConstructor
 public class JoinQueryService<E, Q extends PageQuery> {
 
     @Autowired
     private JdbcOperations jdbcOperations;
     private final JoinQueryBuilder joinQueryBuilder;
     private BeanPropertyRowMapper<E> beanPropertyRowMapper;
+    private final SqlTimer sqlTimer;
+
+    public JoinQueryService(JdbcOperations jdbcOperations, JoinQueryBuilder joinQueryBuilder, BeanPropertyRowMapper<E> beanPropertyRowMapper) {
+        this.jdbcOperations = jdbcOperations;
+        this.joinQueryBuilder = joinQueryBuilder;
+        this.beanPropertyRowMapper = beanPropertyRowMapper;
+        this.sqlTimer = new SqlTimer(beanPropertyRowMapper.getMappedClass().getSimpleName());
+    }
 
     public JoinQueryService(Class<E> entityClass) {
         this.joinQueryBuilder = new JoinQueryBuilder(entityClass);
         this.beanPropertyRowMapper = new BeanPropertyRowMapper<>(entityClass);
+        this.sqlTimer = new SqlTimer(entityClass.getSimpleName());
     }
 
     public JoinQueryService(JdbcOperations jdbcOperations, Class<E> entityClass) {
@@ -34,20 +43,19 @@ public class JoinQueryService<E, Q extends PageQuery> {
     }
 
     public PageList<E> page(Q q) {
-        if (!q.needPaging()) {
-            q.setPageNumber(0);
-        }
-        return new PageList<>(query(q), count(q));
+        return PageExecutor.page(q, () -> query(q), () -> count(q), entities -> null, Function.identity());
     }
 
     public List<E> query(Q q) {
+        long start = sqlTimer.start();
         SqlAndArgs sqlAndArgs = buildJoinSelectAndArgs(q);
-        return jdbcOperations.query(sqlAndArgs.getSql(), beanPropertyRowMapper, sqlAndArgs.getArgs());
+        return sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.query(sqlAndArgs.getSql(), beanPropertyRowMapper, sqlAndArgs.getArgs()));
     }
 
     public long count(Q q) {
+        long start = sqlTimer.start();
         SqlAndArgs sqlAndArgs = joinQueryBuilder.buildJoinCountAndArgs(q);
-        return jdbcOperations.queryForObject(sqlAndArgs.getSql(), sqlAndArgs.getArgs(), Long.class);
+        return sqlTimer.execute(start, sqlAndArgs, () -> jdbcOperations.queryForObject(sqlAndArgs.getSql(), sqlAndArgs.getArgs(), Long.class));
     }
 
     public SqlAndArgs buildJoinSelectAndArgs(Q q) {
@@ -0,0 +1,138 @@
+package win.doyto.query.service;
+
+import lombok.AccessLevel;
+import lombok.NoArgsConstructor;
+import lombok.SneakyThrows;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import win.doyto.query.config.GlobalConfiguration;
+import win.doyto.query.core.PageQuery;
+
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * PageExecutor
+ * <p>
+ * Executes the list query and the count query of a page.
+ * <ul>
+ * <li>When <code>parallelPage</code> is enabled, the count query runs concurrently on a shared executor,
+ * which uses virtual threads on JDK 21+ and daemon threads otherwise. At most <code>pageParallelism</code>
+ * count queries run on the executor at the same time, the others run on the caller thread.
+ * Within a transaction the queries always run on the caller thread to share the connection.
+ * The count query runs without the ThreadLocal context of the caller, like the tenant, the security context
+ * or the key of a routing DataSource, so keep <code>parallelPage</code> disabled when the queries depend on it.
+ * The slot of a count query is released when it completes or is cancelled, even before it starts.</li>
+ * <li>When <code>skipCountForPartialPage</code> is enabled and the page is not full,
+ * the total is <i>offset + size</i> and the count query is skipped or cancelled.</li>
+ * </ul>
+ *
+ * @author f0rb on 2020-02-18
+ */
+@NoArgsConstructor(access = AccessLevel.PRIVATE)
+final class PageExecutor {
+
+    private static final AtomicInteger running = new AtomicInteger();
+
+    static <E, V> PageList<V> page(PageQuery query, Supplier<List<E>> list, LongSupplier count,
+                                   Function<List<E>, String> next, Function<E, V> transfer) {
+        if (!query.needPaging()) {
+            query.setPageNumber(0);
+        }
+        Future<Long> countFuture = null;
+        if (isParallel() && acquire()) {
+            FutureTask<Long> countTask = new FutureTask<Long>(count::getAsLong) {
+                @Override
+                protected void done() {
+                    running.decrementAndGet();
+                }
+            };
+            try {
+                Holder.executor.execute(countTask);
+                countFuture = countTask;
+            } catch (RejectedExecutionException e) {
+                running.decrementAndGet();
+            }
+        }
+        List<E> entities;
+        try {
+            entities = list.get();
+        } catch (RuntimeException e) {
+            cancel(countFuture);
+            throw e;
+        }
+        long total;
+        if (canSkipCount(query, entities.size())) {
+            cancel(countFuture);
+            total = (long) query.calcOffset() + entities.size();
+        } else {
+            total = countFuture != null ? await(countFuture) : count.getAsLong();
+        }
+        return new PageList<>(entities.stream().map(transfer).collect(Collectors.toList()), total, next.apply(entities));
+    }
+
+    static int running() {
+        return running.get();
+    }
+
+    private static boolean isParallel() {
+        return GlobalConfiguration.instance().isParallelPage() && !TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    private static boolean acquire() {
+        if (running.incrementAndGet() > GlobalConfiguration.instance().getPageParallelism()) {
+            running.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * The total is known from a page which is not full, except for an empty page beyond the last one
+     * and for keyset pagination, whose offset is unknown.
+     */
+    static boolean canSkipCount(PageQuery query, int size) {
+        return GlobalConfiguration.instance().isSkipCountForPartialPage() && query.getAfter() == null
+            && size < query.getPageSize() && (size > 0 || query.calcOffset() == 0);
+    }
+
+    private static void cancel(Future<Long> future) {
+        if (future != null) {
+            future.cancel(false);
+        }
+    }
+
+    @SneakyThrows
+    private static long await(Future<Long> future) {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            throw e.getCause();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    private static class Holder {
+        private static final ExecutorService executor = createExecutor();
+
+        private static ExecutorService createExecutor() {
+            try {
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                AtomicInteger counter = new AtomicInteger();
+                return new ThreadPoolExecutor(0, Integer.MAX_VALUE, 60L, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+                    Thread thread = new Thread(r, "doyto-page-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package win.doyto.query.service;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Getter;
 
@@ -15,4 +16,13 @@ import java.util.List;
 public class PageList<T> {
     private final List<T> list;
     private final long total;
+    /**
+     * Cursor of the next page for keyset pagination, null if no more pages
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private final String next;
+
+    public PageList(List<T> list, long total) {
+        this(list, total, null);
+    }
 }
@@ -1,10 +1,15 @@
 package win.doyto.query.service;
 
+import org.springframework.beans.BeanUtils;
+import win.doyto.query.core.KeysetCursor;
 import win.doyto.query.core.PageQuery;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * QueryService
@@ -15,12 +20,60 @@ public interface QueryService<E, I, Q extends PageQuery> {
 
     List<E> query(Q query);
 
+    /**
+     * Query the entities without materializing the list.
+     * The stream holds the database resources until it is closed,
+     * so it should be used in a try-with-resources statement.
+     * <p>
+     * The default implementation streams the queried list, which is overridden to read lazily.
+     *
+     * @param query query object
+     * @return a lazy stream of the entities
+     */
+    default Stream<E> stream(Q query) {
+        return query(query).stream();
+    }
+
+    /**
+     * Apply the action to each entity without materializing the list,
+     * and release the database resources at the end.
+     *
+     * @param query  query object
+     * @param action action for each entity
+     */
+    default void forEach(Q query, Consumer<E> action) {
+        try (Stream<E> stream = stream(query)) {
+            stream.forEach(action);
+        }
+    }
+
     List<I> queryIds(Q query);
 
     long count(Q query);
 
     <V> List<V> queryColumns(Q query, Class<V> clazz, String... columns);
 
+    /**
+     * Query the columns declared by the fields of the projection class,
+     * with the select columns and the row mapper compiled once per projection class.
+     * <p>
+     * The default implementation copies the properties of the queried entities.
+     *
+     * @param query           query object
+     * @param projectionClass the class with the fields to select
+     * @return the projections
+     */
+    default <V> List<V> queryProjection(Q query, Class<V> projectionClass) {
+        List<E> entities = query(query);
+        List<V> list = new ArrayList<>(entities.size());
+        for (E e : entities) {
+            V v = BeanUtils.instantiateClass(projectionClass);
+            BeanUtils.copyProperties(e, v);
+            list.add(v);
+        }
+        return list;
+    }
+
     default boolean exists(Q query) {
         return count(query) > 0;
     }
@@ -42,10 +95,12 @@ public interface QueryService<E, I, Q extends PageQuery> {
     }
 
     default <V> PageList<V> page(Q query, Function<E, V> transfer) {
-        if (!query.needPaging()) {
-            query.setPageNumber(0);
-        }
-        return new PageList<>(query(query, transfer), count(query));
+        return PageExecutor.page(query, () -> query(query), () -> count(query), entities -> {
+            if (query.getAfter() != null && !entities.isEmpty() && entities.size() >= query.getPageSize()) {
+                return KeysetCursor.next(query, entities.get(entities.size() - 1));
+            }
+            return null;
+        }, transfer);
     }
 
 }
@@ -11,7 +11,13 @@ import org.springframework.cache.support.NoOpCache;
 import win.doyto.query.config.GlobalConfiguration;
 import win.doyto.query.core.Invocable;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -101,6 +107,68 @@ public class CacheWrapperTest {
         assertEquals(2, cacheWrapper.execute("hello", invocable));
     }
 
+    private static class MultiGetCache extends ConcurrentMapCache implements MultiSetCache {
+        private final AtomicInteger gets = new AtomicInteger();
+        private final AtomicInteger getAlls = new AtomicInteger();
+
+        MultiGetCache() {
+            super("multi");
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            gets.incrementAndGet();
+            return super.get(key);
+        }
+
+        @Override
+        public void putAll(Map<Object, Object> entries) {
+            entries.forEach(super::put);
+        }
+
+        @Override
+        public List<ValueWrapper> getAll(List<?> keys) {
+            getAlls.incrementAndGet();
+            return keys.stream().map(super::get).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    public void executeAllInOneRoundTrip() throws InterruptedException {
+        MultiGetCache cache = new MultiGetCache();
+        cache.put("a", "A");
+        CacheWrapper<String> cacheWrapper = CacheWrapper.createInstance();
+        cacheWrapper.setCache(cache);
+
+        List<List<Integer>> loads = new ArrayList<>();
+        Function<List<Integer>, List<String>> loader = indexes -> {
+            loads.add(indexes);
+            return indexes.stream().map(i -> i == 2 ? null : "V" + i).collect(Collectors.toList());
+        };
+        assertThat(cacheWrapper.executeAll(Arrays.asList("a", "b", "c"), loader)).containsExactly("A", "V1", null);
+
+        Thread.sleep(5L);
+
+        assertThat(cacheWrapper.executeAll(Arrays.asList("c", "b", "a"), loader)).containsExactly(null, "V1", "A");
+        assertThat(loads).containsExactly(Arrays.asList(1, 2));
+        assertEquals(2, cache.getAlls.get());
+        assertEquals(0, cache.gets.get());
+    }
+
+    @Test
+    public void executeAllWhenGetAllFails() {
+        CacheWrapper<String> cacheWrapper = CacheWrapper.createInstance();
+        cacheWrapper.setCache(new MultiGetCache() {
+            @Override
+            public List<ValueWrapper> getAll(List<?> keys) {
+                throw new RuntimeException("Timeout");
+            }
+        });
+
+        assertThat(cacheWrapper.executeAll(Arrays.asList("a", "b"), indexes -> Arrays.asList("A", "B")))
+            .containsExactly("A", "B");
+    }
+
     @Test
     public void checkLogForPutException() throws InterruptedException {
         GlobalConfiguration.instance().setIgnoreCacheException(false);
@@ -0,0 +1,136 @@
+package win.doyto.query.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * CacheWriterTest
+ *
+ * @author f0rb on 2020-02-26
+ */
+class CacheWriterTest {
+
+    /**
+     * Blocks the writer at the batch of the key <i>block</i> until released
+     */
+    private static class BlockingCache extends ConcurrentMapCache implements MultiSetCache {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch released = new CountDownLatch(1);
+        private final List<Map<Object, Object>> batches = new ArrayList<>();
+
+        BlockingCache() {
+            super("blocking");
+        }
+
+        @Override
+        public void putAll(Map<Object, Object> entries) {
+            if (entries.containsKey("block")) {
+                entered.countDown();
+                try {
+                    released.await(1, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            } else {
+                batches.add(new LinkedHashMap<>(entries));
+            }
+            entries.forEach(super::put);
+        }
+
+        void block(CacheWriter cacheWriter) throws InterruptedException {
+            cacheWriter.put(this, "block", 0);
+            assertTrue(entered.await(1, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void evictTheKeyBeingWritten() throws InterruptedException {
+        CacheWriter cacheWriter = new CacheWriter(10, 10, 0);
+        BlockingCache cache = new BlockingCache();
+        cache.block(cacheWriter);
+
+        cacheWriter.evict(cache, "block");
+        cache.evict("block");
+
+        cache.released.countDown();
+        assertTrue(cacheWriter.shutdown(1000));
+        assertNull(cache.get("block"));
+    }
+
+    @Test
+    void coalesceAndBatchPuts() throws InterruptedException {
+        CacheWriter cacheWriter = new CacheWriter(10, 10, 0);
+        BlockingCache cache = new BlockingCache();
+        cache.block(cacheWriter);
+
+        cacheWriter.put(cache, "a", 1);
+        cacheWriter.put(cache, "a", 2);
+        cacheWriter.put(cache, "b", 3);
+        cacheWriter.put(cache, "c", null);
+        cacheWriter.evict(cache, "b");
+        assertEquals(1, cacheWriter.getCoalesced());
+
+        cache.released.countDown();
+        assertTrue(cacheWriter.shutdown(1000));
+
+        assertThat(cache.batches).hasSize(1);
+        assertThat(cache.batches.get(0)).containsOnlyKeys("a", "c").containsEntry("a", 2).containsEntry("c", null);
+        assertNull(cache.get("b"));
+        assertEquals(3, cacheWriter.getWritten());
+        assertEquals(0, cacheWriter.getDropped());
+    }
+
+    @Test
+    void dropWhenQueueIsFull() throws InterruptedException {
+        CacheWriter cacheWriter = new CacheWriter(1, 10, 0);
+        BlockingCache cache = new BlockingCache();
+        cache.block(cacheWriter);
+
+        cacheWriter.put(cache, "a", 1);
+        cacheWriter.put(cache, "b", 2);
+        assertEquals(1, cacheWriter.getDropped());
+        assertEquals(1, cacheWriter.getPending());
+
+        cache.released.countDown();
+        assertTrue(cacheWriter.shutdown(1000));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+    }
+
+    @Test
+    void writeByCallerAfterShutdown() {
+        CacheWriter cacheWriter = new CacheWriter(10, 10, 0);
+        assertTrue(cacheWriter.shutdown(1000));
+
+        ConcurrentMapCache cache = new ConcurrentMapCache("test");
+        cacheWriter.put(cache, "a", 1);
+        assertEquals(1, cache.get("a").get());
+    }
+
+    @Test
+    void clearWaitingPuts() throws InterruptedException {
+        CacheWriter cacheWriter = new CacheWriter(10, 10, 0);
+        BlockingCache cache = new BlockingCache();
+        ConcurrentMapCache other = new ConcurrentMapCache("other");
+        cache.block(cacheWriter);
+
+        cacheWriter.put(cache, "a", 1);
+        cacheWriter.put(other, "a", 2);
+        cacheWriter.clear(cache);
+
+        cache.released.countDown();
+        assertTrue(cacheWriter.shutdown(1000));
+        assertNull(cache.get("a"));
+        assertEquals(2, other.get("a").get());
+    }
+}
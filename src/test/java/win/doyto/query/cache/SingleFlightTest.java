@@ -0,0 +1,165 @@
+package win.doyto.query.cache;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import win.doyto.query.config.GlobalConfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * SingleFlightTest
+ *
+ * @author f0rb on 2020-03-02
+ */
+class SingleFlightTest {
+
+    private final SingleFlight singleFlight = new SingleFlight();
+    private final ConcurrentMapCache cache = new ConcurrentMapCache("test");
+    private final ExecutorService executorService = Executors.newFixedThreadPool(4);
+    private final AtomicInteger invocations = new AtomicInteger();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch released = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        released.countDown();
+        executorService.shutdownNow();
+        GlobalConfiguration.instance().setCacheLoadTimeout(1000);
+    }
+
+    private Future<String> startLeader(String value) throws InterruptedException {
+        Future<String> leader = executorService.submit(() -> singleFlight.load(cache, "1", () -> {
+            invocations.incrementAndGet();
+            started.countDown();
+            try {
+                released.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (value == null) {
+                throw new IllegalStateException("load failed");
+            }
+            return value;
+        }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        return leader;
+    }
+
+    private List<Future<String>> startFollowers(int count) {
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            followers.add(executorService.submit(() -> singleFlight.load(cache, "1", () -> {
+                invocations.incrementAndGet();
+                return "other";
+            })));
+        }
+        return followers;
+    }
+
+    @SuppressWarnings("java:S2925")
+    private void awaitCoalesced(int count) throws InterruptedException {
+        for (int i = 0; i < 100 && singleFlight.getCoalesced() < count; i++) {
+            Thread.sleep(10L);
+        }
+        assertEquals(count, singleFlight.getCoalesced());
+    }
+
+    @Test
+    void shareTheResultOfOneLoad() throws Exception {
+        Future<String> leader = startLeader("f0rb");
+        List<Future<String>> followers = startFollowers(3);
+        awaitCoalesced(3);
+
+        released.countDown();
+
+        assertEquals("f0rb", leader.get(1, TimeUnit.SECONDS));
+        for (Future<String> follower : followers) {
+            assertEquals("f0rb", follower.get(1, TimeUnit.SECONDS));
+        }
+        assertEquals(1, invocations.get());
+        assertEquals(1, singleFlight.getLoads());
+    }
+
+    @Test
+    void loadByItselfAfterTimeout() throws Exception {
+        GlobalConfiguration.instance().setCacheLoadTimeout(10);
+        startLeader("f0rb");
+
+        assertEquals("other", startFollowers(1).get(0).get(1, TimeUnit.SECONDS));
+        assertEquals(1, singleFlight.getTimeouts());
+        assertEquals(2, invocations.get());
+    }
+
+    @Test
+    void throwTheExceptionOfTheLoad() throws Exception {
+        Future<String> leader = startLeader(null);
+        Future<String> follower = startFollowers(1).get(0);
+        awaitCoalesced(1);
+
+        released.countDown();
+
+        ExecutionException e = assertThrows(ExecutionException.class, () -> follower.get(1, TimeUnit.SECONDS));
+        assertEquals("load failed", e.getCause().getMessage());
+        assertThrows(ExecutionException.class, () -> leader.get(1, TimeUnit.SECONDS));
+        assertEquals(1, invocations.get());
+    }
+
+    @Test
+    void loadReentrantlyWithoutWaiting() {
+        String value = singleFlight.load(cache, "1", () -> singleFlight.load(cache, "1", () -> "inner") + ",outer");
+
+        assertEquals("inner,outer", value);
+        assertEquals(0, singleFlight.getCoalesced());
+    }
+
+    @Test
+    void shareTheInstanceWithFollowers() throws Exception {
+        List<String> list = new ArrayList<>(Arrays.asList("f0rb"));
+        Future<List<String>> leader = executorService.submit(() -> singleFlight.load(cache, "1", () -> {
+            started.countDown();
+            try {
+                released.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return list;
+        }));
+        assertTrue(started.await(1, TimeUnit.SECONDS));
+        Future<List<String>> follower = executorService.submit(() -> singleFlight.load(cache, "1", ArrayList::new));
+        awaitCoalesced(1);
+
+        released.countDown();
+
+        assertSame(list, leader.get(1, TimeUnit.SECONDS));
+        assertSame(list, follower.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void skipInTransaction() throws Exception {
+        startLeader("f0rb");
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            assertEquals("tx", singleFlight.load(cache, "1", () -> "tx"));
+            assertEquals(Arrays.asList("tx"), singleFlight.loadAll(cache, Arrays.asList("1"), indexes -> Arrays.asList("tx")));
+            assertEquals(0, singleFlight.getCoalesced());
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+    }
+
+    @Test
+    void disableByZeroTimeout() {
+        GlobalConfiguration.instance().setCacheLoadTimeout(0);
+
+        assertEquals("f0rb", singleFlight.load(cache, "1", () -> "f0rb"));
+        assertEquals(0, singleFlight.getLoads());
+    }
+}
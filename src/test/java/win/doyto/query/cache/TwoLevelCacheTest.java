@@ -0,0 +1,153 @@
+package win.doyto.query.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * TwoLevelCacheTest
+ *
+ * @author f0rb on 2020-03-01
+ */
+class TwoLevelCacheTest {
+
+    @Test
+    void serveHitsFromNearCache() {
+        Cache remote = spy(new ConcurrentMapCache("test"));
+        TwoLevelCache twoLevelCache = new TwoLevelCache(remote, 100, 0, null);
+        twoLevelCache.put("1", "f0rb");
+
+        assertEquals("f0rb", twoLevelCache.get("1").get());
+        assertEquals("f0rb", twoLevelCache.get("1", String.class));
+        verify(remote, never()).get("1");
+
+        remote.evict("1");
+        assertEquals("f0rb", twoLevelCache.get("1").get());
+        twoLevelCache.evict("1");
+        assertNull(twoLevelCache.get("1"));
+    }
+
+    @Test
+    void getAllReadsRemoteForNearMissesOnly() {
+        Cache remote = spy(new ConcurrentMapCache("test"));
+        TwoLevelCache twoLevelCache = new TwoLevelCache(remote, 100, 0, null);
+        twoLevelCache.put("1", "f0rb");
+        remote.put("2", "doyto");
+
+        List<Cache.ValueWrapper> valueWrappers = twoLevelCache.getAll(Arrays.asList("1", "2", "3"));
+        assertEquals("f0rb", valueWrappers.get(0).get());
+        assertEquals("doyto", valueWrappers.get(1).get());
+        assertNull(valueWrappers.get(2));
+        verify(remote, never()).get("1");
+
+        remote.evict("2");
+        assertEquals("doyto", twoLevelCache.getAll(Arrays.asList("2")).get(0).get());
+    }
+
+    @Test
+    void invalidateNearCachesOfOtherNodes() {
+        ConcurrentMapCache remote = new ConcurrentMapCache("test");
+        InProcessCacheInvalidationChannel channel = new InProcessCacheInvalidationChannel();
+        TwoLevelCache node1 = new TwoLevelCache(remote, 100, 0, channel);
+        TwoLevelCache node2 = new TwoLevelCache(remote, 100, 0, channel);
+
+        node1.put("1", "f0rb");
+        assertEquals("f0rb", node2.get("1").get());
+
+        node1.put("1", "test");
+        assertEquals("test", node1.get("1").get());
+        assertEquals("test", node2.get("1").get());
+
+        node1.evict("1");
+        assertNull(node2.get("1"));
+
+        node2.put("2", "user2");
+        assertEquals(1, node2.nearSize());
+        node1.clear();
+        assertEquals(0, node2.nearSize());
+    }
+
+    @Test
+    void publishWritesButNotFills() {
+        ConcurrentMapCache remote = new ConcurrentMapCache("test");
+        InProcessCacheInvalidationChannel channel = spy(new InProcessCacheInvalidationChannel());
+        TwoLevelCache node1 = new TwoLevelCache(remote, 100, 0, channel);
+        TwoLevelCache node2 = new TwoLevelCache(remote, 100, 0, channel);
+
+        node1.fillAll(Collections.singletonMap("1", "f0rb"));
+        assertEquals("f0rb", node2.get("1").get());
+        verify(channel, never()).publish(any());
+
+        node1.putIfAbsent("1", "test");
+        verify(channel, never()).publish(any());
+        node1.putIfAbsent("2", "test");
+        verify(channel, times(1)).publish(any());
+    }
+
+    @Test
+    void skipNearFillForPutDuringRead() {
+        Cache remote = spy(new ConcurrentMapCache("test"));
+        TwoLevelCache twoLevelCache = new TwoLevelCache(remote, 100, 0, null);
+        remote.put("1", "stale");
+        doAnswer(invocation -> {
+            Cache.ValueWrapper valueWrapper = (Cache.ValueWrapper) invocation.callRealMethod();
+            twoLevelCache.put("1", "fresh");
+            return valueWrapper;
+        }).when(remote).get("1");
+
+        assertEquals("stale", twoLevelCache.get("1").get());
+        assertEquals("fresh", twoLevelCache.get("1").get());
+    }
+
+    @Test
+    void expireAfterTtl() throws InterruptedException {
+        ConcurrentMapCache remote = new ConcurrentMapCache("test");
+        TwoLevelCache twoLevelCache = new TwoLevelCache(remote, 100, 1, null);
+        twoLevelCache.put("1", "f0rb");
+        remote.put("1", "test");
+
+        Thread.sleep(5L);
+
+        assertEquals("test", twoLevelCache.get("1").get());
+    }
+
+    @Test
+    void admitFrequentKeysOnly() {
+        NearCache nearCache = new NearCache(2, 0);
+        for (int i = 0; i < 3; i++) {
+            nearCache.get("hot1");
+            nearCache.get("hot2");
+        }
+        nearCache.put("hot1", () -> 1);
+        nearCache.put("hot2", () -> 2);
+
+        nearCache.get("cold");
+        nearCache.put("cold", () -> 3);
+        assertNull(nearCache.get("cold"));
+        assertNotNull(nearCache.get("hot1"));
+        assertNotNull(nearCache.get("hot2"));
+
+        for (int i = 0; i < 5; i++) {
+            nearCache.get("warm");
+        }
+        nearCache.put("warm", () -> 4);
+        assertNotNull(nearCache.get("warm"));
+        assertEquals(2, nearCache.size());
+    }
+
+    @Test
+    void wrapBySpec() {
+        ConcurrentMapCache remote = new ConcurrentMapCache("test");
+        assertSame(remote, TwoLevelCache.wrap(remote, null, null));
+        assertSame(remote, TwoLevelCache.wrap(remote, "near-ttl=1000", null));
+        assertTrue(TwoLevelCache.wrap(remote, "near-size=1000;near-ttl=1000", null) instanceof TwoLevelCache);
+        assertThrows(IllegalArgumentException.class, () -> TwoLevelCache.wrap(remote, "size=1000", null));
+    }
+}
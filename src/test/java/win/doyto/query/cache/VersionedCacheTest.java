@@ -0,0 +1,97 @@
+package win.doyto.query.cache;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import win.doyto.query.config.GlobalConfiguration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * VersionedCacheTest
+ *
+ * @author f0rb on 2020-02-29
+ */
+class VersionedCacheTest {
+
+    private final ConcurrentMapCache delegate = new ConcurrentMapCache("test");
+    private final LocalCacheGeneration cacheGeneration = new LocalCacheGeneration();
+    private final VersionedCache versionedCache = new VersionedCache(delegate, cacheGeneration, true);
+
+    @Test
+    void clearByIncrementingGeneration() {
+        versionedCache.put("1", "f0rb");
+        long generation = cacheGeneration.get("test");
+        assertEquals("f0rb", versionedCache.get("1").get());
+        assertEquals("f0rb", delegate.get(generation + ":1").get());
+
+        versionedCache.clear();
+
+        assertNull(versionedCache.get("1"));
+        assertEquals(generation + 1, cacheGeneration.get("test"));
+        assertNotNull(delegate.get(generation + ":1"));
+    }
+
+    @Test
+    void discardValueLoadedBeforeClear() {
+        String value = DefaultCacheWrapper.invoke(versionedCache, "1", () -> {
+            versionedCache.clear();
+            return "stale";
+        });
+
+        assertEquals("stale", value);
+        assertNull(versionedCache.get("1"));
+        assertEquals("fresh", DefaultCacheWrapper.invoke(versionedCache, "1", () -> "fresh"));
+    }
+
+    @Test
+    void bypassWhenGenerationUnavailable() {
+        VersionedCache unavailable = new VersionedCache(delegate, new CacheGeneration() {
+            @Override
+            public long get(String cacheName) {
+                throw new IllegalStateException("unavailable");
+            }
+
+            @Override
+            public long increment(String cacheName) {
+                throw new IllegalStateException("unavailable");
+            }
+        }, true);
+
+        unavailable.put("1", "f0rb");
+        unavailable.clear();
+
+        assertNull(unavailable.get("1"));
+        assertEquals("loaded", DefaultCacheWrapper.invoke(unavailable, "1", () -> "loaded"));
+        assertEquals(0, delegate.getNativeCache().size());
+    }
+
+    @Test
+    void startFromRandomEpoch() {
+        assertNotEquals(cacheGeneration.get("test"), new LocalCacheGeneration().get("test"));
+    }
+
+    @Test
+    void refuseRemoteCacheForLocalGeneration() {
+        Cache remote = mock(Cache.class);
+        when(remote.getName()).thenReturn("remote");
+        when(remote.getNativeCache()).thenReturn(new Object());
+        assertTrue(cacheGeneration.supports(delegate));
+        assertFalse(cacheGeneration.supports(remote));
+
+        GlobalConfiguration.instance().setCacheGeneration(cacheGeneration);
+        try {
+            CacheWrapper<String> cacheWrapper = CacheWrapper.createInstance();
+            cacheWrapper.setCache(delegate);
+            assertTrue(cacheWrapper.getCache() instanceof VersionedCache);
+
+            cacheWrapper.setCache(remote);
+            assertFalse(cacheWrapper.getCache() instanceof VersionedCache);
+            cacheWrapper.clear();
+            verify(remote).clear();
+        } finally {
+            GlobalConfiguration.instance().setCacheGeneration(null);
+        }
+    }
+}
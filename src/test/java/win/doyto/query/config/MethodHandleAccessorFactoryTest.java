@@ -0,0 +1,82 @@
+package win.doyto.query.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
+import org.junit.jupiter.api.Test;
+import win.doyto.query.core.FieldAccessor;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MethodHandleAccessorFactoryTest
+ *
+ * @author f0rb on 2020-02-12
+ */
+class MethodHandleAccessorFactoryTest {
+
+    private MethodHandleAccessorFactory factory = new MethodHandleAccessorFactory();
+
+    @Test
+    void readAndWriteThroughGetterAndSetter() throws NoSuchFieldException {
+        AccessorBean bean = new AccessorBean();
+        FieldAccessor accessor = factory.create(AccessorBean.class.getDeclaredField("name"));
+
+        accessor.set(bean, "test");
+        assertEquals("[test]", bean.name);
+        assertEquals("[[test]]", accessor.get(bean));
+    }
+
+    @Test
+    void supportPrimitiveBooleanAndChainSetter() throws NoSuchFieldException {
+        AccessorBean bean = new AccessorBean();
+        FieldAccessor accessor = factory.create(AccessorBean.class.getDeclaredField("valid"));
+
+        accessor.set(bean, true);
+        assertTrue(bean.isValid());
+        assertEquals(true, accessor.get(bean));
+    }
+
+    @Test
+    void fallbackToFieldWithoutGetterAndSetter() throws NoSuchFieldException {
+        AccessorBean bean = new AccessorBean();
+        FieldAccessor accessor = factory.create(AccessorBean.class.getDeclaredField("memo"));
+
+        accessor.set(bean, "memo");
+        assertEquals("memo", bean.memo);
+        assertEquals("memo", accessor.get(bean));
+    }
+
+    @Test
+    void readFieldDeclaredInSuperClass() throws NoSuchFieldException {
+        SubAccessorBean bean = new SubAccessorBean();
+        FieldAccessor accessor = factory.create(AccessorBean.class.getDeclaredField("valid"));
+
+        accessor.set(bean, true);
+        assertEquals(false, accessor.get(new SubAccessorBean()));
+        assertEquals(true, accessor.get(bean));
+    }
+
+    @SuppressWarnings("unused")
+    private static class AccessorBean {
+        private String name;
+
+        @Getter
+        @Setter
+        @Accessors(chain = true)
+        private boolean valid;
+
+        private String memo;
+
+        public String getName() {
+            return "[" + name + "]";
+        }
+
+        public void setName(String name) {
+            this.name = "[" + name + "]";
+        }
+    }
+
+    private static class SubAccessorBean extends AccessorBean {
+    }
+}
@@ -39,11 +39,31 @@ class CommonUtilTest {
         assertEquals("_test1_", replaceHolderInString(new ReplaceHolderObject("test1"), "_${part1}_"));
     }
 
+    @Test
+    void resolveAccessorOnce() throws NoSuchFieldException {
+        java.lang.reflect.Field field = ReplaceHolderObject.class.getDeclaredField("part1");
+        assertSame(accessor(field), accessor(field));
+        assertEquals("test1", readFieldGetter(new ReplaceHolderObject("test1"), "part1"));
+        assertNull(readFieldGetter(new ReplaceHolderObject("test1"), "part3"));
+    }
+
     @Test
     void replaceHolderInStringShouldReadGetterFirst() {
         assertEquals("_test1_test2_", replaceHolderInString(new ReplaceHolderObject("test1"), "_${part1}_${part2}_"));
     }
 
+    @Test
+    void readAndWriteFieldWithoutAccessors() throws NoSuchFieldException {
+        java.lang.reflect.Field field = WrappedObject.class.getDeclaredField("name");
+        WrappedObject target = new WrappedObject();
+
+        writeField(field, target, "test");
+        assertEquals("test", target.name);
+        assertEquals("test", readField(field, target));
+        assertEquals("[test]", readFieldGetter(field, target));
+        assertEquals("[test]", readFieldGetter(target, "name"));
+    }
+
     @Getter
     @Setter
     @AllArgsConstructor
@@ -54,4 +74,15 @@ class CommonUtilTest {
             return "test2";
         }
     }
-}
\ No newline at end of file
+    static class WrappedObject {
+        private String name;
+
+        public String getName() {
+            return "[" + name + "]";
+        }
+
+        public void setName(String name) {
+            this.name = "<" + name + ">";
+        }
+    }
+}
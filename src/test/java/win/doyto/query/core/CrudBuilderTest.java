@@ -191,4 +191,21 @@ class CrudBuilderTest {
             sqlAndArgs.sql);
     }
 
-}
\ No newline at end of file
+    @Test
+    void createSingleRowForBatch() {
+        TestEntity testEntity = new TestEntity();
+        testEntity.setUsername("test");
+        assertEquals("INSERT INTO user (username, password, mobile, email, nickname, userLevel, memo, valid) VALUES " +
+                         "(?, ?, ?, ?, ?, ?, ?, ?) ON DUPLICATE KEY UPDATE mobile = VALUES (mobile)",
+                     userEntityCrudBuilder.buildCreateSql(testEntity, "mobile"));
+        assertThat(userEntityCrudBuilder.buildCreateArgs(testEntity)).hasSize(8).startsWith("test");
+    }
+
+    @Test
+    void selectByIds() {
+        SqlAndArgs sqlAndArgs = userEntityCrudBuilder.buildSelectByIds(IdWrapper.build(1), Arrays.asList(1, 2, 3), "id", "memo");
+        assertEquals("SELECT id, memo FROM user WHERE id IN (?, ?, ?)", sqlAndArgs.sql);
+        assertThat(sqlAndArgs.args).containsExactly(1, 2, 3);
+    }
+
+}
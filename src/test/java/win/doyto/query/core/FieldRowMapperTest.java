@@ -0,0 +1,57 @@
+package win.doyto.query.core;
+
+import org.junit.jupiter.api.Test;
+import win.doyto.query.core.test.TestEntity;
+import win.doyto.query.core.test.TestEnum;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.*;
+
+/**
+ * FieldRowMapperTest
+ *
+ * @author f0rb on 2020-02-22
+ */
+class FieldRowMapperTest {
+
+    @Test
+    void mapColumnsByPosition() throws SQLException {
+        FieldRowMapper<TestEntity> rowMapper = new FieldRowMapper<>(TestEntity.class, Arrays.asList(
+            CommonUtil.getField(new TestEntity(), "id"),
+            CommonUtil.getField(new TestEntity(), "username"),
+            CommonUtil.getField(new TestEntity(), "userLevel"),
+            CommonUtil.getField(new TestEntity(), "valid")
+        ));
+        assertEquals("id, username, userLevel, valid", String.join(", ", rowMapper.getColumns()));
+
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getInt(1)).thenReturn(5);
+        when(rs.getString(2)).thenReturn("f0rb");
+        when(rs.getObject(3)).thenReturn(0);
+        when(rs.getBoolean(4)).thenReturn(false);
+        when(rs.wasNull()).thenReturn(false, true);
+
+        TestEntity testEntity = rowMapper.mapRow(rs, 0);
+        assertEquals(Integer.valueOf(5), testEntity.getId());
+        assertEquals("f0rb", testEntity.getUsername());
+        assertEquals(TestEnum.VIP, testEntity.getUserLevel());
+        assertNull(testEntity.getValid());
+    }
+
+    @Test
+    void mapEnumByName() throws SQLException {
+        FieldRowMapper<TestEntity> rowMapper = new FieldRowMapper<>(TestEntity.class, Arrays.asList(
+            CommonUtil.getField(new TestEntity(), "userLevel")
+        ));
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getObject(1)).thenReturn("NORMAL", (Object) null);
+
+        assertEquals(TestEnum.NORMAL, rowMapper.mapRow(rs, 0).getUserLevel());
+        assertNull(rowMapper.mapRow(rs, 1).getUserLevel());
+    }
+}
@@ -0,0 +1,97 @@
+package win.doyto.query.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import win.doyto.query.config.GlobalConfiguration;
+import win.doyto.query.core.test.TestQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * InClauseTest
+ *
+ * @author f0rb on 2020-02-13
+ */
+class InClauseTest {
+
+    private List<Object> argList = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        GlobalConfiguration.instance().setInListPadding(false);
+        GlobalConfiguration.instance().setMaxInListSize(0);
+    }
+
+    @Test
+    void keepSizeByDefault() {
+        assertEquals("id IN (?, ?, ?)", InClause.build("id", "IN", Arrays.asList(1, 2, 3), argList));
+        assertThat(argList).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void padToPowerOfTwoWithLastValue() {
+        GlobalConfiguration.instance().setInListPadding(true);
+
+        assertEquals("id IN (?, ?, ?, ?)", InClause.build("id", "IN", Arrays.asList(1, 2, 3), argList));
+        assertThat(argList).containsExactly(1, 2, 3, 3);
+        assertEquals(4, InClause.argCount(3));
+        assertEquals(8, InClause.argCount(5));
+        assertEquals(1, InClause.argCount(1));
+    }
+
+    @Test
+    void splitIntoChunksJoinedByOr() {
+        GlobalConfiguration.instance().setInListPadding(true);
+        GlobalConfiguration.instance().setMaxInListSize(4);
+
+        assertEquals("(id IN (?, ?, ?, ?) OR id IN (?, ?))",
+                     InClause.build("id", "IN", Arrays.asList(1, 2, 3, 4, 5, 6), argList));
+        assertThat(argList).containsExactly(1, 2, 3, 4, 5, 6);
+        assertEquals(6, InClause.argCount(6));
+    }
+
+    @Test
+    void splitNotInIntoChunksJoinedByAnd() {
+        GlobalConfiguration.instance().setMaxInListSize(2);
+
+        assertEquals("(id NOT IN (?, ?) AND id NOT IN (?))",
+                     InClause.build("id", "NOT IN", Arrays.asList(1, 2, 3), argList));
+        assertThat(argList).containsExactly(1, 2, 3);
+    }
+
+    @Test
+    void bindSameArgsAsBuild() {
+        GlobalConfiguration.instance().setInListPadding(true);
+        GlobalConfiguration.instance().setMaxInListSize(4);
+        List<Integer> values = Arrays.asList(1, 2, 3, 4, 5);
+
+        List<Object> boundArgs = new ArrayList<>();
+        InClause.build("id", "IN", values, argList);
+        InClause.bind(values, boundArgs);
+
+        assertEquals(argList, boundArgs);
+        assertEquals(argList.size(), InClause.argCount(values.size()));
+    }
+
+    @Test
+    void reuseSqlForSizesInSameBucket() {
+        GlobalConfiguration.instance().setInListPadding(true);
+        QueryBuilder queryBuilder = new QueryBuilder("user", "id");
+
+        TestQuery query3 = TestQuery.builder().idIn(Arrays.asList(1, 2, 3)).build();
+        TestQuery query4 = TestQuery.builder().idIn(Arrays.asList(4, 5, 6, 7)).build();
+        String sql = queryBuilder.buildSelectAndArgs(query3, argList);
+
+        assertEquals("SELECT * FROM user WHERE id IN (?, ?, ?, ?)", sql);
+        assertThat(argList).containsExactly(1, 2, 3, 3);
+
+        argList.clear();
+        assertEquals(sql, queryBuilder.buildSelectAndArgs(query4, argList));
+        assertThat(argList).containsExactly(4, 5, 6, 7);
+    }
+}
@@ -9,6 +9,7 @@ import win.doyto.query.service.JoinQueryService;
 
 import static org.assertj.core.api.AssertionsForClassTypes.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 /**
  * JoinQueryServiceTest
@@ -36,6 +37,15 @@ class JoinQueryServiceTest {
     }
 
 
+    @Test
+    void rejectKeysetPaging() {
+        JoinQueryService<TestJoinView, TestJoinQuery> joinQueryService = new JoinQueryService<>(null, TestJoinView.class);
+
+        TestJoinQuery testJoinQuery = new TestJoinQuery();
+        testJoinQuery.setAfter("");
+        assertThrows(IllegalArgumentException.class, () -> joinQueryService.buildJoinSelectAndArgs(testJoinQuery));
+    }
+
     @Test
     void buildJoinSelectAndArgsWithAlias() {
 
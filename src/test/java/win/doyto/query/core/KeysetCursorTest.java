@@ -0,0 +1,89 @@
+package win.doyto.query.core;
+
+import org.junit.jupiter.api.Test;
+import win.doyto.query.core.test.TestEntity;
+import win.doyto.query.core.test.TestEnum;
+import win.doyto.query.core.test.TestQuery;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * KeysetCursorTest
+ *
+ * @author f0rb on 2020-02-17
+ */
+class KeysetCursorTest {
+
+    @Test
+    void encodeAndDecodeWithTypes() {
+        List<Object> values = Arrays.asList(1, 2L, new BigDecimal("1.50"), true, new Timestamp(1581900000000L), "a,b\"c", null);
+        assertEquals(values, KeysetCursor.decode(KeysetCursor.encode(values)));
+    }
+
+    @Test
+    void rejectNullSortValue() {
+        TestEntity testEntity = new TestEntity();
+        testEntity.setId(1);
+        TestQuery testQuery = TestQuery.builder().build();
+        testQuery.setSort("memo,asc");
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.next(testQuery, testEntity));
+
+        List<KeysetCursor.SortKey> sortKeys = KeysetCursor.sortKeys(testQuery, "id");
+        String cursor = KeysetCursor.encode(Arrays.asList(null, 1));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(cursor, sortKeys));
+    }
+
+    @Test
+    void appendIdToBreakTies() {
+        TestQuery testQuery = TestQuery.builder().build();
+        testQuery.setSort("valid,desc");
+        assertEquals("valid,desc;id,asc", KeysetCursor.buildSort(KeysetCursor.sortKeys(testQuery, "id")));
+
+        testQuery.setSort("valid,desc;id,desc");
+        assertEquals("valid,desc;id,desc", KeysetCursor.buildSort(KeysetCursor.sortKeys(testQuery, "id")));
+        assertEquals("valid,desc;id,desc;user_id,asc", KeysetCursor.buildSort(KeysetCursor.sortKeys(testQuery, "user_id")));
+    }
+
+    @Test
+    void buildPredicateForMixedDirections() {
+        TestQuery testQuery = TestQuery.builder().build();
+        testQuery.setSort("valid,desc;memo,asc");
+        List<KeysetCursor.SortKey> sortKeys = KeysetCursor.sortKeys(testQuery, "id");
+        assertEquals("(valid < ? OR valid = ? AND memo > ? OR valid = ? AND memo = ? AND id > ?)", KeysetCursor.buildPredicate(sortKeys));
+
+        List<Object> argList = new ArrayList<>();
+        KeysetCursor.bindArgs(sortKeys, Arrays.asList(true, "memo", 5), argList);
+        assertThat(argList).containsExactly(true, true, "memo", true, "memo", 5);
+    }
+
+    @Test
+    void nextFromLastRow() {
+        TestEntity testEntity = new TestEntity();
+        testEntity.setId(5);
+        testEntity.setUserLevel(TestEnum.VIP);
+        TestQuery testQuery = TestQuery.builder().build();
+        testQuery.setSort("userLevel,desc");
+
+        String next = KeysetCursor.next(testQuery, testEntity);
+        assertThat(KeysetCursor.decode(next)).containsExactly(TestEnum.VIP.ordinal(), 5);
+    }
+
+    @Test
+    void rejectInvalidCursor() {
+        TestQuery testQuery = TestQuery.builder().build();
+        List<KeysetCursor.SortKey> sortKeys = KeysetCursor.sortKeys(testQuery, "id");
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode("not a cursor", sortKeys));
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.decode(KeysetCursor.encode(Arrays.asList(1, 2)), sortKeys));
+
+        testQuery.setSort("field(status,1,2);id,desc");
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.sortKeys(testQuery, "id"));
+    }
+}
@@ -2,16 +2,22 @@ package win.doyto.query.core;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import win.doyto.query.config.GlobalConfiguration;
 import win.doyto.query.core.test.TestEntity;
 import win.doyto.query.core.test.TestEnum;
 import win.doyto.query.core.test.TestQuery;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static win.doyto.query.core.test.TestEntity.initUserEntities;
 
 /**
@@ -48,6 +54,15 @@ class MemoryDataAccessTest {
         assertEquals(5, testMemoryDataAccess.query(testQuery).size());
     }
 
+    @Test
+    void filterByOrMatchingAnyColumn() {
+        TestQuery testQuery = TestQuery.builder().usernameOrEmailOrMobile("test2@163.com").build();
+        assertThat(testMemoryDataAccess.query(testQuery)).extracting(TestEntity::getId).containsExactly(2);
+
+        testQuery = TestQuery.builder().usernameOrEmailOrMobile("test2@163.com").valid(false).build();
+        assertThat(testMemoryDataAccess.query(testQuery)).isEmpty();
+    }
+
     @Test
     void filterByLike() {
         TestQuery testQuery = TestQuery.builder().usernameLike("name").build();
@@ -80,6 +95,43 @@ class MemoryDataAccessTest {
         assertNotSame(u1, u2);
     }
 
+    @Test
+    void getWithFieldCopy() {
+        testMemoryDataAccess.setIsolation(MemoryIsolation.FIELD_COPY);
+        TestEntity u1 = testMemoryDataAccess.get(1);
+        TestEntity u2 = testMemoryDataAccess.get(1);
+        assertNotSame(u1, u2);
+        assertThat(u1.getId()).isEqualTo(1);
+        assertEquals(u1.getUsername(), u2.getUsername());
+
+        u1.setUsername("changed");
+        assertEquals("username1", testMemoryDataAccess.get(1).getUsername());
+    }
+
+    @Test
+    void shareSnapshotsBetweenWrites() {
+        testMemoryDataAccess.setIsolation(MemoryIsolation.SNAPSHOT);
+        TestEntity testEntity = new TestEntity();
+        testEntity.setUsername("snapshot");
+        testMemoryDataAccess.create(testEntity);
+        testEntity.setUsername("changed");
+
+        TestEntity stored = testMemoryDataAccess.get(testEntity.getId());
+        assertSame(stored, testMemoryDataAccess.get(testEntity.getId()));
+        assertEquals("snapshot", stored.getUsername());
+
+        TestEntity patch = new TestEntity();
+        patch.setId(testEntity.getId());
+        patch.setMemo("patched");
+        testMemoryDataAccess.patch(patch);
+
+        TestEntity patched = testMemoryDataAccess.get(testEntity.getId());
+        assertNotSame(stored, patched);
+        assertNull(stored.getMemo());
+        assertEquals("patched", patched.getMemo());
+        assertEquals("snapshot", patched.getUsername());
+    }
+
     @Test
     void filterByMultiConditions() {
         TestQuery testQuery = TestQuery.builder().valid(true).usernameLikeOrEmailLikeOrMobileLike("username").build();
@@ -157,4 +209,133 @@ class MemoryDataAccessTest {
         sort.setValid(true);
         assertThat(testMemoryDataAccess.query(sort)).extracting(TestEntity::getId).containsExactly(5, 4, 2);
     }
-}
\ No newline at end of file
+
+    @Test
+    void sortByFieldFunction() {
+        TestQuery sort = TestQuery.builder().build();
+        sort.setSort("field(username,'username3','f0rb');id,desc");
+        assertThat(testMemoryDataAccess.query(sort)).extracting(TestEntity::getId).containsExactly(4, 2, 1, 3, 5);
+    }
+
+    @Test
+    void sortNullsFirst() {
+        TestQuery sort = TestQuery.builder().build();
+        sort.setSort("memo,desc;id,asc");
+        assertThat(testMemoryDataAccess.query(sort)).extracting(TestEntity::getId).containsExactly(5, 1, 2, 3, 4);
+    }
+
+    @Test
+    void pageWithTopKAndParallelSort() {
+        TestQuery query = TestQuery.builder().build();
+        query.setSort("valid,desc;id,asc").setPageNumber(0).setPageSize(2);
+        assertThat(testMemoryDataAccess.query(query)).extracting(TestEntity::getId).containsExactly(2, 4);
+
+        query.setPageNumber(1);
+        assertThat(testMemoryDataAccess.query(query)).extracting(TestEntity::getId).containsExactly(5, 1);
+
+        query.setPageNumber(3);
+        assertThat(testMemoryDataAccess.query(query)).isEmpty();
+
+        GlobalConfiguration.instance().setParallelSortThreshold(1);
+        try {
+            query.setPageNumber(null).setPageSize(null);
+            assertThat(testMemoryDataAccess.query(query)).extracting(TestEntity::getId).containsExactly(2, 4, 5, 1, 3);
+        } finally {
+            GlobalConfiguration.instance().setParallelSortThreshold(10000);
+        }
+    }
+
+    @Test
+    void streamWithSortAndPaging() {
+        TestQuery query = TestQuery.builder().build();
+        query.setSort("valid,asc;id,desc");
+        query.setPageNumber(1).setPageSize(2);
+        try (Stream<TestEntity> stream = testMemoryDataAccess.stream(query)) {
+            assertThat(stream.map(TestEntity::getId)).containsExactly(5, 4);
+        }
+    }
+
+    @Test
+    void forEachMatched() {
+        List<String> usernames = new ArrayList<>();
+        testMemoryDataAccess.forEach(TestQuery.builder().usernameLike("name").build(), e -> usernames.add(e.getUsername()));
+        assertThat(usernames).containsExactlyInAnyOrder("username1", "username2", "username3", "username4");
+    }
+
+    @Test
+    void keysetPaging() {
+        TestQuery query = TestQuery.builder().build();
+        query.setSort("valid,asc").setPageSize(2).setAfter("");
+
+        List<Integer> ids = new ArrayList<>();
+        List<TestEntity> page = testMemoryDataAccess.query(query);
+        while (!page.isEmpty()) {
+            page.forEach(e -> ids.add(e.getId()));
+            query.setAfter(KeysetCursor.next(query, page.get(page.size() - 1)));
+            page = testMemoryDataAccess.query(query);
+        }
+        assertThat(ids).containsExactly(1, 3, 2, 4, 5);
+    }
+
+    @Test
+    void rejectKeysetCursorOfNullSortValue() {
+        TestQuery query = TestQuery.builder().build();
+        query.setSort("memo,asc").setPageSize(2).setAfter("");
+
+        List<TestEntity> page = testMemoryDataAccess.query(query);
+        assertThat(page).extracting(TestEntity::getId).containsExactly(1, 2);
+        assertThrows(IllegalArgumentException.class, () -> KeysetCursor.next(query, page.get(1)));
+
+        query.setSort("memo,desc");
+        List<TestEntity> desc = testMemoryDataAccess.query(query);
+        assertThat(desc).extracting(TestEntity::getId).containsExactly(5, 1);
+    }
+
+    @Test
+    void pickMostSelectiveIndex() {
+        testMemoryDataAccess.createIndex("valid", MemoryDataAccess.IndexType.HASH);
+        testMemoryDataAccess.createIndex("username", MemoryDataAccess.IndexType.SORTED);
+        testMemoryDataAccess.createIndex("userLevel", MemoryDataAccess.IndexType.HASH);
+
+        TestQuery testQuery = TestQuery.builder().valid(true).usernameStart("f0").build();
+        assertThat(testMemoryDataAccess.planIndex(testQuery)).containsExactly(5);
+        assertThat(testMemoryDataAccess.query(testQuery)).extracting(TestEntity::getId).containsExactly(5);
+
+        testQuery = TestQuery.builder().valid(true).userLevelIn(Arrays.asList(TestEnum.NORMAL)).build();
+        assertThat(testMemoryDataAccess.planIndex(testQuery)).containsExactlyInAnyOrder(2, 4, 5);
+        assertEquals(2, testMemoryDataAccess.count(testQuery));
+
+        testQuery = TestQuery.builder().usernameLike("name").build();
+        assertNull(testMemoryDataAccess.planIndex(testQuery));
+    }
+
+    @Test
+    void keepIndexUpToDate() {
+        testMemoryDataAccess.createIndex("username", MemoryDataAccess.IndexType.SORTED);
+        TestQuery testQuery = TestQuery.builder().username("username1").build();
+
+        TestEntity patch = new TestEntity();
+        patch.setId(1);
+        patch.setUsername("renamed");
+        testMemoryDataAccess.patch(patch);
+        assertThat(testMemoryDataAccess.query(testQuery)).isEmpty();
+        testQuery.setUsername("renamed");
+        assertThat(testMemoryDataAccess.query(testQuery)).extracting(TestEntity::getId).containsExactly(1);
+
+        TestEntity update = testMemoryDataAccess.get(IdWrapper.build(2));
+        update.setUsername("renamed");
+        testMemoryDataAccess.update(update);
+        assertThat(testMemoryDataAccess.query(testQuery)).extracting(TestEntity::getId).containsExactlyInAnyOrder(1, 2);
+
+        testMemoryDataAccess.delete(IdWrapper.build(1));
+        assertThat(testMemoryDataAccess.query(testQuery)).extracting(TestEntity::getId).containsExactly(2);
+
+        TestEntity testEntity = new TestEntity();
+        testEntity.setUsername("renamed");
+        testMemoryDataAccess.create(testEntity);
+        assertEquals(2, testMemoryDataAccess.count(testQuery));
+
+        testQuery = TestQuery.builder().usernameStart("username").build();
+        assertThat(testMemoryDataAccess.planIndex(testQuery)).containsExactlyInAnyOrder(3, 4);
+    }
+}
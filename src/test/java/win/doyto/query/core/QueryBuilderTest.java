@@ -397,4 +397,41 @@ public class QueryBuilderTest {
         pageQuery.setSort(OrderByBuilder.create().field("gender","'male'","'female'").desc("id").toString());
         assertEquals(" ORDER BY field(gender,'male','female'), id desc", QueryBuilder.buildOrderBy("", pageQuery, Constant.SELECT));
     }
-}
\ No newline at end of file
+
+    @Test
+    void buildKeysetFirstPage() {
+        TestQuery testQuery = TestQuery.builder().valid(true).build();
+        testQuery.setSort("createTime,desc").setPageSize(5).setAfter("");
+
+        assertEquals("SELECT * FROM user WHERE valid = ? ORDER BY createTime desc, id asc LIMIT 5 OFFSET 0",
+                     testQueryBuilder.buildSelectAndArgs(testQuery, argList));
+        assertThat(argList).containsExactly(true);
+    }
+
+    @Test
+    void buildKeysetSeek() {
+        TestQuery testQuery = TestQuery.builder().valid(true).build();
+        testQuery.setSort("createTime,desc;id,desc").setPageSize(5).setAfter(KeysetCursor.encode(Arrays.asList(100L, 3)));
+
+        assertEquals("SELECT * FROM user WHERE valid = ? AND (createTime, id) < (?, ?) ORDER BY createTime desc, id desc LIMIT 5 OFFSET 0",
+                     testQueryBuilder.buildSelectAndArgs(testQuery, argList));
+        assertThat(argList).containsExactly(true, 100L, 3);
+
+        argList.clear();
+        testQuery.setAfter(KeysetCursor.encode(Arrays.asList(50L, 2)));
+        assertEquals("SELECT count(*) FROM user WHERE valid = ?", testQueryBuilder.buildCountAndArgs(testQuery, argList));
+        argList.clear();
+        testQueryBuilder.buildSelectAndArgs(testQuery, argList);
+        assertThat(argList).containsExactly(true, 50L, 2);
+    }
+
+    @Test
+    void buildKeysetWithIdColumn() {
+        TestQuery testQuery = TestQuery.builder().build();
+        testQuery.setSort("createTime,desc").setPageSize(5).setAfter(KeysetCursor.encode(Arrays.asList(100L, 3)));
+
+        assertEquals("SELECT * FROM user WHERE (createTime < ? OR createTime = ? AND user_id > ?) ORDER BY createTime desc, user_id asc LIMIT 5 OFFSET 0",
+                     new QueryBuilder("user", "user_id").buildSelectAndArgs(testQuery, argList));
+        assertThat(argList).containsExactly(100L, 100L, 3);
+    }
+}
@@ -0,0 +1,148 @@
+package win.doyto.query.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.Cache;
+import org.springframework.cache.concurrent.ConcurrentMapCache;
+import win.doyto.query.config.GlobalConfiguration;
+import win.doyto.query.core.test.TestEntity;
+import win.doyto.query.core.test.TestEnum;
+import win.doyto.query.core.test.TestQuery;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * QueryCacheInvalidatorTest
+ *
+ * @author f0rb on 2020-02-28
+ */
+class QueryCacheInvalidatorTest {
+
+    private QueryCacheInvalidator<TestEntity> invalidator;
+    private ConcurrentMapCache cache;
+    private TestQuery byUsername;
+    private TestQuery byUsernameLike;
+
+    @BeforeEach
+    void setUp() {
+        invalidator = new QueryCacheInvalidator<>(TestEntity.class, TestQuery.class);
+        cache = new ConcurrentMapCache("test:query");
+        byUsername = TestQuery.builder().username("f0rb").build();
+        byUsernameLike = TestQuery.builder().usernameLike("f0rb").build();
+    }
+
+    private static TestEntity entity(String username, String email, TestEnum userLevel, Boolean valid) {
+        TestEntity testEntity = new TestEntity();
+        testEntity.setUsername(username);
+        testEntity.setEmail(email);
+        testEntity.setUserLevel(userLevel);
+        testEntity.setValid(valid);
+        return testEntity;
+    }
+
+    @Test
+    void keepTaggedQueriesForUnrelatedRows() {
+        String tagged = invalidator.keyPrefix(cache, byUsername);
+        String untagged = invalidator.keyPrefix(cache, byUsernameLike);
+        assertEquals(tagged, invalidator.keyPrefix(cache, byUsername));
+
+        TestEntity origin = entity("user1", "user1@qq.com", TestEnum.NORMAL, true);
+        invalidator.invalidate(cache, origin, entity(null, "u1@qq.com", null, null));
+
+        assertEquals(tagged, invalidator.keyPrefix(cache, byUsername));
+        assertNotEquals(untagged, invalidator.keyPrefix(cache, byUsernameLike));
+    }
+
+    @Test
+    void invalidateTaggedQueriesForOldAndNewRows() {
+        String tagged = invalidator.keyPrefix(cache, byUsername);
+
+        TestEntity origin = entity("user1", "user1@qq.com", TestEnum.NORMAL, true);
+        invalidator.invalidate(cache, origin, entity("f0rb", null, null, null));
+        String renamed = invalidator.keyPrefix(cache, byUsername);
+        assertNotEquals(tagged, renamed);
+
+        invalidator.invalidate(cache, entity("f0rb", "f0rb@qq.com", TestEnum.VIP, true), null);
+        assertNotEquals(renamed, invalidator.keyPrefix(cache, byUsername));
+    }
+
+    @Test
+    void invalidateAllForUnknownColumnsOfCreatedRows() {
+        String tagged = invalidator.keyPrefix(cache, byUsername);
+
+        invalidator.invalidateCreated(cache, Collections.singletonList(entity("user6", "user6@qq.com", TestEnum.NORMAL, true)));
+        assertEquals(tagged, invalidator.keyPrefix(cache, byUsername));
+
+        invalidator.invalidate(cache, null, entity("user7", "user7@qq.com", TestEnum.NORMAL, null));
+        assertNotEquals(tagged, invalidator.keyPrefix(cache, byUsername));
+    }
+
+    @Test
+    void recreateEvictedToken() {
+        String tagged = invalidator.keyPrefix(cache, byUsername);
+
+        cache.evict("#username=f0rb");
+
+        assertNotEquals(tagged, invalidator.keyPrefix(cache, byUsername));
+    }
+
+    @Test
+    void tagStringsInsensitively() {
+        String tagged = invalidator.keyPrefix(cache, TestQuery.builder().username("F0Ŕb ").build());
+        assertEquals(tagged, invalidator.keyPrefix(cache, byUsername));
+
+        invalidator.invalidate(cache, entity("F0RB", "f0rb@qq.com", TestEnum.VIP, true), null);
+        assertNotEquals(tagged, invalidator.keyPrefix(cache, byUsername));
+    }
+
+    @Test
+    void untagFieldsOfOtherTypes() {
+        QueryCacheInvalidator<TestEntity> levelInvalidator = new QueryCacheInvalidator<>(TestEntity.class, LevelQuery.class);
+        String untagged = levelInvalidator.keyPrefix(cache, new LevelQuery(0));
+
+        levelInvalidator.invalidate(cache, entity("user1", "user1@qq.com", TestEnum.VIP, true), entity(null, "u1@qq.com", null, null));
+        assertNotEquals(untagged, levelInvalidator.keyPrefix(cache, new LevelQuery(0)));
+    }
+
+    @Test
+    void reuseLocalTokens() {
+        GlobalConfiguration.instance().setQueryTokenTtl(1000);
+        try {
+            Cache spyCache = spy(cache);
+            String tagged = invalidator.keyPrefix(spyCache, byUsername);
+            assertEquals(tagged, invalidator.keyPrefix(spyCache, byUsername));
+            verify(spyCache, times(2)).get(any());
+
+            invalidator.invalidateAll(spyCache);
+            assertNotEquals(tagged, invalidator.keyPrefix(spyCache, byUsername));
+            verify(spyCache, times(2)).get(any());
+        } finally {
+            GlobalConfiguration.instance().setQueryTokenTtl(0);
+        }
+    }
+
+    @Test
+    void toleratesCacheFailures() {
+        Cache failingCache = mock(Cache.class);
+        when(failingCache.getName()).thenReturn("test:query");
+        when(failingCache.get(any())).thenThrow(new IllegalStateException("down"));
+        doThrow(new IllegalStateException("down")).when(failingCache).put(any(), any());
+
+        assertNull(invalidator.keyPrefix(failingCache, byUsername));
+
+        invalidator.invalidateAll(failingCache);
+        invalidator.invalidate(failingCache, null, entity("user7", "user7@qq.com", TestEnum.NORMAL, null));
+        verify(failingCache, times(2)).put(eq("#"), any());
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class LevelQuery {
+        private Integer userLevel;
+    }
+}
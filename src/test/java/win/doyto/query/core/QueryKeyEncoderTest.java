@@ -0,0 +1,107 @@
+package win.doyto.query.core;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.Setter;
+import org.junit.jupiter.api.Test;
+import win.doyto.query.core.test.TestEnum;
+import win.doyto.query.core.test.TestQuery;
+
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+/**
+ * QueryKeyEncoderTest
+ *
+ * @author f0rb on 2020-02-27
+ */
+class QueryKeyEncoderTest {
+
+    @Test
+    void encodeNonNullFieldsInDeclaredOrder() {
+        TestQuery testQuery = TestQuery.builder().username("test").idIn(Arrays.asList(3, 1)).userLevel(TestEnum.VIP).build();
+        testQuery.setPageSize(10);
+
+        assertEquals("idIn=[3,1],username=test,memoNull=false,memoNotNull=false,userLevel=VIP,pageNumber=0,pageSize=10",
+                     QueryKeyEncoder.encode(testQuery));
+        assertEquals("idIn=[3,1],username=test,memoNull=false,memoNotNull=false,userLevel=VIP",
+                     QueryKeyEncoder.encodeWithoutPaging(testQuery));
+    }
+
+    @Test
+    void escapeSeparators() {
+        TestQuery q1 = TestQuery.builder().username("a,valid=true").build();
+        TestQuery q2 = TestQuery.builder().username("a").valid(true).build();
+
+        assertEquals("username=a\\,valid\\=true,memoNull=false,memoNotNull=false", QueryKeyEncoder.encode(q1));
+        assertNotEquals(QueryKeyEncoder.encode(q1), QueryKeyEncoder.encode(q2));
+    }
+
+    @Test
+    void encodeSetsSortedAndNestedObjects() {
+        SetQuery q1 = new SetQuery(new LinkedHashSet<>(Arrays.asList("b", "a")), new Date(1582761600000L), new NestedQuery(1, null));
+        SetQuery q2 = new SetQuery(new HashSet<>(Arrays.asList("a", "b")), new Date(1582761600000L), new NestedQuery(1, null));
+
+        assertEquals("nameIn=[a,b],createTimeGt=1582761600000,nested={id=1}", QueryKeyEncoder.encode(q1));
+        assertEquals(QueryKeyEncoder.encode(q1), QueryKeyEncoder.encode(q2));
+    }
+
+    @Test
+    void encodeMapsSortedByEntries() {
+        Map<String, Object> m1 = new LinkedHashMap<>();
+        m1.put("b", 2);
+        m1.put("a", Arrays.asList(1, 2));
+        Map<String, Object> m2 = new LinkedHashMap<>();
+        m2.put("a", Arrays.asList(1, 2));
+        m2.put("b", 2);
+
+        assertEquals("attrs={a=[1,2],b=2}", QueryKeyEncoder.encode(new MapQuery(m1, null)));
+        assertEquals(QueryKeyEncoder.encode(new MapQuery(m1, null)), QueryKeyEncoder.encode(new MapQuery(m2, null)));
+    }
+
+    @Test
+    void encodeCyclesOnce() {
+        Map<String, Object> attrs = new HashMap<>();
+        attrs.put("self", attrs);
+        MapQuery mapQuery = new MapQuery(attrs, null);
+        mapQuery.setParent(mapQuery);
+
+        assertEquals("attrs={self=#cycle},parent=#cycle", QueryKeyEncoder.encode(mapQuery));
+        assertEquals("attrs={},parent={attrs={}}",
+                     QueryKeyEncoder.encode(new MapQuery(new HashMap<>(), new MapQuery(new HashMap<>(), null))));
+    }
+
+    @Test
+    void hashTo128Bits() {
+        String hash = QueryKeyEncoder.hash("username=test");
+
+        assertEquals(22, hash.length());
+        assertEquals(hash, QueryKeyEncoder.hash("username=test"));
+        assertNotEquals(hash, QueryKeyEncoder.hash("username=test1"));
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class SetQuery {
+        private Set<String> nameIn;
+        private Date createTimeGt;
+        private NestedQuery nested;
+    }
+
+    @Getter
+    @Setter
+    @AllArgsConstructor
+    private static class MapQuery {
+        private Map<String, Object> attrs;
+        private MapQuery parent;
+    }
+
+    @Getter
+    @AllArgsConstructor
+    private static class NestedQuery {
+        private Integer id;
+        private String name;
+    }
+}
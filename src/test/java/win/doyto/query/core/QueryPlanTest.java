@@ -0,0 +1,109 @@
+package win.doyto.query.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import win.doyto.query.config.GlobalConfiguration;
+import win.doyto.query.core.test.PermissionQuery;
+import win.doyto.query.core.test.TestEntity;
+import win.doyto.query.core.test.TestEntity;
+import win.doyto.query.core.test.TestQuery;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * QueryPlanTest
+ *
+ * @author f0rb on 2020-02-11
+ */
+class QueryPlanTest {
+
+    @AfterEach
+    void tearDown() {
+        GlobalConfiguration.instance().setMapCamelCaseToUnderscore(false);
+    }
+
+    @Test
+    void compileOncePerQueryClass() {
+        assertSame(QueryPlan.of(TestQuery.class), QueryPlan.of(TestQuery.class));
+    }
+
+    @Test
+    void sharePagesInSqlCache() {
+        QueryBuilder queryBuilder = new QueryBuilder(TestEntity.class);
+        TestQuery testQuery = TestQuery.builder().username("test").roleId(2).build();
+        testQuery.setPageSize(10).setSort("id,desc");
+        queryBuilder.buildSelectAndArgs(testQuery, new ArrayList<>());
+        int cacheSize = QueryPlan.of(TestQuery.class).cacheSize();
+
+        for (int i = 1; i < 10; i++) {
+            testQuery.setPageNumber(i);
+            assertThat(queryBuilder.buildSelectAndArgs(testQuery, new ArrayList<>())).endsWith(" LIMIT 10 OFFSET " + i * 10);
+        }
+        assertEquals(cacheSize, QueryPlan.of(TestQuery.class).cacheSize());
+    }
+
+    @Test
+    void resolveColumnMappingAtRuntime() {
+        TestQuery testQuery = TestQuery.builder().userNameOrUserCodeLike("test").build();
+        QueryPlan queryPlan = QueryPlan.of(TestQuery.class);
+
+        List<Object> argList = new ArrayList<>();
+        assertEquals(" WHERE (userName = ? OR userCode LIKE ?)", queryPlan.buildWhere("", testQuery, argList));
+
+        GlobalConfiguration.instance().setMapCamelCaseToUnderscore(true);
+        assertEquals(" WHERE (user_name = ? OR user_code LIKE ?)", queryPlan.buildWhere("", testQuery, argList));
+        assertThat(argList).containsExactly("test", "%test%", "test", "%test%");
+    }
+
+    @Test
+    void reuseSqlForSameShape() {
+        QueryBuilder queryBuilder = new QueryBuilder(TestEntity.class);
+        List<Object> argList1 = new ArrayList<>();
+        TestQuery query1 = TestQuery.builder().username("test1").idIn(Arrays.asList(1, 2)).usernameLike("f0rb").build();
+        String sql1 = queryBuilder.buildSelectAndArgs(query1, argList1);
+
+        List<Object> argList2 = new ArrayList<>();
+        TestQuery query2 = TestQuery.builder().username("test2").idIn(Arrays.asList(3, 4)).usernameLike("name").build();
+        String sql2 = queryBuilder.buildSelectAndArgs(query2, argList2);
+
+        assertEquals("SELECT * FROM user WHERE id IN (?, ?) AND username = ? AND username LIKE ?", sql2);
+        assertSame(sql1, sql2);
+        assertThat(argList1).containsExactly(1, 2, "test1", "%f0rb%");
+        assertThat(argList2).containsExactly(3, 4, "test2", "%name%");
+    }
+
+    @Test
+    void buildDifferentSqlForDifferentShape() {
+        QueryBuilder queryBuilder = new QueryBuilder(TestEntity.class);
+        List<Object> argList = new ArrayList<>();
+
+        TestQuery query = TestQuery.builder().idIn(Arrays.asList(1, 2)).usernameLike("").build();
+        assertEquals("SELECT * FROM user WHERE id IN (?, ?)", queryBuilder.buildSelectAndArgs(query, argList));
+
+        query.setIdIn(Arrays.asList(1, 2, 3));
+        query.setUsernameLike("test");
+        assertEquals("SELECT * FROM user WHERE id IN (?, ?, ?) AND username LIKE ?", queryBuilder.buildSelectAndArgs(query, argList));
+
+        query.setPageNumber(1);
+        assertEquals("SELECT * FROM user WHERE id IN (?, ?, ?) AND username LIKE ? LIMIT 10 OFFSET 10", queryBuilder.buildSelectAndArgs(query, argList));
+        assertThat(argList).containsExactly(1, 2, 1, 2, 3, "%test%", 1, 2, 3, "%test%");
+    }
+
+    @Test
+    void bindArgsForSubQueryWithCachedSql() {
+        QueryBuilder queryBuilder = new QueryBuilder("permission", "id");
+        PermissionQuery permissionQuery = PermissionQuery.builder().userId(1).roleIdIn(Arrays.asList(1, 2)).build();
+        String sql = queryBuilder.buildSelectAndArgs(permissionQuery, new ArrayList<>());
+
+        List<Object> argList = new ArrayList<>();
+        permissionQuery = PermissionQuery.builder().userId(2).roleIdIn(Arrays.asList(3, 4)).build();
+        assertSame(sql, queryBuilder.buildSelectAndArgs(permissionQuery, argList));
+        assertThat(argList).containsExactly(2, 3, 4);
+    }
+}
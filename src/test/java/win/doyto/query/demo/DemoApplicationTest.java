@@ -8,6 +8,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.cache.support.NoOpCache;
 import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
 import org.springframework.jdbc.core.JdbcOperations;
 import org.springframework.mock.web.MockHttpSession;
 import org.springframework.test.annotation.Rollback;
@@ -23,24 +24,39 @@ import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.context.WebApplicationContext;
 import win.doyto.query.cache.CacheWrapper;
+import win.doyto.query.config.GlobalConfiguration;
+import win.doyto.query.core.FieldRowMapper;
+import win.doyto.query.core.JdbcDataAccess;
+import win.doyto.query.core.SqlAndArgs;
+import win.doyto.query.core.SqlEvent;
+import win.doyto.query.core.SqlListener;
 import win.doyto.query.core.test.TestJoinQuery;
 import win.doyto.query.core.test.TestJoinView;
 import win.doyto.query.core.test.UserCountByRoleView;
 import win.doyto.query.demo.exception.ServiceException;
+import win.doyto.query.demo.module.menu.MenuEntity;
+import win.doyto.query.demo.module.menu.MenuIdWrapper;
+import win.doyto.query.demo.module.menu.MenuQuery;
+import win.doyto.query.demo.module.menu.MenuResponse;
 import win.doyto.query.demo.module.role.RoleController;
 import win.doyto.query.demo.module.user.TestUserEntityAspect;
+import win.doyto.query.metrics.MetricsRecorder;
 import win.doyto.query.service.AssociativeService;
 import win.doyto.query.service.JoinQueryService;
 import win.doyto.query.service.PageList;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import javax.annotation.Resource;
 import javax.persistence.EntityNotFoundException;
 
 import static java.util.Collections.emptyList;
 import static java.util.Collections.singleton;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
@@ -409,6 +425,195 @@ class DemoApplicationTest {
         ;
     }
 
+    /*=============== batch ==================*/
+    private List<MenuEntity> buildMenus(int size) {
+        List<MenuEntity> menus = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            MenuEntity menuEntity = new MenuEntity();
+            menuEntity.setPlatform("02");
+            menuEntity.setMenuName("batch" + i);
+            menuEntity.setValid(true);
+            menus.add(menuEntity);
+        }
+        return menus;
+    }
+
+    private JdbcDataAccess<MenuEntity, Integer, MenuQuery> menuDataAccess() {
+        return new JdbcDataAccess<>(jdbcOperations, MenuEntity.class, Integer.class, new BeanPropertyRowMapper<>(MenuEntity.class));
+    }
+
+    @Test
+    void batchInsertInChunks() {
+        GlobalConfiguration.instance().setBatchInsertChunkSize(2);
+        try {
+            List<MenuEntity> menus = buildMenus(5);
+            assertEquals(5, menuDataAccess().batchInsert(menus));
+            assertThat(menus).extracting(MenuEntity::getId).doesNotContainNull().doesNotHaveDuplicates().isSorted();
+        } finally {
+            GlobalConfiguration.instance().setBatchInsertChunkSize(1000);
+        }
+    }
+
+    @Test
+    void batchInsertWithRewrite() {
+        GlobalConfiguration.instance().setBatchInsertChunkSize(2);
+        GlobalConfiguration.instance().setBatchInsertRewrite(true);
+        try {
+            List<MenuEntity> menus = buildMenus(3);
+            JdbcDataAccess<MenuEntity, Integer, MenuQuery> menuDataAccess = menuDataAccess();
+            assertEquals(3, menuDataAccess.batchInsert(menus));
+            assertThat(menus).extracting(MenuEntity::getId).doesNotContainNull().doesNotHaveDuplicates();
+            assertEquals("batch2", menuDataAccess.get(menus.get(2).toIdWrapper()).getMenuName());
+        } finally {
+            GlobalConfiguration.instance().setBatchInsertChunkSize(1000);
+            GlobalConfiguration.instance().setBatchInsertRewrite(false);
+        }
+    }
+
+    @Test
+    void batchPatchGroupedByColumns() {
+        List<MenuEntity> menus = buildMenus(3);
+        JdbcDataAccess<MenuEntity, Integer, MenuQuery> menuDataAccess = menuDataAccess();
+        menuDataAccess.batchInsert(menus);
+
+        List<MenuEntity> patches = new ArrayList<>();
+        for (MenuEntity menu : menus) {
+            MenuEntity patch = new MenuEntity();
+            patch.setId(menu.getId());
+            patch.setPlatform("02");
+            patch.setMemo("patched");
+            patches.add(patch);
+        }
+        patches.get(1).setValid(false);
+
+        assertEquals(3, menuDataAccess.batchPatch(patches));
+        assertThat(menus).extracting(menu -> menuDataAccess.get(menu.toIdWrapper()))
+                         .extracting(menu -> tuple(menu.getMemo(), menu.getMenuName(), menu.getValid()))
+                         .containsExactly(tuple("patched", "batch0", true),
+                                          tuple("patched", "batch1", false),
+                                          tuple("patched", "batch2", true));
+    }
+
+    @Test
+    void getAllGroupedByTable() {
+        List<MenuIdWrapper> ws = Arrays.asList(new MenuIdWrapper(1, "02"), new MenuIdWrapper(2, "01"),
+                                               new MenuIdWrapper(3, "01"), new MenuIdWrapper(1, "01"));
+        assertThat(menuDataAccess().getAllByIdWrappers(ws))
+            .extracting(menu -> menu == null ? null : menu.getMenuName())
+            .containsExactly("root", "first", null, "root");
+    }
+
+    @Test
+    void streamAndForEach() {
+        JdbcDataAccess<MenuEntity, Integer, MenuQuery> menuDataAccess = menuDataAccess();
+        MenuQuery menuQuery = MenuQuery.builder().platform("01").build();
+        menuQuery.setSort("id,desc");
+
+        try (Stream<MenuEntity> stream = menuDataAccess.stream(menuQuery)) {
+            assertThat(stream.map(MenuEntity::getMenuName)).containsExactly("first", "root");
+        }
+
+        List<Integer> ids = new ArrayList<>();
+        menuDataAccess.forEach(menuQuery, menu -> ids.add(menu.getId()));
+        assertThat(ids).containsExactly(2, 1);
+    }
+
+    @Test
+    void recordSqlMetrics() {
+        List<String> sqlList = new ArrayList<>();
+        JdbcDataAccess<MenuEntity, Integer, MenuQuery> menuDataAccess = menuDataAccess();
+        menuDataAccess.setMetricsRecorder(new MetricsRecorder() {
+            @Override
+            public void recordSql(String entity, String sql, long buildNanos, long executeNanos, boolean success) {
+                assertThat(buildNanos).isPositive();
+                assertThat(executeNanos).isPositive();
+                sqlList.add(entity + ":" + sql + ":" + success);
+            }
+        });
+
+        menuDataAccess.count(MenuQuery.builder().platform("01").build());
+        menuDataAccess.get(new MenuIdWrapper(1, "01"));
+        assertThrows(RuntimeException.class, () -> menuDataAccess.queryColumns(new MenuQuery(), Integer.class, "unknown"));
+
+        assertThat(sqlList).containsExactly(
+            "MenuEntity:SELECT count(*) FROM menu_01:true",
+            "MenuEntity:SELECT parentId, menuName, memo, valid, id, createUserId, createTime, updateUserId, updateTime FROM menu_01 WHERE id = ?:true",
+            "MenuEntity:SELECT unknown FROM menu_null:false"
+        );
+
+        Stream<MenuEntity> stream = menuDataAccess.stream(MenuQuery.builder().platform("01").build());
+        assertEquals(2, stream.map(MenuEntity::getId).collect(Collectors.toList()).size());
+        assertThat(sqlList).hasSize(3);
+        stream.close();
+        assertThat(sqlList).hasSize(4);
+    }
+
+    @Test
+    void publishSqlEvents() {
+        List<SqlEvent> events = new ArrayList<>();
+        List<String> started = new ArrayList<>();
+        SqlListener sqlListener = new SqlListener() {
+            @Override
+            public void beforeSql(String source, SqlAndArgs sqlAndArgs) {
+                started.add(source);
+            }
+
+            @Override
+            public void onSql(SqlEvent event) {
+                events.add(event);
+            }
+        };
+        List<MenuEntity> menus = buildMenus(2);
+        GlobalConfiguration.instance().getSqlListeners().add(sqlListener);
+        try {
+            JdbcDataAccess<MenuEntity, Integer, MenuQuery> menuDataAccess = menuDataAccess();
+            menuDataAccess.batchInsert(menus);
+            menus.forEach(menu -> menu.setMemo("patched"));
+            menuDataAccess.batchPatch(menus);
+            menuDataAccess.delete(menus.get(0).toIdWrapper());
+            assertThrows(RuntimeException.class, () -> menuDataAccess.queryColumns(new MenuQuery(), Integer.class, "unknown"));
+            userAndRoleAssociativeService.getByLeftId(1L);
+        } finally {
+            GlobalConfiguration.instance().getSqlListeners().remove(sqlListener);
+        }
+
+        assertThat(started).containsExactly("MenuEntity", "MenuEntity", "MenuEntity", "MenuEntity", "t_user_and_role");
+        assertThat(events).extracting(event -> tuple(event.getSource(), event.getBatchSize(), event.isSuccess()))
+                          .containsExactly(tuple("MenuEntity", 2, true), tuple("MenuEntity", 2, true), tuple("MenuEntity", 1, true),
+                                           tuple("MenuEntity", 1, false), tuple("t_user_and_role", 1, true));
+        assertThat(events.get(1).getSqlAndArgs().getSql()).startsWith("UPDATE menu_02 SET");
+        assertThat(events.get(2).getSqlAndArgs().formatArgs()).isEqualTo(menus.get(0).getId() + "(java.lang.Integer)");
+    }
+
+    @Test
+    void queryProjectionAndColumns() {
+        JdbcDataAccess<MenuEntity, Integer, MenuQuery> menuDataAccess = menuDataAccess();
+        MenuQuery menuQuery = MenuQuery.builder().platform("01").build();
+        menuQuery.setSort("id,asc");
+
+        List<MenuResponse> menus = menuDataAccess.queryProjection(menuQuery, MenuResponse.class);
+        assertThat(menus).extracting(MenuResponse::getMenuName).containsExactly("root", "first");
+        assertThat(menus).extracting(MenuResponse::getParentId).containsExactly(0, 1);
+        assertThat(menus).extracting(MenuResponse::getValid).containsExactly(true, true);
+        assertThat(menus).extracting(MenuResponse::getCreateUserId).containsOnlyNulls();
+
+        menus = menuDataAccess.queryColumns(menuQuery, MenuResponse.class, "id, menuName");
+        assertThat(menus).extracting(MenuResponse::getId).containsExactly(1, 2);
+        assertThat(menus).extracting(MenuResponse::getMemo).containsOnlyNulls();
+
+        menus = menuDataAccess.queryColumns(menuQuery, MenuResponse.class, "id", "memo");
+        assertThat(menus).extracting(MenuResponse::getMemo).containsExactly("root menu", "first menu");
+        assertThat(menus).extracting(MenuResponse::getMenuName).containsOnlyNulls();
+    }
+
+    @Test
+    void fieldRowMapperMatchesBeanPropertyRowMapper() {
+        String sql = "SELECT " + String.join(", ", FieldRowMapper.of(MenuEntity.class).getColumns()) + " FROM menu_01";
+        assertThat(jdbcOperations.query(sql, FieldRowMapper.of(MenuEntity.class)))
+            .usingRecursiveFieldByFieldElementComparator()
+            .isEqualTo(jdbcOperations.query(sql, new BeanPropertyRowMapper<>(MenuEntity.class)));
+    }
+
     /*=============== AssociativeService ==================*/
     @Resource
     AssociativeService<Long, Integer> userAndRoleAssociativeService;
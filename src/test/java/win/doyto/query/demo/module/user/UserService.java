@@ -1,6 +1,5 @@
 package win.doyto.query.demo.module.user;
 
-import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Service;
 import win.doyto.query.service.AbstractCrudService;
 
@@ -16,21 +15,4 @@ public class UserService extends AbstractCrudService<UserEntity, Long, UserQuery
     protected String getCacheName() {
         return "module:user";
     }
-
-    @Override
-    protected RowMapper<UserEntity> getRowMapper() {
-        return (rs, rn) -> {
-            UserEntity userEntity = new UserEntity();
-            userEntity.setId(rs.getLong("id"));
-            userEntity.setUsername(rs.getString("username"));
-            userEntity.setPassword(rs.getString("password"));
-            userEntity.setNickname(rs.getString("nickname"));
-            userEntity.setMobile(rs.getString("mobile"));
-            userEntity.setEmail(rs.getString("email"));
-            userEntity.setMemo(rs.getString("memo"));
-            userEntity.setUserLevel(UserLevel.valueOf(rs.getString("userLevel")));
-            userEntity.setValid(rs.getBoolean("valid"));
-            return userEntity;
-        };
-    }
 }
@@ -3,14 +3,20 @@ package win.doyto.query.service;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import win.doyto.query.config.GlobalConfiguration;
 import win.doyto.query.core.IdWrapper;
 import win.doyto.query.core.test.TestEntity;
 import win.doyto.query.core.test.TestQuery;
 import win.doyto.query.core.test.TestService;
 import win.doyto.query.entity.EntityAspect;
+import win.doyto.query.metrics.MetricsRecorder;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 import static win.doyto.query.core.test.TestEntity.initUserEntities;
@@ -79,6 +85,58 @@ class AbstractDynamicServiceTest {
         verify(entityAspect, times(1)).afterDelete(any(TestEntity.class));
     }
 
+    @Test
+    void batchPatchWithoutGetAndEvictCache() {
+        testService.setCacheManager(new ConcurrentMapCacheManager());
+        testService.get(1);
+        testService.get(2);
+
+        TestEntity p1 = new TestEntity();
+        p1.setId(1);
+        p1.setMemo("patched");
+        TestEntity p2 = new TestEntity();
+        p2.setId(2);
+        p2.setMemo("patched");
+        Iterable<TestEntity> patches = Stream.of(p1, p2)::iterator;
+        assertEquals(2, testService.batchPatch(patches));
+
+        assertEquals("patched", testService.get(1).getMemo());
+        assertEquals("username2", testService.get(2).getUsername());
+        verify(testService.dataAccess, times(2)).get(IdWrapper.build(1));
+    }
+
+    @Test
+    void batchUpdateWithAspect() {
+        EntityAspect<TestEntity> entityAspect = spy(new EntityAspect<TestEntity>() {});
+        testService.entityAspects.add(entityAspect);
+
+        List<TestEntity> entities = Arrays.asList(testService.fetch(1), testService.fetch(2));
+        assertEquals(2, testService.batchUpdate(entities));
+        verify(entityAspect, times(2)).afterUpdate(any(), any());
+    }
+
+    @Test
+    void getAllInRequestOrder() {
+        assertThat(testService.getAll(Arrays.asList(3, 1, 100, 2)))
+            .extracting(e -> e == null ? null : e.getUsername())
+            .containsExactly("username3", "username1", null, "username2");
+    }
+
+    @Test
+    void getAllFetchMissesOnly() throws InterruptedException {
+        testService.setCacheManager(new ConcurrentMapCacheManager());
+        testService.setCacheList("");
+        testService.getAll(Arrays.asList(1));
+        Thread.sleep(5L);
+
+        assertThat(testService.getAll(Arrays.asList(1, 2, 3))).extracting(TestEntity::getId).containsExactly(1, 2, 3);
+        verify(testService.dataAccess, times(1)).getAllByIdWrappers(Arrays.asList(IdWrapper.build(2), IdWrapper.build(3)));
+        Thread.sleep(5L);
+
+        assertThat(testService.getAll(Arrays.asList(3, 2, 1))).extracting(TestEntity::getId).containsExactly(3, 2, 1);
+        verify(testService.dataAccess, times(2)).getAllByIdWrappers(any());
+    }
+
     @Test
     void count() {
         assertEquals(1, testService.count(TestQuery.builder().username("username1").build()));
@@ -115,6 +173,131 @@ class AbstractDynamicServiceTest {
         assertEquals(5, (int) ids.get(0));
     }
 
+    @Test
+    void pageInParallel() {
+        GlobalConfiguration.instance().setParallelPage(true);
+        try {
+            TestQuery testQuery = TestQuery.builder().pageNumber(1).pageSize(2).build();
+            PageList<TestEntity> pageList = testService.page(testQuery, testEntity -> testEntity);
+            assertThat(pageList.getList()).extracting(TestEntity::getId).containsExactly(3, 4);
+            assertEquals(5, pageList.getTotal());
+        } finally {
+            GlobalConfiguration.instance().setParallelPage(false);
+        }
+    }
+
+    @Test
+    void skipCountForPartialPage() {
+        GlobalConfiguration.instance().setSkipCountForPartialPage(true);
+        try {
+            TestQuery testQuery = TestQuery.builder().pageNumber(1).pageSize(3).build();
+            PageList<TestEntity> pageList = testService.page(testQuery, testEntity -> testEntity);
+            assertEquals(5, pageList.getTotal());
+            verify(testService.dataAccess, never()).count(any());
+
+            testQuery.setPageNumber(2);
+            assertEquals(5, testService.page(testQuery, testEntity -> testEntity).getTotal());
+            verify(testService.dataAccess, times(1)).count(any());
+        } finally {
+            GlobalConfiguration.instance().setSkipCountForPartialPage(false);
+        }
+    }
+
+    @Test
+    @SuppressWarnings("java:S2925")
+    void cacheCountWithoutPagingFields() throws InterruptedException {
+        testService.setCacheManager(new ConcurrentMapCacheManager());
+        testService.setCacheList("");
+        TestQuery testQuery = TestQuery.builder().valid(true).pageNumber(0).pageSize(2).build();
+        assertEquals(3, testService.count(testQuery));
+
+        Thread.sleep(5L);
+
+        testQuery.setPageNumber(1).setSort("id,desc");
+        assertEquals(3, testService.count(testQuery));
+        verify(testService.dataAccess, times(1)).count(any());
+
+        testService.delete(2);
+        assertEquals(2, testService.count(testQuery));
+        verify(testService.dataAccess, times(2)).count(any());
+    }
+
+    @Test
+    @SuppressWarnings("java:S2925")
+    void cacheQueryIdsAndColumns() throws InterruptedException {
+        testService.setCacheManager(new ConcurrentMapCacheManager());
+        testService.setCacheList("");
+        TestQuery testQuery = TestQuery.builder().valid(true).build();
+        assertThat(testService.queryIds(testQuery)).containsExactly(2, 4, 5);
+        assertThat(testService.queryColumns(testQuery, String.class, "username")).hasSize(3);
+
+        Thread.sleep(5L);
+
+        assertThat(testService.queryIds(TestQuery.builder().valid(true).build())).containsExactly(2, 4, 5);
+        assertThat(testService.queryColumns(testQuery, String.class, "username")).hasSize(3);
+        assertThat(testService.queryColumns(testQuery, String.class, "email")).hasSize(3);
+        verify(testService.dataAccess, times(1)).queryIds(any());
+        verify(testService.dataAccess, times(2)).queryColumns(any(), eq(String.class), any());
+
+        testService.delete(2);
+        assertThat(testService.queryIds(testQuery)).containsExactly(4, 5);
+        verify(testService.dataAccess, times(2)).queryIds(any());
+    }
+
+    @Test
+    @SuppressWarnings("java:S2925")
+    void invalidateQueryCacheByWrittenRows() throws InterruptedException {
+        testService.setCacheManager(new ConcurrentMapCacheManager());
+        testService.setCacheList("");
+        TestQuery testQuery = TestQuery.builder().username("f0rb").build();
+        assertEquals(1, testService.query(testQuery).size());
+
+        Thread.sleep(5L);
+
+        TestEntity patch = new TestEntity();
+        patch.setId(1);
+        patch.setMemo("memo");
+        testService.patch(patch);
+        assertEquals(1, testService.query(testQuery).size());
+        verify(testService.dataAccess, times(1)).query(any());
+
+        patch.setId(5);
+        testService.patch(patch);
+        assertEquals(1, testService.query(testQuery).size());
+        verify(testService.dataAccess, times(2)).query(any());
+    }
+
+    @Test
+    @SuppressWarnings("java:S2925")
+    void batchInsertFromOneShotIterable() throws InterruptedException {
+        testService.setCacheManager(new ConcurrentMapCacheManager());
+        testService.setCacheList("");
+        TestQuery testQuery = TestQuery.builder().usernameLike("user6").build();
+        assertThat(testService.query(testQuery)).isEmpty();
+
+        Thread.sleep(5L);
+
+        TestEntity testEntity = new TestEntity();
+        testEntity.setUsername("user6");
+        Iterable<TestEntity> entities = Stream.of(testEntity)::iterator;
+        assertEquals(1, testService.batchInsert(entities));
+        assertThat(testService.query(testQuery)).extracting(TestEntity::getUsername).containsExactly("user6");
+    }
+
+    @Test
+    void pageWithNextCursor() {
+        TestQuery testQuery = new TestQuery();
+        testQuery.setSort("id,desc").setPageSize(3).setAfter("");
+        PageList<TestEntity> pageList = testService.page(testQuery, testEntity -> testEntity);
+        assertThat(pageList.getList()).extracting(TestEntity::getId).containsExactly(5, 4, 3);
+        assertEquals(5, pageList.getTotal());
+
+        testQuery.setAfter(pageList.getNext());
+        pageList = testService.page(testQuery, testEntity -> testEntity);
+        assertThat(pageList.getList()).extracting(TestEntity::getId).containsExactly(2, 1);
+        assertNull(pageList.getNext());
+    }
+
     @Test
     void forcePage() {
         TestQuery testQuery = new TestQuery();
@@ -123,4 +306,38 @@ class AbstractDynamicServiceTest {
         assertEquals(0, (int) testQuery.getPageNumber());
         assertEquals(10, (int) testQuery.getPageSize());
     }
-}
\ No newline at end of file
+
+    @Test
+    @SuppressWarnings("java:S2925")
+    void recordMetrics() throws InterruptedException {
+        List<String> records = new ArrayList<>();
+        testService.setMetricsRecorder(new MetricsRecorder() {
+            @Override
+            public void recordOperation(String entity, String operation, long nanos, int rows, boolean success) {
+                records.add(entity + ":" + operation + ":" + rows + ":" + success);
+            }
+
+            @Override
+            public void recordCache(String cache, CacheEvent event, long nanos) {
+                records.add(cache + ":" + event);
+            }
+        });
+        testService.setCacheManager(new ConcurrentMapCacheManager());
+        testService.setCacheList("");
+
+        assertThat(testService.query(TestQuery.builder().valid(true).build())).hasSize(3);
+        assertEquals(5, testService.count(new TestQuery()));
+        testService.get(1);
+        Thread.sleep(5L);
+        testService.get(1);
+        testService.update(testService.fetch(1));
+        assertThrows(IllegalArgumentException.class, () -> testService.query(TestQuery.builder().sort("unknown,asc").build()));
+
+        assertThat(records).contains(
+            "module:user:query:MISS", "TestEntity:query:3:true",
+            "module:user:count:MISS", "TestEntity:count:-1:true",
+            "module:user:MISS", "TestEntity:get:1:true", "module:user:PUT", "module:user:HIT",
+            "module:user:EVICT", "TestEntity:query:-1:false"
+        );
+    }
+}
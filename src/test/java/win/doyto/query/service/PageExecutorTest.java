@@ -0,0 +1,42 @@
+package win.doyto.query.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import win.doyto.query.config.GlobalConfiguration;
+import win.doyto.query.core.test.TestQuery;
+
+import java.util.Arrays;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * PageExecutorTest
+ *
+ * @author f0rb on 2020-02-18
+ */
+class PageExecutorTest {
+
+    @AfterEach
+    void tearDown() {
+        GlobalConfiguration.instance().setParallelPage(false);
+        GlobalConfiguration.instance().setSkipCountForPartialPage(false);
+    }
+
+    @Test
+    @SuppressWarnings("java:S2925")
+    void releaseSlotOfCancelledCount() throws InterruptedException {
+        GlobalConfiguration.instance().setParallelPage(true);
+        GlobalConfiguration.instance().setSkipCountForPartialPage(true);
+        TestQuery testQuery = TestQuery.builder().pageNumber(0).pageSize(10).build();
+
+        for (int i = 0; i < 100; i++) {
+            PageList<Integer> pageList = PageExecutor.page(testQuery, () -> Arrays.asList(1, 2), () -> 2L, list -> null, Function.identity());
+            assertEquals(2, pageList.getTotal());
+        }
+        for (int i = 0; i < 100 && PageExecutor.running() > 0; i++) {
+            Thread.sleep(10L);
+        }
+        assertEquals(0, PageExecutor.running());
+    }
+}